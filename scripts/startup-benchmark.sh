@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Mide el tiempo hasta el primer request exitoso (GET /api/books) con y sin el perfil faststart + AppCDS.
+#
+#   ./mvnw -DskipTests package && scripts/startup-benchmark.sh [iteraciones]
+set -euo pipefail
+
+ITERATIONS="${1:-5}"
+PORT="${PORT:-18080}"
+WORK_DIR="target/startup-benchmark"
+URL="http://localhost:${PORT}/api/books"
+# Como en el Dockerfile: sin journal, foto del catálogo ni checkpoint de populares. Si no, la foto que
+# guarda una corrida al apagarse la restaura la siguiente y las mediciones no son comparables
+NO_DATA=(-Dlibreria.journal.enabled=false -Dlibreria.snapshot.enabled=false
+    -Dlibreria.popularity.checkpoint.enabled=false)
+
+rm -rf "$WORK_DIR" && mkdir -p "$WORK_DIR"
+JAR=$(ls target/*.jar | grep -v plain | head -n 1)
+cp "$JAR" "$WORK_DIR/app.jar"
+java -Djarmode=tools -jar "$WORK_DIR/app.jar" extract --destination "$WORK_DIR/extracted" > /dev/null
+
+echo "Generando archivo AppCDS..."
+(cd "$WORK_DIR/extracted" && java -XX:ArchiveClassesAtExit=app.jsa -Dspring.context.exit=onRefresh \
+    -Dspring.profiles.active=faststart "${NO_DATA[@]}" -jar app.jar > /dev/null && rm -rf data)
+
+# $1 = nombre, resto = comando java
+measure() {
+    local name="$1"; shift
+    local total=0
+    for i in $(seq 1 "$ITERATIONS"); do
+        local start end pid
+        rm -rf "$WORK_DIR/extracted/data"
+        start=$(date +%s%N)
+        (cd "$WORK_DIR/extracted" && exec "$@" --server.port="$PORT" > /dev/null 2>&1) &
+        pid=$!
+        until curl -sf -o /dev/null "$URL"; do
+            sleep 0.02
+        done
+        end=$(date +%s%N)
+        kill "$pid" && wait "$pid" 2>/dev/null || true
+        local elapsed=$(( (end - start) / 1000000 ))
+        total=$(( total + elapsed ))
+        echo "  ${name} #${i}: ${elapsed} ms"
+    done
+    echo "${name}: promedio $(( total / ITERATIONS )) ms hasta el primer request exitoso"
+}
+
+measure "base" java "${NO_DATA[@]}" -jar app.jar
+measure "faststart+cds" java -XX:SharedArchiveFile=app.jsa \
+    -Dspring.profiles.active=faststart "${NO_DATA[@]}" -jar app.jar
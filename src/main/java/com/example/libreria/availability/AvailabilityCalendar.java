@@ -0,0 +1,82 @@
+package com.example.libreria.availability;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Ejemplares libres por día en la ventana [from, to). Cada período ocupado se anota en un
+ * arreglo de diferencias en O(1), y la primera consulta lo acumula en una pasada de O(días).
+ * Armar un calendario con s períodos y consultarlo cuesta O(s + días) en total; el calendario
+ * se arma por request, así que no vale la pena un índice con actualizaciones O(log n).
+ */
+public class AvailabilityCalendar {
+    
+    private final LocalDate from;
+    private final int days;
+    // diff[i]: cambio de ejemplares libres al empezar el día i; diff[days] recibe los períodos que llegan al final
+    private final int[] diff;
+    // Ejemplares libres por día, acumulados desde diff; null si hubo occupy desde la última consulta
+    private int[] available;
+    
+    public AvailabilityCalendar(LocalDate from, LocalDate to, int capacity) {
+        this.from = from;
+        this.days = (int) Math.max(1L, ChronoUnit.DAYS.between(from, to));
+        this.diff = new int[days + 1];
+        diff[0] = capacity;
+    }
+    
+    // Un ejemplar ocupado en [start, end); lo que cae fuera de la ventana se ignora
+    public void occupy(LocalDate start, LocalDate end) {
+        int lo = offset(start);
+        int hi = offset(end);
+        if (lo < hi) {
+            diff[lo]--;
+            diff[hi]++;
+            available = null;
+        }
+    }
+    
+    public int minAvailable(LocalDate start, LocalDate end) {
+        int lo = offset(start);
+        int hi = offset(end);
+        if (lo >= hi) {
+            throw new IllegalArgumentException("Período fuera del calendario: " + start + " - " + end);
+        }
+        int[] perDay = sweep();
+        int min = Integer.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            min = Math.min(min, perDay[i]);
+        }
+        return min;
+    }
+    
+    public int[] availablePerDay() {
+        return sweep().clone();
+    }
+    
+    public LocalDate getFrom() {
+        return from;
+    }
+    
+    public int getDays() {
+        return days;
+    }
+    
+    private int offset(LocalDate date) {
+        long offset = ChronoUnit.DAYS.between(from, date);
+        return (int) Math.max(0L, Math.min(days, offset));
+    }
+    
+    private int[] sweep() {
+        if (available == null) {
+            int[] perDay = new int[days];
+            int running = 0;
+            for (int i = 0; i < days; i++) {
+                running += diff[i];
+                perDay[i] = running;
+            }
+            available = perDay;
+        }
+        return available;
+    }
+}
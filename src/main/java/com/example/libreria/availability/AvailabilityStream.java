@@ -0,0 +1,426 @@
+package com.example.libreria.availability;
+
+import com.example.libreria.dto.AvailabilityChangeDTO;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * GET /api/books/availability/stream: los cambios de available_quantity como Server-Sent Events. Los
+ * libros que cambian (los mismos avisos que invalidan la caché de respuestas, propios o de otras
+ * instancias vía change_log) se releen cada publish-interval y cada diferencia entra, serializada una
+ * sola vez, en un buffer circular compartido de buffer-size cambios. Cada cliente tiene sólo su cursor:
+ * un hilo de envío le manda lo que le falta en lotes de max-batch y, si quedó más atrás que el buffer,
+ * recibe de nuevo la foto completa. El id de cada evento (epoch:versión) permite retomar con
+ * Last-Event-ID; de otra instancia o de antes de un reinicio se retoma con la foto.
+ * <p>
+ * SseEmitter.send bloquea mientras el cliente no lee. Si un envío pasa de send-timeout, el
+ * watchdog da de baja al cliente (al terminar ese envío se cierra la conexión y EventSource
+ * reconecta con Last-Event-ID) y suma un hilo de envío mientras el bloqueado siga ocupado, así
+ * los clientes lentos no dejan sin hilos a los demás.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AvailabilityStream {
+    
+    public static final String SNAPSHOT_EVENT = "snapshot";
+    public static final String CHANGES_EVENT = "changes";
+    
+    private static final String LOAD_ALL = "SELECT external_id, available_quantity FROM books";
+    private static final String LOAD_BOOKS = "SELECT external_id, available_quantity FROM books WHERE external_id IN (%s)";
+    // Con más libros pendientes se releen todos
+    private static final int MAX_IN_LIST = 1000;
+    
+    private record Delta(long version, String json) {
+    }
+    
+    private record Snapshot(long version, String json) {
+    }
+    
+    // Distingue las versiones de esta instancia y de este arranque
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    
+    // Libros a releer; ALL_BOOKS pide releer todos (sincronización, restauración de la foto)
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean allPending = new AtomicBoolean();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    
+    // Estado compartido, protegido por this
+    private final Map<Long, AvailabilityChangeDTO> current = new HashMap<>();
+    private boolean loaded;
+    private long version;
+    // Versión de la última carga: sin clientes no se siguen los cambios, así que no se retoma desde antes
+    private long loadedAt;
+    private Delta[] ring;
+    private Snapshot snapshot;
+    
+    private ThreadPoolExecutor senders;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final LibraryMetrics libraryMetrics;
+    
+    @Value("${libreria.availability-stream.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${libreria.availability-stream.buffer-size:4096}")
+    private int bufferSize;
+    
+    // Cambios por evento; un cliente atrasado los recibe en varios
+    @Value("${libreria.availability-stream.max-batch:500}")
+    private int maxBatch;
+    
+    @Value("${libreria.availability-stream.sender-threads:4}")
+    private int senderThreads;
+    
+    // Un envío bloqueado más que esto da de baja al cliente
+    @Value("${libreria.availability-stream.send-timeout:10s}")
+    private Duration sendTimeout;
+    
+    // Después de este tiempo se cierra la conexión; EventSource reconecta solo con Last-Event-ID
+    @Value("${libreria.availability-stream.timeout:30m}")
+    private Duration timeout;
+    
+    @Value("${libreria.availability-stream.reconnect-delay:2s}")
+    private Duration reconnectDelay;
+    
+    @PostConstruct
+    void start() {
+        ring = new Delta[bufferSize];
+        // Cola sin límite: el pool crece sólo cuando el watchdog compensa un envío bloqueado
+        senders = new ThreadPoolExecutor(senderThreads, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "availability-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        libraryMetrics.registerAvailabilityStreamGauge(subscribers::size);
+    }
+    
+    @PreDestroy
+    void stop() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+    
+    public void bookChanged(Long externalId) {
+        if (enabled && externalId != null) {
+            afterCommit(() -> pending.add(externalId));
+        }
+    }
+    
+    public void allBooksChanged() {
+        if (enabled) {
+            afterCommit(() -> allPending.set(true));
+        }
+    }
+    
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(timeout.toMillis()), lastEventId);
+    }
+    
+    SseEmitter subscribe(SseEmitter emitter, String lastEventId) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscribers.remove(subscriber));
+        synchronized (this) {
+            load();
+            subscriber.cursor = resumeFrom(lastEventId);
+            subscribers.add(subscriber);
+        }
+        libraryMetrics.recordAvailabilityStream(subscriber.cursor < 0 ? "connected" : "resumed");
+        subscriber.signal();
+        return emitter;
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.availability-stream.publish-interval:PT0.2S}")
+    public void publish() {
+        long generation;
+        synchronized (this) {
+            if (subscribers.isEmpty()) {
+                // Sin clientes no se sigue nada; el próximo arranca con una foto nueva
+                loaded = false;
+                current.clear();
+                snapshot = null;
+                pending.clear();
+                allPending.set(false);
+                return;
+            }
+            generation = loadedAt;
+        }
+        List<Long> ids = new ArrayList<>(pending);
+        pending.removeAll(ids);
+        boolean all = allPending.getAndSet(false) || ids.size() > MAX_IN_LIST;
+        if (ids.isEmpty() && !all) {
+            return;
+        }
+        List<AvailabilityChangeDTO> rows = all ? jdbcTemplate.query(LOAD_ALL, (rs, rowNum) -> row(rs.getLong(1), rs.getInt(2)))
+                : jdbcTemplate.query(LOAD_BOOKS.formatted(ids.stream().map(id -> "?").collect(Collectors.joining(", "))),
+                (rs, rowNum) -> row(rs.getLong(1), rs.getInt(2)), ids.toArray());
+        int published = 0;
+        synchronized (this) {
+            if (!loaded || loadedAt != generation) {
+                // Se recargó todo mientras se leía: la foto nueva ya tiene estos valores
+                return;
+            }
+            for (AvailabilityChangeDTO row : rows) {
+                AvailabilityChangeDTO previous = current.get(row.getExternalId());
+                if (previous != null && previous.getAvailableQuantity().equals(row.getAvailableQuantity())) {
+                    continue;
+                }
+                row.setVersion(++version);
+                current.put(row.getExternalId(), row);
+                ring[(int) (version % ring.length)] = new Delta(version, toJson(row));
+                published++;
+            }
+        }
+        if (published > 0) {
+            subscribers.forEach(Subscriber::signal);
+        }
+    }
+    
+    // Un comentario SSE de vez en cuando: los proxies no cortan la conexión y se detectan los clientes caídos
+    @Scheduled(fixedDelayString = "${libreria.availability-stream.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        subscribers.forEach(subscriber -> {
+            subscriber.heartbeatDue = true;
+            subscriber.signal();
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.availability-stream.stall-check-interval:PT1S}")
+    public void dropStalledClients() {
+        long now = System.nanoTime();
+        long limit = sendTimeout.toNanos();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.dropIfStalled(now, limit)) {
+                subscribers.remove(subscriber);
+                log.debug("Availability stream client stalled for more than {}, dropping it", sendTimeout);
+                libraryMetrics.recordAvailabilityStream("dropped_slow");
+            }
+        }
+    }
+    
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+        }
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loadedAt = ++version;
+        jdbcTemplate.query(LOAD_ALL, rs -> {
+            long externalId = rs.getLong(1);
+            current.put(externalId, new AvailabilityChangeDTO(externalId, rs.getInt(2), loadedAt));
+        });
+        loaded = true;
+    }
+    
+    // -1: el cliente empieza por la foto
+    private long resumeFrom(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + ":")) {
+            return -1;
+        }
+        try {
+            long resumed = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+            return resumed >= loadedAt && resumed <= version && version - resumed <= ring.length ? resumed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    // null: el cursor quedó fuera del buffer
+    private synchronized List<Delta> since(long cursor) {
+        if (cursor < loadedAt || version - cursor > ring.length) {
+            return null;
+        }
+        int count = (int) Math.min(version - cursor, maxBatch);
+        List<Delta> deltas = new ArrayList<>(count);
+        for (long v = cursor + 1; v <= cursor + count; v++) {
+            deltas.add(ring[(int) (v % ring.length)]);
+        }
+        return deltas;
+    }
+    
+    private synchronized Snapshot snapshot() {
+        if (snapshot == null || snapshot.version() != version) {
+            snapshot = new Snapshot(version, toJson(current.values()));
+        }
+        return snapshot;
+    }
+    
+    private synchronized boolean behind(long cursor) {
+        return cursor < version;
+    }
+    
+    private AvailabilityChangeDTO row(long externalId, int available) {
+        return new AvailabilityChangeDTO(externalId, available, null);
+    }
+    
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private String eventId(long eventVersion) {
+        return epoch + ":" + eventVersion;
+    }
+    
+    // Como mucho un envío en curso por cliente: uno lento sólo se atrasa él
+    private class Subscriber {
+        
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long cursor;
+        private volatile boolean heartbeatDue;
+        // Protegidos por this: inicio del envío en curso (0 si no hay), baja por lento y hilo extra sumado
+        private long sendingSince;
+        private boolean dropped;
+        private boolean compensated;
+        
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        void signal() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+        
+        private void drain() {
+            try {
+                boolean sent = false;
+                List<Delta> deltas;
+                while (!isDropped() && ((deltas = since(cursor)) == null || !deltas.isEmpty())) {
+                    if (deltas == null) {
+                        if (cursor >= 0) {
+                            log.debug("Availability stream client fell behind the buffer at version {}", cursor);
+                            libraryMetrics.recordAvailabilityStream("dropped_to_snapshot");
+                        }
+                        Snapshot photo = snapshot();
+                        send(SseEmitter.event().name(SNAPSHOT_EVENT).id(eventId(photo.version()))
+                                .reconnectTime(reconnectDelay.toMillis())
+                                .data(photo.json(), MediaType.APPLICATION_JSON));
+                        cursor = photo.version();
+                    } else {
+                        String batch = deltas.stream().map(Delta::json).collect(Collectors.joining(",", "[", "]"));
+                        long last = deltas.get(deltas.size() - 1).version();
+                        send(SseEmitter.event().name(CHANGES_EVENT).id(eventId(last))
+                                .data(batch, MediaType.APPLICATION_JSON));
+                        cursor = last;
+                    }
+                    sent = true;
+                }
+                if (isDropped()) {
+                    // Dado de baja por el watchdog: el cliente reconecta y retoma desde su último id
+                    emitter.complete();
+                    return;
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    if (!sent) {
+                        send(SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // El cliente se fue; onCompletion / onError lo sacan de la lista
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                releaseCompensation();
+                scheduled.set(false);
+            }
+            if (behind(cursor)) {
+                signal();
+            }
+        }
+        
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                sendingSince = System.nanoTime();
+            }
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    sendingSince = 0;
+                }
+            }
+        }
+        
+        synchronized boolean dropIfStalled(long nowNanos, long limitNanos) {
+            if (dropped || sendingSince == 0 || nowNanos - sendingSince <= limitNanos) {
+                return false;
+            }
+            dropped = true;
+            compensated = true;
+            resizeSenders(1);
+            return true;
+        }
+        
+        private synchronized boolean isDropped() {
+            return dropped;
+        }
+        
+        private synchronized void releaseCompensation() {
+            if (compensated) {
+                compensated = false;
+                resizeSenders(-1);
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.libreria.availability;
+
+import java.time.LocalDate;
+
+public record ReservationSpan(LocalDate startDate, LocalDate expectedReturnDate) {
+}
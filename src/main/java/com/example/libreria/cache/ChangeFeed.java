@@ -0,0 +1,230 @@
+package com.example.libreria.cache;
+
+import com.example.libreria.availability.AvailabilityStream;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.ChangeLogEntry.ChangeEntity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Invalidación de las cachés locales entre instancias sin un broker de mensajes. Cada cambio de un
+ * libro o usuario invalida la caché propia y agrega una fila a change_log en la misma transacción
+ * (una por recurso, al confirmar); cada instancia lee por clave primaria las filas nuevas de las
+ * demás cada poll-interval e invalida lo mismo. Las filas más viejas que retention se compactan.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChangeFeed {
+    
+    // Versiones salteadas que se siguen buscando; más allá se asume una transacción deshecha
+    private static final int MAX_TRACKED_GAPS = 1000;
+    
+    private static final String APPEND =
+            "INSERT INTO change_log (entity, entity_id, node_id, created_at) VALUES (?, ?, ?, ?)";
+    private static final String POLL =
+            "SELECT version, entity, entity_id, node_id, created_at FROM change_log " +
+            "WHERE version > ? ORDER BY version LIMIT ?";
+    private static final String POLL_GAPS =
+            "SELECT version, entity, entity_id, node_id, created_at FROM change_log WHERE version IN (%s)";
+    private static final String COMPACT = "DELETE FROM change_log WHERE created_at < ?";
+    
+    private record Change(ChangeEntity entity, Long entityId) {
+    }
+    
+    private record FeedRow(long version, ChangeEntity entity, Long entityId, String nodeId, LocalDateTime createdAt) {
+    }
+    
+    private static final RowMapper<FeedRow> ROW_MAPPER = (rs, rowNum) -> new FeedRow(
+            rs.getLong("version"),
+            ChangeEntity.valueOf(rs.getString("entity")),
+            rs.getObject("entity_id", Long.class),
+            rs.getString("node_id"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    // Estado del lector; sólo lo toca poll()
+    private long highestVersion = -1;
+    private final Map<Long, Long> gaps = new HashMap<>();
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ResponseCache responseCache;
+    private final AvailabilityStream availabilityStream;
+    private final LibraryMetrics libraryMetrics;
+    
+    @Value("${libreria.change-feed.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${libreria.change-feed.batch-size:1000}")
+    private int batchSize;
+    
+    // Cuánto se espera una versión salteada: las transacciones que la tomaron pueden confirmar tarde
+    @Value("${libreria.change-feed.gap-timeout:10s}")
+    private Duration gapTimeout;
+    
+    @Value("${libreria.change-feed.retention:10m}")
+    private Duration retention;
+    
+    public void bookChanged(Long externalId) {
+        responseCache.evictBook(externalId);
+        availabilityStream.bookChanged(externalId);
+        append(new Change(ChangeEntity.BOOK, externalId));
+    }
+    
+    public void allBooksChanged() {
+        responseCache.evictAllBooks();
+        availabilityStream.allBooksChanged();
+        append(new Change(ChangeEntity.ALL_BOOKS, null));
+    }
+    
+    public void userChanged(Long id) {
+        responseCache.evictUser(id);
+        append(new Change(ChangeEntity.USER, id));
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.change-feed.poll-interval:PT0.2S}")
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+        // Al arrancar la caché está vacía: sólo importan los cambios que vengan después
+        if (highestVersion < 0) {
+            Long max = jdbcTemplate.queryForObject("SELECT MAX(version) FROM change_log", Long.class);
+            highestVersion = max != null ? max : 0;
+            return;
+        }
+        List<FeedRow> rows = new ArrayList<>();
+        if (!gaps.isEmpty()) {
+            String placeholders = gaps.keySet().stream().map(v -> "?").collect(Collectors.joining(", "));
+            rows.addAll(jdbcTemplate.query(POLL_GAPS.formatted(placeholders), ROW_MAPPER, gaps.keySet().toArray()));
+        }
+        rows.addAll(jdbcTemplate.query(POLL, ROW_MAPPER, highestVersion, batchSize));
+        long now = System.nanoTime();
+        LocalDateTime wallClock = LocalDateTime.now();
+        for (FeedRow row : rows) {
+            gaps.remove(row.version());
+            if (row.version() > highestVersion) {
+                // Versiones intermedias todavía sin confirmar (o deshechas): se vuelven a buscar
+                for (long missing = highestVersion + 1; missing < row.version() && gaps.size() < MAX_TRACKED_GAPS; missing++) {
+                    gaps.put(missing, now);
+                }
+                highestVersion = row.version();
+            }
+            if (!nodeId.equals(row.nodeId())) {
+                apply(row);
+                libraryMetrics.recordChangeFeedLag(Duration.between(row.createdAt(), wallClock).toMillis());
+            }
+        }
+        long timeout = gapTimeout.toNanos();
+        gaps.values().removeIf(since -> now - since > timeout);
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.change-feed.compact-interval:PT1M}")
+    public int compact() {
+        if (!enabled) {
+            return 0;
+        }
+        int deleted = jdbcTemplate.update(COMPACT, Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        if (deleted > 0) {
+            log.debug("Compacted {} change feed rows", deleted);
+        }
+        return deleted;
+    }
+    
+    private void apply(FeedRow row) {
+        switch (row.entity()) {
+            case BOOK -> {
+                responseCache.evictBook(row.entityId());
+                availabilityStream.bookChanged(row.entityId());
+            }
+            case ALL_BOOKS -> {
+                responseCache.evictAllBooks();
+                availabilityStream.allBooksChanged();
+            }
+            case USER -> responseCache.evictUser(row.entityId());
+        }
+    }
+    
+    // Dentro de una transacción los cambios se juntan y se escriben una vez por recurso antes del commit
+    private void append(Change change) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(List.of(change));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Change> pending = (Set<Change>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Change> changes = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new PendingChanges(changes));
+            pending = changes;
+        }
+        pending.add(change);
+    }
+    
+    private void insert(Collection<Change> changes) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(APPEND, changes, changes.size(), (ps, change) -> {
+            ps.setString(1, change.entity().name());
+            ps.setObject(2, change.entityId());
+            ps.setString(3, nodeId);
+            ps.setTimestamp(4, createdAt);
+        });
+    }
+    
+    // Una transacción suspendida (REQUIRES_NEW) no comparte sus cambios pendientes con la interna
+    private class PendingChanges implements TransactionSynchronization {
+        
+        private final Set<Change> changes;
+        
+        PendingChanges(Set<Change> changes) {
+            this.changes = changes;
+        }
+        
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeFeed.this);
+        }
+        
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(ChangeFeed.this, changes);
+        }
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!changes.isEmpty()) {
+                insert(changes);
+            }
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeFeed.this);
+        }
+    }
+}
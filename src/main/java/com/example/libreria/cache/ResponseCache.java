@@ -0,0 +1,171 @@
+package com.example.libreria.cache;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Respuestas GET ya serializadas (y comprimidas) de libros y usuarios. Cada entrada guarda la
+ * versión del recurso con la que se generó; los servicios suben la versión al modificar un libro
+ * o un usuario, antes de escribir y otra vez al terminar la transacción, así que una entrada
+ * armada con datos viejos nunca vuelve a servirse. Las versiones viven en memoria; los cambios
+ * hechos en otras instancias llegan por {@link ChangeFeed}.
+ */
+@Component
+@Slf4j
+public class ResponseCache {
+    
+    private static final int VERSION_STRIPES = 1024;
+    
+    public record Entry(long version, String contentType, byte[] body, byte[] gzipped, String etag) {
+        
+        int weight() {
+            return body.length + (gzipped != null ? gzipped.length : 0);
+        }
+    }
+    
+    // Contadores por libro y por usuario; dos recursos pueden compartir contador y sólo se invalidan de más
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    // Cambia con cualquier libro: invalida el listado
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // Cambia con las modificaciones masivas: invalida además cada libro
+    private final AtomicLong allBooksVersion = new AtomicLong();
+    
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int gzipMinSize;
+    
+    public ResponseCache(@Value("${libreria.response-cache.max-entries:10000}") int maxEntries,
+                         @Value("${libreria.response-cache.max-bytes:64MB}") DataSize maxBytes,
+                         @Value("${libreria.response-cache.gzip-min-size:1KB}") DataSize gzipMinSize,
+                         LibraryMetrics libraryMetrics) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes.toBytes();
+        this.gzipMinSize = (int) gzipMinSize.toBytes();
+        libraryMetrics.registerResponseCacheGauges(this::size, this::bytes);
+    }
+    
+    public long catalogVersion() {
+        return catalogVersion.get();
+    }
+    
+    public long bookVersion(Long externalId) {
+        return versions.get(stripe("book", externalId)) + allBooksVersion.get();
+    }
+    
+    public long userVersion(Long id) {
+        return versions.get(stripe("user", id));
+    }
+    
+    public void evictBook(Long externalId) {
+        int stripe = stripe("book", externalId);
+        bumpNowAndAfterCompletion(() -> {
+            versions.incrementAndGet(stripe);
+            catalogVersion.incrementAndGet();
+        });
+    }
+    
+    public void evictAllBooks() {
+        bumpNowAndAfterCompletion(() -> {
+            allBooksVersion.incrementAndGet();
+            catalogVersion.incrementAndGet();
+        });
+    }
+    
+    public void evictUser(Long id) {
+        int stripe = stripe("user", id);
+        bumpNowAndAfterCompletion(() -> versions.incrementAndGet(stripe));
+    }
+    
+    // null si no hay entrada para esa versión
+    public Entry get(String key, long version) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.version() == version ? entry : null;
+        }
+    }
+    
+    public Entry put(String key, long version, String contentType, byte[] body) {
+        byte[] gzipped = body.length >= gzipMinSize ? gzip(body) : null;
+        if (gzipped != null && gzipped.length >= body.length) {
+            gzipped = null;
+        }
+        Entry entry = new Entry(version, contentType, body, gzipped,
+                "\"" + Long.toHexString(version) + "-" + Integer.toHexString(Arrays.hashCode(body)) + "\"");
+        if (entry.weight() > maxBytes) {
+            return entry;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.weight();
+            }
+            totalBytes += entry.weight();
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || totalBytes > maxBytes) && eldest.hasNext()) {
+                totalBytes -= eldest.next().getValue().weight();
+                eldest.remove();
+            }
+        }
+        return entry;
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    public long bytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+    
+    // La primera subida cubre a los lectores que empiezan durante la transacción (leen datos
+    // anteriores con una versión que va a cambiar); la segunda, a los que leyeron antes del commit
+    private void bumpNowAndAfterCompletion(Runnable bump) {
+        bump.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump.run();
+                }
+            });
+        }
+    }
+    
+    private static int stripe(String kind, Long id) {
+        int hash = 31 * kind.hashCode() + Long.hashCode(id);
+        return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+    }
+    
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
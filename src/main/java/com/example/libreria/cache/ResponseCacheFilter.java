@@ -0,0 +1,145 @@
+package com.example.libreria.cache;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * Sirve desde {@link ResponseCache} los GET de /api/books, /api/books/{id} y /api/users/{id}:
+ * la primera respuesta 200 de cada recurso y formato (header Accept) se guarda serializada y
+ * comprimida con gzip, y las siguientes se escriben tal cual, sin consultar la base ni volver
+ * a serializar. Responde 304 si el ETag coincide con If-None-Match.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@ConditionalOnProperty(name = "libreria.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class ResponseCacheFilter extends OncePerRequestFilter {
+    
+    public static final String CACHE_HEADER = "X-Response-Cache";
+    private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+    
+    private record Target(String key, LongSupplier version) {
+    }
+    
+    private final PathPattern catalog;
+    private final PathPattern book;
+    private final PathPattern user;
+    private final ResponseCache responseCache;
+    private final LibraryMetrics libraryMetrics;
+    
+    public ResponseCacheFilter(ResponseCache responseCache, LibraryMetrics libraryMetrics) {
+        PathPatternParser parser = new PathPatternParser();
+        this.catalog = parser.parse("/api/books");
+        this.book = parser.parse("/api/books/{id:\\d{1,18}}");
+        this.user = parser.parse("/api/users/{id:\\d{1,18}}");
+        this.responseCache = responseCache;
+        this.libraryMetrics = libraryMetrics;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Target target = match(request);
+        if (target == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String key = target.key() + '|' + (accept != null ? accept : "*/*");
+        // La versión se lee antes de ejecutar el controlador: si cambia mientras tanto, la entrada nace vencida
+        long version = target.version().getAsLong();
+        ResponseCache.Entry entry = responseCache.get(key, version);
+        if (entry != null) {
+            write(request, response, entry, "hit");
+            return;
+        }
+        
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+        if (wrapper.getStatus() != HttpStatus.OK.value() || wrapper.getContentType() == null
+                || wrapper.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        entry = responseCache.put(key, version, wrapper.getContentType(), wrapper.getContentAsByteArray());
+        write(request, response, entry, "miss");
+    }
+    
+    private void write(HttpServletRequest request, HttpServletResponse response, ResponseCache.Entry entry,
+                       String outcome) throws IOException {
+        response.setHeader(HttpHeaders.VARY, VARY);
+        response.setHeader(HttpHeaders.ETAG, entry.etag());
+        response.setHeader(CACHE_HEADER, outcome.toUpperCase());
+        if (entry.etag().equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            libraryMetrics.recordResponseCache("not_modified");
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        libraryMetrics.recordResponseCache(outcome);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(entry.contentType());
+        byte[] body = entry.body();
+        if (entry.gzipped() != null && acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = entry.gzipped();
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+    
+    private Target match(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) || request.getQueryString() != null) {
+            return null;
+        }
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        if (catalog.matches(path)) {
+            return new Target("books", responseCache::catalogVersion);
+        }
+        PathPattern.PathMatchInfo bookMatch = book.matchAndExtract(path);
+        if (bookMatch != null) {
+            Long id = Long.valueOf(bookMatch.getUriVariables().get("id"));
+            return new Target("books/" + id, () -> responseCache.bookVersion(id));
+        }
+        PathPattern.PathMatchInfo userMatch = user.matchAndExtract(path);
+        if (userMatch != null) {
+            Long id = Long.valueOf(userMatch.getUriVariables().get("id"));
+            return new Target("users/" + id, () -> responseCache.userVersion(id));
+        }
+        return null;
+    }
+    
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split("\\s*;\\s*q\\s*=\\s*");
+            if (parts[0].equalsIgnoreCase("gzip")) {
+                // gzip;q=0 lo rechaza explícitamente
+                try {
+                    return parts.length == 1 || Double.parseDouble(parts[1]) > 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.libreria.catalog;
+
+import com.example.libreria.dto.ExternalBookDTO;
+
+import java.util.stream.Stream;
+
+/**
+ * Origen del catálogo que se sincroniza con {@code POST /api/books/sync}: la API externa por HTTP
+ * o un JSON local (archivo o classpath), según {@code libreria.catalog.source}.
+ */
+public interface CatalogSource {
+    
+    // Se lee a medida que se consume; quien lo pide debe cerrarlo
+    Stream<ExternalBookDTO> books();
+    
+    // null si el origen no conoce el libro
+    default ExternalBookDTO findById(Long id) {
+        try (Stream<ExternalBookDTO> books = books()) {
+            return books.filter(book -> id.equals(book.getId())).findFirst().orElse(null);
+        }
+    }
+    
+    String description();
+}
@@ -0,0 +1,29 @@
+package com.example.libreria.catalog;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.service.ExternalBookService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.stream.Stream;
+
+// La API externa devuelve el catálogo completo en una respuesta; los libros sueltos se piden por id
+@RequiredArgsConstructor
+public class HttpCatalogSource implements CatalogSource {
+    
+    private final ExternalBookService externalBookService;
+    
+    @Override
+    public Stream<ExternalBookDTO> books() {
+        return externalBookService.fetchAllBooks().stream();
+    }
+    
+    @Override
+    public ExternalBookDTO findById(Long id) {
+        return externalBookService.fetchBookById(id);
+    }
+    
+    @Override
+    public String description() {
+        return "http " + externalBookService.getExternalApiUrl();
+    }
+}
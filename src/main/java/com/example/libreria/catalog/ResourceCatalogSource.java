@@ -0,0 +1,198 @@
+package com.example.libreria.catalog;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Catálogo en un JSON local con el mismo formato que la API externa (un array de libros, como
+ * books-db.json), en un archivo o en el classpath. Si el contenido está comprimido con gzip se
+ * descomprime al vuelo; los libros se parsean de a uno, sin cargar el array completo en memoria.
+ * <p>
+ * {@link #findById} usa un índice por id que se arma con una pasada en la primera búsqueda y se
+ * rehace si cambian la fecha o el tamaño del recurso. En un archivo sin comprimir el índice guarda
+ * la posición de cada libro y la búsqueda parsea solo ese objeto; gzip y classpath no permiten
+ * saltar a una posición, así que ahí el índice guarda los libros ya parseados.
+ */
+@Slf4j
+public class ResourceCatalogSource implements CatalogSource {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final Resource resource;
+    private final ObjectReader reader;
+    private volatile CatalogIndex index;
+    
+    public ResourceCatalogSource(Resource resource, ObjectMapper objectMapper) {
+        this.resource = resource;
+        this.reader = objectMapper.readerFor(ExternalBookDTO.class);
+    }
+    
+    @Override
+    public Stream<ExternalBookDTO> books() {
+        MappingIterator<ExternalBookDTO> iterator;
+        try {
+            iterator = reader.readValues(open());
+        } catch (IOException e) {
+            log.error("Error reading catalog from {}: {}", resource, e.getMessage(), e);
+            throw new RuntimeException("Error al leer el catálogo de " + resource.getDescription() + ": " + e.getMessage(), e);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeQuietly(iterator));
+    }
+    
+    @Override
+    public ExternalBookDTO findById(Long id) {
+        CatalogIndex current = index();
+        if (current.books() != null) {
+            return current.books().get(id);
+        }
+        Long offset = current.offsets().get(id);
+        if (offset == null) {
+            return null;
+        }
+        ExternalBookDTO book = readAt(offset);
+        if (book != null && id.equals(book.getId())) {
+            return book;
+        }
+        // El archivo cambió después de validar el índice: se descarta y esta búsqueda recorre el archivo
+        invalidate(current);
+        return CatalogSource.super.findById(id);
+    }
+    
+    @Override
+    public String description() {
+        return resource.getDescription();
+    }
+    
+    private CatalogIndex index() {
+        long lastModified = lastModified();
+        long length = contentLength();
+        CatalogIndex current = index;
+        if (current != null && current.matches(lastModified, length)) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current == null || !current.matches(lastModified, length)) {
+                current = buildIndex(lastModified, length);
+                index = current;
+            }
+            return current;
+        }
+    }
+    
+    private synchronized void invalidate(CatalogIndex stale) {
+        if (index == stale) {
+            index = null;
+        }
+    }
+    
+    private CatalogIndex buildIndex(long lastModified, long length) {
+        Map<Long, Long> offsets = new HashMap<>();
+        Map<Long, ExternalBookDTO> books = new HashMap<>();
+        boolean seekable;
+        try (InputStream in = open(); JsonParser parser = reader.createParser(in)) {
+            seekable = resource.isFile() && !(in instanceof GZIPInputStream);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("se esperaba un array de libros");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long offset = parser.currentTokenLocation().getByteOffset();
+                ExternalBookDTO book = reader.readValue(parser);
+                if (book.getId() == null) {
+                    continue;
+                }
+                if (seekable) {
+                    offsets.putIfAbsent(book.getId(), offset);
+                } else {
+                    books.putIfAbsent(book.getId(), book);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error indexing catalog from {}: {}", resource, e.getMessage(), e);
+            throw new RuntimeException("Error al leer el catálogo de " + resource.getDescription() + ": " + e.getMessage(), e);
+        }
+        log.info("Indexed {} books from catalog {}", seekable ? offsets.size() : books.size(), resource.getDescription());
+        return seekable
+                ? new CatalogIndex(lastModified, length, offsets, null)
+                : new CatalogIndex(lastModified, length, null, books);
+    }
+    
+    private ExternalBookDTO readAt(long offset) {
+        try (FileChannel channel = FileChannel.open(resource.getFile().toPath())) {
+            if (offset >= channel.size()) {
+                return null;
+            }
+            // Lee solo el objeto que empieza en offset; lo que sigue en el array se ignora
+            return reader.readValue(Channels.newInputStream(channel.position(offset)));
+        } catch (IOException e) {
+            log.warn("Could not read catalog entry at offset {} of {}: {}", offset, resource, e.getMessage());
+            return null;
+        }
+    }
+    
+    // -1 si el recurso no lo informa (por ejemplo, dentro de un jar sin fecha): el índice no se invalida
+    private long lastModified() {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    
+    private long contentLength() {
+        try {
+            return resource.contentLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    
+    private InputStream open() throws IOException {
+        BufferedInputStream in = new BufferedInputStream(resource.getInputStream(), BUFFER_SIZE);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        // Cabecera gzip: 1f 8b
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return in;
+    }
+    
+    private static void closeQuietly(MappingIterator<?> iterator) {
+        try {
+            iterator.close();
+        } catch (IOException e) {
+            log.warn("Could not close catalog stream: {}", e.getMessage());
+        }
+    }
+    
+    // offsets si el recurso es un archivo sin comprimir; books en otro caso
+    private record CatalogIndex(long lastModified, long length, Map<Long, Long> offsets, Map<Long, ExternalBookDTO> books) {
+        
+        boolean matches(long lastModified, long length) {
+            return this.lastModified == lastModified && this.length == length;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.libreria.config;
+
+import com.example.libreria.catalog.CatalogSource;
+import com.example.libreria.catalog.HttpCatalogSource;
+import com.example.libreria.catalog.ResourceCatalogSource;
+import com.example.libreria.service.ExternalBookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+// libreria.catalog.source: http (API externa), file o classpath (JSON local en libreria.catalog.location)
+@Configuration
+public class CatalogSourceConfig {
+    
+    @Bean
+    public CatalogSource catalogSource(@Value("${libreria.catalog.source:http}") String source,
+                                       @Value("${libreria.catalog.location:}") String location,
+                                       ExternalBookService externalBookService, ObjectMapper objectMapper) {
+        if (!source.equalsIgnoreCase("http") && location.isBlank()) {
+            throw new IllegalStateException("libreria.catalog.location es obligatorio para la fuente " + source);
+        }
+        return switch (source.toLowerCase()) {
+            case "http" -> new HttpCatalogSource(externalBookService);
+            case "file" -> new ResourceCatalogSource(new FileSystemResource(location), objectMapper);
+            case "classpath" -> new ResourceCatalogSource(new ClassPathResource(location), objectMapper);
+            default -> throw new IllegalStateException("Fuente de catálogo desconocida: " + source);
+        };
+    }
+}
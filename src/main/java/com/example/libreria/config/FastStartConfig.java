@@ -0,0 +1,58 @@
+package com.example.libreria.config;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+// Perfil faststart: los beans no críticos (springdoc / OpenAPI UI por defecto) se crean recién al primer uso
+@Configuration
+@Profile("faststart")
+public class FastStartConfig {
+    
+    @Bean
+    public static BeanFactoryPostProcessor lazyNonCriticalBeans() {
+        return new LazyPackagesPostProcessor();
+    }
+    
+    static class LazyPackagesPostProcessor implements BeanFactoryPostProcessor, EnvironmentAware {
+        
+        private List<String> lazyPackages = List.of("org.springdoc.");
+        
+        @Override
+        public void setEnvironment(Environment environment) {
+            String[] packages = environment.getProperty("libreria.faststart.lazy-packages", String[].class);
+            if (packages != null) {
+                lazyPackages = List.of(packages);
+            }
+        }
+        
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                String className = declaringClassName(definition);
+                if (className != null && lazyPackages.stream().anyMatch(className::startsWith)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        }
+        
+        private static String declaringClassName(BeanDefinition definition) {
+            if (definition.getBeanClassName() != null) {
+                return definition.getBeanClassName();
+            }
+            if (definition instanceof AnnotatedBeanDefinition annotated && annotated.getFactoryMethodMetadata() != null) {
+                return annotated.getFactoryMethodMetadata().getDeclaringClassName();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.libreria.config;
+
+import com.example.libreria.notification.FileNoticeTransport;
+import com.example.libreria.notification.LoggingNoticeTransport;
+import com.example.libreria.notification.NoticeTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+// libreria.overdue-notices.transport: log o file (JSON lines en libreria.overdue-notices.file)
+@Configuration
+public class NoticeTransportConfig {
+    
+    @Bean
+    public NoticeTransport noticeTransport(@Value("${libreria.overdue-notices.transport:log}") String transport,
+                                           @Value("${libreria.overdue-notices.file:./data/notices/overdue-notices.jsonl}") Path file,
+                                           ObjectMapper objectMapper) {
+        return switch (transport.toLowerCase()) {
+            case "log" -> new LoggingNoticeTransport();
+            case "file" -> new FileNoticeTransport(file, objectMapper);
+            default -> throw new IllegalStateException("Transporte de avisos desconocido: " + transport);
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.libreria.config;
+
+import com.example.libreria.ratelimit.RateLimitProperties;
+import com.example.libreria.ratelimit.TokenBucketTable;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+    
+    @Bean
+    public TokenBucketTable tokenBucketTable(RateLimitProperties properties) {
+        return new TokenBucketTable(properties.getStripes(), properties.getMaxKeys());
+    }
+}
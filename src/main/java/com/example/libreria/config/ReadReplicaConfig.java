@@ -0,0 +1,64 @@
+package com.example.libreria.config;
+
+import com.example.libreria.jdbc.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Con libreria.datasource.replica.url hay dos pools, primaria (spring.datasource) y réplica, detrás de un
+// DataSource que elige por transacción; sin esa propiedad queda el DataSource único de Spring Boot
+@Configuration
+@ConditionalOnProperty(name = "libreria.datasource.replica.url")
+public class ReadReplicaConfig {
+    
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry,
+            @Value("${libreria.datasource.replica.url}") String replicaUrl,
+            @Value("${libreria.datasource.replica.username:}") String replicaUsername,
+            @Value("${libreria.datasource.replica.password:}") String replicaPassword,
+            @Value("${libreria.datasource.replica.stickiness:5s}") Duration stickiness) {
+        Binder binder = Binder.get(environment);
+        MicrometerMetricsTrackerFactory poolMetrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+        
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        primary.setMetricsTrackerFactory(poolMetrics);
+        
+        // Usuario y contraseña de la primaria, salvo que la réplica tenga los suyos
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(replicaUrl)
+                .username(replicaUsername.isEmpty() ? properties.determineUsername() : replicaUsername)
+                .password(replicaUsername.isEmpty() ? properties.determinePassword() : replicaPassword)
+                .build();
+        binder.bind("libreria.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName(ReadWriteRoutingDataSource.REPLICA);
+        replica.setMetricsTrackerFactory(poolMetrics);
+        
+        return new ReadWriteRoutingDataSource(primary, replica, stickiness);
+    }
+    
+    // La conexión real se pide con la primera sentencia, cuando la transacción ya dice si es de sólo lectura
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.libreria.config;
+
+import com.example.libreria.jdbc.SqlStatementStats;
+import com.example.libreria.metrics.LibraryMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Abre los contadores SQL al inicio del request y los publica como métricas al final
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "libreria.sql-accounting.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class SqlAccountingFilter extends OncePerRequestFilter {
+    
+    private final LibraryMetrics libraryMetrics;
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatementStats stats = SqlStatementStats.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            libraryMetrics.recordRequestSql(request.getMethod(), pattern != null ? pattern.toString() : "UNKNOWN",
+                    stats.getStatementCount(), stats.getElapsedNanos());
+            SqlStatementStats.clear();
+        }
+    }
+}
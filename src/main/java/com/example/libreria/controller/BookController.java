@@ -1,11 +1,20 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.availability.AvailabilityStream;
+import com.example.libreria.dto.BookAvailabilityDTO;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.PopularBookDTO;
+import com.example.libreria.service.AvailabilityService;
 import com.example.libreria.service.BookService;
+import com.example.libreria.service.PopularityService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -14,6 +23,9 @@ import java.util.List;
 public class BookController {
     
     private final BookService bookService;
+    private final AvailabilityService availabilityService;
+    private final PopularityService popularityService;
+    private final AvailabilityStream availabilityStream;
     
     @PostMapping("/sync")
     public ResponseEntity<String> syncBooks() {
@@ -27,12 +39,33 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
     
+    @GetMapping("/popular")
+    public ResponseEntity<List<PopularBookDTO>> getPopularBooks(@RequestParam(defaultValue = "10") int limit) {
+        List<PopularBookDTO> popular = popularityService.getPopularBooks(limit);
+        return ResponseEntity.ok(popular);
+    }
+    
+    // Reemplaza el polling de GET /api/books: una foto de la disponibilidad y después sólo los cambios
+    @GetMapping(path = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return availabilityStream.subscribe(lastEventId);
+    }
+    
     @GetMapping("/{externalId}")
     public ResponseEntity<BookResponseDTO> getBookByExternalId(@PathVariable Long externalId) {
         BookResponseDTO book = bookService.getBookByExternalId(externalId);
         return ResponseEntity.ok(book);
     }
     
+    @GetMapping("/{externalId}/availability")
+    public ResponseEntity<BookAvailabilityDTO> getAvailability(
+            @PathVariable Long externalId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        BookAvailabilityDTO availability = availabilityService.getAvailability(externalId, from, to);
+        return ResponseEntity.ok(availability);
+    }
+    
     @PutMapping("/{externalId}/stock")
     public ResponseEntity<BookResponseDTO> updateStock(
             @PathVariable Long externalId,
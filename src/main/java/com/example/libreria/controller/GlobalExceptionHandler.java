@@ -1,5 +1,12 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.exception.BookWaitlistedException;
+import com.example.libreria.exception.CatalogUnavailableException;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.exception.UnavailableException;
+import com.example.libreria.exception.ValidationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -13,6 +20,42 @@ import java.util.Map;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
     
+    // 202: la solicitud quedó en la lista de espera, el cliente no necesita reintentar
+    @ExceptionHandler(BookWaitlistedException.class)
+    public ResponseEntity<Map<String, Object>> handleBookWaitlisted(BookWaitlistedException e) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(e.getBody());
+    }
+    
+    // Los rechazos esperados traen el cuerpo ya armado
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleNotFound(NotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getBody());
+    }
+    
+    // Incluye IdempotencyConflictException
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Map<String, String>> handleConflict(ConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getBody());
+    }
+    
+    @ExceptionHandler(UnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleUnavailable(UnavailableException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getBody());
+    }
+    
+    @ExceptionHandler(ValidationException.class)
+    public ResponseEntity<Map<String, String>> handleValidation(ValidationException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getBody());
+    }
+    
+    @ExceptionHandler(CatalogUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleCatalogUnavailable(CatalogUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getBody());
+    }
+    
+    // Errores no previstos (API externa caída, tiempo agotado)
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException e) {
         Map<String, String> error = new HashMap<>();
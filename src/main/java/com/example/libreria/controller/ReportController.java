@@ -0,0 +1,62 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.ConsistencyReportDTO;
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.dto.StockReconciliationDTO;
+import com.example.libreria.service.RevenueReportService;
+import com.example.libreria.service.StockReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+public class ReportController {
+    
+    private final RevenueReportService revenueReportService;
+    private final StockReconciliationService stockReconciliationService;
+    
+    @GetMapping("/totals")
+    public ResponseEntity<RevenueReportDTO> getTotals() {
+        return ResponseEntity.ok(revenueReportService.getTotals());
+    }
+    
+    @GetMapping("/books/{externalId}")
+    public ResponseEntity<RevenueReportDTO> getBookReport(@PathVariable Long externalId) {
+        return ResponseEntity.ok(revenueReportService.getBookReport(externalId));
+    }
+    
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<RevenueReportDTO> getUserReport(@PathVariable Long userId) {
+        return ResponseEntity.ok(revenueReportService.getUserReport(userId));
+    }
+    
+    @GetMapping("/months")
+    public ResponseEntity<List<RevenueReportDTO>> getMonthlyReports() {
+        return ResponseEntity.ok(revenueReportService.getMonthlyReports());
+    }
+    
+    @GetMapping("/months/{month}")
+    public ResponseEntity<RevenueReportDTO> getMonthReport(@PathVariable String month) {
+        return ResponseEntity.ok(revenueReportService.getMonthReport(month));
+    }
+    
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuild() {
+        return ResponseEntity.ok(Map.of("rows", revenueReportService.rebuild()));
+    }
+    
+    @GetMapping("/consistency")
+    public ResponseEntity<ConsistencyReportDTO> checkConsistency() {
+        return ResponseEntity.ok(revenueReportService.checkConsistency());
+    }
+    
+    @PostMapping("/stock-reconciliation")
+    public ResponseEntity<StockReconciliationDTO> reconcileStock(@RequestParam(defaultValue = "false") boolean full) {
+        return ResponseEntity.ok(stockReconciliationService.reconcile(full));
+    }
+}
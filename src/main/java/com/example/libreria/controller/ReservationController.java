@@ -3,6 +3,8 @@ package com.example.libreria.controller;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.service.BookHydrationService;
+import com.example.libreria.service.IdempotencyService;
 import com.example.libreria.service.ReservationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -18,12 +20,21 @@ import java.util.List;
 public class ReservationController {
     
     private final ReservationService reservationService;
+    private final IdempotencyService idempotencyService;
+    private final BookHydrationService bookHydrationService;
     
     @PostMapping
     public ResponseEntity<ReservationResponseDTO> createReservation(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody ReservationRequestDTO requestDTO) {
-        ReservationResponseDTO reservation = reservationService.createReservation(requestDTO);
-        return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+        // La hidratación va por fuera: execute corre la operación en una transacción, y la llamada al catálogo
+        // no debe retenerla. Si el libro no estaba, la clave se libera y el reintento la vuelve a tomar
+        return bookHydrationService.withHydration(requestDTO.getBookExternalId(),
+                () -> idempotencyService.execute("create-reservation", idempotencyKey, requestDTO,
+                        ReservationResponseDTO.class, () -> {
+                            ReservationResponseDTO reservation = reservationService.createReservation(requestDTO);
+                            return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+                        }));
     }
     
     @GetMapping("/{id}")
@@ -58,10 +69,14 @@ public class ReservationController {
     
     @PostMapping("/{id}/return")
     public ResponseEntity<ReservationResponseDTO> returnBook(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @PathVariable Long id,
             @Valid @RequestBody ReturnBookRequestDTO returnRequest) {
-        ReservationResponseDTO reservation = reservationService.returnBook(id, returnRequest);
-        return ResponseEntity.ok(reservation);
+        return idempotencyService.execute("return-book", idempotencyKey, List.of(id, returnRequest),
+                ReservationResponseDTO.class, () -> {
+                    ReservationResponseDTO reservation = reservationService.returnBook(id, returnRequest);
+                    return ResponseEntity.ok(reservation);
+                });
     }
 }
 
@@ -2,6 +2,8 @@ package com.example.libreria.controller;
 
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.dto.UserReservationSummaryDTO;
+import com.example.libreria.service.ReservationSummaryService;
 import com.example.libreria.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +19,7 @@ import java.util.List;
 public class UserController {
     
     private final UserService userService;
+    private final ReservationSummaryService reservationSummaryService;
     
     @PostMapping
     public ResponseEntity<UserResponseDTO> createUser(@Valid @RequestBody UserRequestDTO requestDTO) {
@@ -42,6 +45,12 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
     
+    @GetMapping("/{id}/summary")
+    public ResponseEntity<UserReservationSummaryDTO> getUserSummary(@PathVariable Long id) {
+        UserReservationSummaryDTO summary = reservationSummaryService.getSummary(id);
+        return ResponseEntity.ok(summary);
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<UserResponseDTO> updateUser(
             @PathVariable Long id,
@@ -0,0 +1,25 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.service.WaitlistService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/waitlist")
+@RequiredArgsConstructor
+public class WaitlistController {
+    
+    private final WaitlistService waitlistService;
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<WaitlistEntryDTO> getEntry(@PathVariable Long id) {
+        return ResponseEntity.ok(waitlistService.getEntry(id));
+    }
+    
+    @DeleteMapping("/{id}")
+    public ResponseEntity<WaitlistEntryDTO> cancel(@PathVariable Long id) {
+        return ResponseEntity.ok(waitlistService.cancel(id));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityChangeDTO {
+    
+    private Long externalId;
+    private Integer availableQuantity;
+    // Versión del stream en la que el libro tomó este valor
+    private Long version;
+}
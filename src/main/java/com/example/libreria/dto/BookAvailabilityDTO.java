@@ -0,0 +1,31 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDTO {
+    
+    private Long bookExternalId;
+    private LocalDate from;
+    private LocalDate to;
+    private Integer stockQuantity;
+    // Mínimo de ejemplares libres en todo el período: 0 si algún día no se puede reservar
+    private Integer minAvailable;
+    private List<DayAvailability> days;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DayAvailability {
+        
+        private LocalDate date;
+        private Integer available;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PopularBookDTO {
+    
+    private Long externalId;
+    private String title;
+    // Estimaciones del sketch: nunca por debajo de la cuenta real
+    private Long reservations;
+    private Long reservationsToday;
+    // Buena parte de las reservas de la ventana son de hoy: candidato a sumar stock
+    private Boolean hot;
+    private Integer stockQuantity;
+    private Integer availableQuantity;
+}
@@ -27,6 +27,7 @@ public class ReservationResponseDTO {
     private BigDecimal totalFee;
     private BigDecimal lateFee;
     private Reservation.ReservationStatus status;
+    private Boolean pendingStart;
     private LocalDateTime createdAt;
 }
 
@@ -0,0 +1,23 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.RevenueAggregate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueReportDTO {
+    
+    private RevenueAggregate.Scope scope;
+    private String key;
+    private Long reservationCount;
+    private Long activeCount;
+    private Long rentalDays;
+    private BigDecimal totalFee;
+    private BigDecimal lateFee;
+    private Long lateReturns;
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReconciliationDTO {
+    
+    private int chunks;
+    // Chunks con el mismo checksum que en la pasada anterior y sin diferencias pendientes
+    private int skippedChunks;
+    private int checkedBooks;
+    private int mismatches;
+    private int repaired;
+    private List<String> details;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserReservationSummaryDTO {
+    
+    private Long userId;
+    private Integer activeCount;
+    private Long overdueCount;
+    private Long lifetimeReservations;
+    private BigDecimal outstandingLateFees;
+    private Integer maxActiveReservations;
+}
@@ -0,0 +1,24 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.WaitlistEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntryDTO {
+    
+    private Long id;
+    private Long bookExternalId;
+    private Long userId;
+    private Integer rentalDays;
+    private WaitlistEntry.WaitlistStatus status;
+    // Posición en la cola (1 = siguiente); sólo para entradas en espera
+    private Long position;
+    private LocalDateTime createdAt;
+    private LocalDateTime holdExpiresAt;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.event;
+
+// Cambio de available_quantity que ningún otro evento refleja: el alta lo dice con poolTaken y los ajustes
+// y sincronizaciones traen el valor final
+public record AvailabilityChangedEvent(
+        Long bookExternalId,
+        Integer delta,
+        Cause cause) implements DomainEvent {
+    
+    public enum Cause {
+        // Una reserva a futuro llegó a su fecha y tomó el ejemplar
+        RESERVATION_STARTED,
+        // Devolución, hold vencido o cancelado sin nadie más en la lista de espera: el ejemplar vuelve al pool
+        COPY_RELEASED,
+        // Ejemplares del pool asignados a la lista de espera
+        WAITERS_PROMOTED,
+        // Ejemplares de las reservas abiertas de un usuario borrado
+        USER_DELETED
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.libreria.event;
+
+import java.math.BigDecimal;
+
+public record BookSyncedEvent(
+        Long bookExternalId,
+        String title,
+        BigDecimal price,
+        Integer stockQuantity,
+        Integer availableQuantity,
+        boolean created) implements DomainEvent {
+}
@@ -0,0 +1,5 @@
+package com.example.libreria.event;
+
+// Eventos de dominio publicados por los servicios (reservas, stock, sincronización)
+public interface DomainEvent {
+}
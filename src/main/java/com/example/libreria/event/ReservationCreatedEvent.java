@@ -0,0 +1,17 @@
+package com.example.libreria.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ReservationCreatedEvent(
+        Long reservationId,
+        Long userId,
+        Long bookExternalId,
+        LocalDate startDate,
+        LocalDate expectedReturnDate,
+        Integer rentalDays,
+        BigDecimal totalFee,
+        // true si el alta descontó un ejemplar de available_quantity; false si empieza más adelante
+        // o usa el ejemplar que la lista de espera ya le había asignado
+        boolean poolTaken) implements DomainEvent {
+}
@@ -0,0 +1,15 @@
+package com.example.libreria.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ReservationReturnedEvent(
+        Long reservationId,
+        Long userId,
+        Long bookExternalId,
+        LocalDate startDate,
+        LocalDate expectedReturnDate,
+        LocalDate returnDate,
+        BigDecimal lateFee,
+        BigDecimal totalFee) implements DomainEvent {
+}
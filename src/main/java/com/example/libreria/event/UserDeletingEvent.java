@@ -0,0 +1,6 @@
+package com.example.libreria.event;
+
+// Aviso síncrono dentro de la transacción de borrado, antes de eliminar las reservas del
+// usuario, para que las proyecciones descuenten sus aportes. No se registra en el journal.
+public record UserDeletingEvent(Long userId) {
+}
@@ -0,0 +1,16 @@
+package com.example.libreria.exception;
+
+// 404 de un libro que todavía no está en la base local: quien llama puede traerlo del catálogo y reintentar
+public class BookNotSyncedException extends NotFoundException {
+    
+    private final Long externalId;
+    
+    public BookNotSyncedException(Long externalId) {
+        super("Libro no encontrado con ID externo: " + externalId);
+        this.externalId = externalId;
+    }
+    
+    public Long getExternalId() {
+        return externalId;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.libreria.exception;
+
+import com.example.libreria.dto.WaitlistEntryDTO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// El libro no tenía ejemplares y la solicitud quedó en la lista de espera; como los rechazos, sin stack trace
+public class BookWaitlistedException extends RuntimeException {
+    
+    private final WaitlistEntryDTO entry;
+    
+    public BookWaitlistedException(String message, WaitlistEntryDTO entry) {
+        super(message, null, false, false);
+        this.entry = entry;
+    }
+    
+    public WaitlistEntryDTO getEntry() {
+        return entry;
+    }
+    
+    // Cuerpo de la respuesta 202; IdempotencyService lo guarda para repetirlo
+    public Map<String, Object> getBody() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", getMessage());
+        body.put("waitlistEntry", entry);
+        return body;
+    }
+}
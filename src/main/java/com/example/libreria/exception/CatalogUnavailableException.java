@@ -0,0 +1,9 @@
+package com.example.libreria.exception;
+
+// 503: el catálogo no respondió a tiempo al traer un libro no sincronizado; se puede reintentar
+public class CatalogUnavailableException extends LibraryException {
+    
+    public CatalogUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.libreria.exception;
+
+// 409: la operación choca con el estado actual (email en uso, reserva ya devuelta, límite de préstamos)
+public class ConflictException extends LibraryException {
+    
+    public ConflictException(String message) {
+        super(message);
+    }
+}
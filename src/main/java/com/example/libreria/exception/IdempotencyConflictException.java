@@ -0,0 +1,9 @@
+package com.example.libreria.exception;
+
+// La clave está en uso por otra solicitud en curso o ya se usó con otro cuerpo
+public class IdempotencyConflictException extends ConflictException {
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
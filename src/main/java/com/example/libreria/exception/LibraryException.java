@@ -0,0 +1,22 @@
+package com.example.libreria.exception;
+
+import java.util.Map;
+
+/**
+ * Rechazo esperado de una operación (id inexistente, sin stock, email repetido, dato inválido). No captura
+ * el stack trace: bajo carga se lanzan muchas y no indican un error del programa. El cuerpo de la
+ * respuesta se arma una sola vez, al crearla; GlobalExceptionHandler elige el código según el tipo.
+ */
+public abstract class LibraryException extends RuntimeException {
+    
+    private final Map<String, String> body;
+    
+    protected LibraryException(String message) {
+        super(message, null, false, false);
+        this.body = Map.of("message", message);
+    }
+    
+    public Map<String, String> getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.libreria.exception;
+
+// 404: el usuario, libro, reserva o entrada de lista de espera no existe
+public class NotFoundException extends LibraryException {
+    
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
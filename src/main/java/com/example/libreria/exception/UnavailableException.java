@@ -0,0 +1,9 @@
+package com.example.libreria.exception;
+
+// 409: no quedan ejemplares libres del libro, ahora o en el período pedido
+public class UnavailableException extends LibraryException {
+    
+    public UnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.libreria.exception;
+
+// 422: la solicitud está bien formada pero sus valores no tienen sentido (fechas, períodos, cantidades)
+public class ValidationException extends LibraryException {
+    
+    public ValidationException(String message) {
+        super(message);
+    }
+}
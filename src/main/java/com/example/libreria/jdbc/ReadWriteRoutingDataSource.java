@@ -0,0 +1,104 @@
+package com.example.libreria.jdbc;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Manda las transacciones de sólo lectura al pool de la réplica y el resto al de la primaria. Va
+ * detrás de un LazyConnectionDataSourceProxy: la conexión se elige con la primera sentencia, cuando
+ * la transacción ya está marcada como de sólo lectura. Las lecturas vuelven a la primaria si la
+ * réplica está atrasada (según {@link ReplicaLagMonitor}) o si el mismo cliente escribió hace menos
+ * de {@code stickiness}.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+    
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long stickinessMillis;
+    
+    private volatile boolean replicaUsable;
+    private volatile BiConsumer<String, String> routeListener = (route, reason) -> {
+    };
+    
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration stickiness) {
+        this.primary = primary;
+        this.replica = replica;
+        this.stickinessMillis = stickiness.toMillis();
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+    
+    public DataSource getPrimary() {
+        return primary;
+    }
+    
+    public DataSource getReplica() {
+        return replica;
+    }
+    
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+    
+    public void setReplicaUsable(boolean replicaUsable) {
+        this.replicaUsable = replicaUsable;
+    }
+    
+    // Recibe (destino, motivo) de cada conexión pedida; lo registra quien publica las métricas
+    public void setRouteListener(BiConsumer<String, String> routeListener) {
+        this.routeListener = routeListener;
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                stickToPrimaryAfterCommit();
+            }
+            return route(PRIMARY, "write");
+        }
+        if (ReplicaRoutingContext.isStickyToPrimary()) {
+            return route(PRIMARY, "sticky");
+        }
+        if (!replicaUsable) {
+            return route(PRIMARY, "replica-lagging");
+        }
+        return route(REPLICA, "read");
+    }
+    
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : new DataSource[]{replica, primary}) {
+            if (dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+    
+    private String route(String target, String reason) {
+        routeListener.accept(target, reason);
+        return target;
+    }
+    
+    // Una transacción deshecha no escribió nada que haya que leer
+    private void stickToPrimaryAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ReplicaRoutingContext.recordWrite(System.currentTimeMillis() + stickinessMillis);
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.libreria.jdbc;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mide el atraso de la réplica con un latido: escribe la hora en replica_heartbeat de la primaria y
+ * lee la última que llegó a la réplica. Si el atraso supera max-lag, o la réplica no responde, las
+ * lecturas vuelven a la primaria hasta el próximo chequeo que la encuentre al día.
+ */
+@Component
+@ConditionalOnProperty(name = "libreria.datasource.replica.url")
+@Slf4j
+public class ReplicaLagMonitor {
+    
+    private static final String UPDATE_HEARTBEAT = "UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1";
+    private static final String INSERT_HEARTBEAT = "INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)";
+    private static final String READ_HEARTBEAT = "SELECT beat_at FROM replica_heartbeat WHERE id = 1";
+    
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+    // -1 mientras la réplica no responde
+    private final AtomicLong lagMillis = new AtomicLong(-1);
+    
+    public ReplicaLagMonitor(ReadWriteRoutingDataSource routingDataSource, LibraryMetrics libraryMetrics,
+                             @Value("${libreria.datasource.replica.max-lag:2s}") Duration maxLag) {
+        this.routingDataSource = routingDataSource;
+        this.primary = new JdbcTemplate(routingDataSource.getPrimary());
+        this.replica = new JdbcTemplate(routingDataSource.getReplica());
+        this.maxLagMillis = maxLag.toMillis();
+        routingDataSource.setRouteListener(libraryMetrics::recordDataSourceRoute);
+        libraryMetrics.registerReplicaLagGauge(lagMillis::get);
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.datasource.replica.lag-check-interval:PT1S}")
+    public void check() {
+        long now = System.currentTimeMillis();
+        boolean usable;
+        try {
+            beat(new Timestamp(now));
+            Timestamp replicated = replica.queryForObject(READ_HEARTBEAT, Timestamp.class);
+            long lag = replicated != null ? Math.max(0, now - replicated.getTime()) : -1;
+            lagMillis.set(lag);
+            usable = lag >= 0 && lag <= maxLagMillis;
+        } catch (DataAccessException e) {
+            lagMillis.set(-1);
+            usable = false;
+            if (routingDataSource.isReplicaUsable()) {
+                log.warn("Replica heartbeat failed: {}", e.getMessage());
+            }
+        }
+        if (usable != routingDataSource.isReplicaUsable()) {
+            log.info("Replica {} (lag {} ms)", usable ? "back in rotation" : "out of rotation", lagMillis.get());
+        }
+        routingDataSource.setReplicaUsable(usable);
+    }
+    
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+    
+    private void beat(Timestamp now) {
+        if (primary.update(UPDATE_HEARTBEAT, now) == 0) {
+            try {
+                primary.update(INSERT_HEARTBEAT, now);
+            } catch (DuplicateKeyException e) {
+                // otra instancia creó la fila al mismo tiempo
+                primary.update(UPDATE_HEARTBEAT, now);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.libreria.jdbc;
+
+import java.util.function.LongConsumer;
+
+// Lectura de lo propio: después de una escritura, hasta cuándo las transacciones de sólo lectura
+// del mismo cliente (o del mismo hilo, fuera de un request) siguen yendo a la base primaria
+public final class ReplicaRoutingContext {
+    
+    private static final ThreadLocal<ReplicaRoutingContext> CURRENT = ThreadLocal.withInitial(ReplicaRoutingContext::new);
+    
+    private long primaryUntilMillis;
+    private LongConsumer onWrite;
+    
+    private ReplicaRoutingContext() {
+    }
+    
+    // Al inicio del request: el límite que trae el cliente y cómo devolverle uno nuevo
+    public static void open(long primaryUntilMillis, LongConsumer onWrite) {
+        ReplicaRoutingContext context = CURRENT.get();
+        context.primaryUntilMillis = primaryUntilMillis;
+        context.onWrite = onWrite;
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+    
+    public static boolean isStickyToPrimary() {
+        return System.currentTimeMillis() < CURRENT.get().primaryUntilMillis;
+    }
+    
+    static void recordWrite(long primaryUntilMillis) {
+        ReplicaRoutingContext context = CURRENT.get();
+        context.primaryUntilMillis = Math.max(context.primaryUntilMillis, primaryUntilMillis);
+        if (context.onWrite != null) {
+            context.onWrite.accept(context.primaryUntilMillis);
+        }
+    }
+}
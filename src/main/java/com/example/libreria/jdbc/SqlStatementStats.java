@@ -0,0 +1,49 @@
+package com.example.libreria.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+// Contadores de sentencias JDBC del request en curso (un objeto por hilo)
+public final class SqlStatementStats {
+    
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+    
+    private int statementCount;
+    private long elapsedNanos;
+    
+    private SqlStatementStats() {
+    }
+    
+    public static SqlStatementStats start() {
+        SqlStatementStats stats = new SqlStatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+    
+    public static SqlStatementStats current() {
+        return CURRENT.get();
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+    
+    static void record(long nanos) {
+        SqlStatementStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.statementCount++;
+            stats.elapsedNanos += nanos;
+        }
+    }
+    
+    public int getStatementCount() {
+        return statementCount;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+}
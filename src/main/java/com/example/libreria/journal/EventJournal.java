@@ -0,0 +1,325 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.event.DomainEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal binario append-only de eventos de dominio.
+ * <p>
+ * Cada segmento es un archivo mapeado en memoria de tamaño fijo ({@code journal-<primera secuencia>.seg});
+ * al llenarse se abre el siguiente. Un registro es {@code [tamaño][crc32][secuencia][timestamp][tipo][payload]}
+ * y el tamaño se escribe al final, así un lector nunca ve un registro a medias. El append sólo copia bytes al
+ * mapa; el fsync lo hace un hilo aparte cada {@code flush-interval} para todos los registros pendientes
+ * (group commit). Los segmentos cerrados cuyos registros tienen más de {@code retention} se mueven a
+ * {@code archive-directory} o, si no hay uno configurado, se borran.
+ */
+@Component
+@ConditionalOnProperty(name = "libreria.journal.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class EventJournal implements AutoCloseable {
+    
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 1;
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    private static final int MAX_PAYLOAD = 64 * 1024;
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration retention;
+    // null: los segmentos vencidos se borran
+    private final Path archiveDirectory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_PAYLOAD);
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+    private final ScheduledExecutorService flusher;
+    
+    private MappedByteBuffer segment;
+    private int flushedPosition;
+    private long nextSequence;
+    private volatile long lastSequence;
+    private volatile boolean closed;
+    
+    public EventJournal(@Value("${libreria.journal.directory:./data/journal}") String directory,
+                        @Value("${libreria.journal.segment-size:64MB}") DataSize segmentSize,
+                        @Value("${libreria.journal.flush-interval:5ms}") Duration flushInterval,
+                        @Value("${libreria.journal.retention:0s}") Duration retention,
+                        @Value("${libreria.journal.archive-directory:}") String archiveDirectory) throws IOException {
+        this.directory = Path.of(directory);
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.retention = retention;
+        this.archiveDirectory = archiveDirectory.isBlank() ? null : Path.of(archiveDirectory);
+        Files.createDirectories(this.directory);
+        this.lockChannel = FileChannel.open(this.directory.resolve("journal.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.fileLock = tryLock(lockChannel);
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("El journal " + this.directory + " ya está abierto por otro proceso");
+        }
+        openLastSegment();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMicros = Math.max(1, flushInterval.toNanos() / 1000);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+        log.info("Event journal abierto en {} (última secuencia {})", this.directory, lastSequence);
+    }
+    
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+    
+    public long append(DomainEvent event) {
+        JournalEventType type = JournalCodec.typeOf(event);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("El journal está cerrado");
+            }
+            scratch.clear();
+            JournalCodec.encode(event, scratch);
+            scratch.flip();
+            int recordSize = HEADER_SIZE + scratch.remaining();
+            if (recordSize > segmentSize) {
+                throw new IllegalArgumentException("El evento no entra en un segmento del journal: " + recordSize + " bytes");
+            }
+            if (segment.remaining() < recordSize) {
+                roll();
+            }
+            long sequence = nextSequence++;
+            int start = segment.position();
+            segment.position(start + 8);
+            segment.putLong(sequence);
+            segment.putLong(System.currentTimeMillis());
+            segment.put(type.code());
+            segment.put(scratch);
+            crc.reset();
+            crc.update(segment.slice(start + 8, recordSize - 8));
+            segment.putInt(start + 4, (int) crc.getValue());
+            // El tamaño va último: marca el registro como completo para los lectores
+            segment.putInt(start, recordSize);
+            lastSequence = sequence;
+            return sequence;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo rotar el segmento del journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long lastSequence() {
+        return lastSequence;
+    }
+    
+    public Path directory() {
+        return directory;
+    }
+    
+    // Recorre desde fromSequence hasta el último registro escrito
+    public long replay(long fromSequence, Consumer<JournalRecord> consumer) {
+        JournalReader reader = new JournalReader(directory, fromSequence);
+        long count = 0;
+        List<JournalRecord> batch;
+        while (!(batch = reader.poll(1024)).isEmpty()) {
+            batch.forEach(consumer);
+            count += batch.size();
+        }
+        return count;
+    }
+    
+    // Lector incremental: cada poll() devuelve lo escrito desde la llamada anterior
+    public JournalReader tail(long fromSequence) {
+        return new JournalReader(directory, fromSequence);
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.journal.retention-check-interval:PT1H}")
+    public void applyRetention() {
+        if (retention.isZero() || closed) {
+            return;
+        }
+        try {
+            int removed = removeSegmentsBefore(System.currentTimeMillis() - retention.toMillis());
+            if (removed > 0) {
+                log.info("Journal: {} segmentos {} por retención", removed, archiveDirectory != null ? "archivados" : "borrados");
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("No se pudo aplicar la retención del journal: {}", e.getMessage(), e);
+        }
+    }
+    
+    // Un segmento cerrado sólo tiene registros anteriores al primero del siguiente; el último es el que se escribe
+    int removeSegmentsBefore(long cutoffMillis) throws IOException {
+        List<Path> segments = listSegments(directory);
+        int removed = 0;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            Long nextStarted = firstTimestampOf(segments.get(i + 1));
+            if (nextStarted == null || nextStarted >= cutoffMillis) {
+                break;
+            }
+            Path segment = segments.get(i);
+            if (archiveDirectory != null) {
+                Files.createDirectories(archiveDirectory);
+                Files.move(segment, archiveDirectory.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(segment);
+            }
+            removed++;
+        }
+        return removed;
+    }
+    
+    public void flush() {
+        MappedByteBuffer target;
+        int from;
+        int to;
+        lock.lock();
+        try {
+            target = segment;
+            from = flushedPosition;
+            to = segment.position();
+            flushedPosition = to;
+        } finally {
+            lock.unlock();
+        }
+        if (to > from) {
+            target.force(from, to - from);
+        }
+    }
+    
+    @PreDestroy
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment.force();
+            fileLock.release();
+            lockChannel.close();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Event journal cerrado (última secuencia {})", lastSequence);
+    }
+    
+    private void flushQuietly() {
+        try {
+            if (!closed) {
+                flush();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al sincronizar el journal a disco: {}", e.getMessage(), e);
+        }
+    }
+    
+    private void roll() throws IOException {
+        segment.force();
+        segment = mapSegment(nextSequence);
+        flushedPosition = 0;
+    }
+    
+    private MappedByteBuffer mapSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(segmentFileName(firstSequence));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+    
+    private void openLastSegment() throws IOException {
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            segment = mapSegment(1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            nextSequence = firstSequenceOf(last);
+            segment = mapSegment(nextSequence);
+            // Se avanza hasta el primer registro vacío o inválido (cola cortada por una caída)
+            JournalReader.Cursor cursor = new JournalReader.Cursor(segment.duplicate());
+            JournalRecord record;
+            while ((record = cursor.next()) != null) {
+                nextSequence = record.sequence() + 1;
+            }
+            segment.position(cursor.position());
+            zeroTail();
+        }
+        flushedPosition = segment.position();
+        lastSequence = nextSequence - 1;
+    }
+    
+    // Borra restos de un registro incompleto para que no se confundan con datos nuevos
+    private void zeroTail() {
+        byte[] zeros = new byte[8192];
+        for (int index = segment.position(); index < segmentSize; index += zeros.length) {
+            segment.put(index, zeros, 0, Math.min(zeros.length, segmentSize - index));
+        }
+    }
+    
+    private static Long firstTimestampOf(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            JournalRecord first = new JournalReader.Cursor(buffer).next();
+            return first != null ? first.timestampMillis() : null;
+        }
+    }
+    
+    static String segmentFileName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+    
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    static List<Path> listSegments(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo listar el journal en " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.event.AvailabilityChangedEvent;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.DomainEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.ReservationReturnedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Formato binario del payload de cada evento; los nulos se codifican con un valor centinela
+final class JournalCodec {
+    
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    
+    private JournalCodec() {
+    }
+    
+    static JournalEventType typeOf(DomainEvent event) {
+        if (event instanceof ReservationCreatedEvent) {
+            return JournalEventType.RESERVATION_CREATED;
+        }
+        if (event instanceof ReservationReturnedEvent) {
+            return JournalEventType.RESERVATION_RETURNED;
+        }
+        if (event instanceof StockAdjustedEvent) {
+            return JournalEventType.STOCK_ADJUSTED;
+        }
+        if (event instanceof BookSyncedEvent) {
+            return JournalEventType.BOOK_SYNCED;
+        }
+        if (event instanceof AvailabilityChangedEvent) {
+            return JournalEventType.AVAILABILITY_CHANGED;
+        }
+        throw new IllegalArgumentException("Evento no soportado por el journal: " + event.getClass().getName());
+    }
+    
+    static void encode(DomainEvent event, ByteBuffer out) {
+        if (event instanceof ReservationCreatedEvent e) {
+            putLong(out, e.reservationId());
+            putLong(out, e.userId());
+            putLong(out, e.bookExternalId());
+            putDate(out, e.startDate());
+            putDate(out, e.expectedReturnDate());
+            putInt(out, e.rentalDays());
+            putDecimal(out, e.totalFee());
+            out.put((byte) (e.poolTaken() ? 1 : 0));
+        } else if (event instanceof ReservationReturnedEvent e) {
+            putLong(out, e.reservationId());
+            putLong(out, e.userId());
+            putLong(out, e.bookExternalId());
+            putDate(out, e.startDate());
+            putDate(out, e.expectedReturnDate());
+            putDate(out, e.returnDate());
+            putDecimal(out, e.lateFee());
+            putDecimal(out, e.totalFee());
+        } else if (event instanceof StockAdjustedEvent e) {
+            putLong(out, e.bookExternalId());
+            putInt(out, e.stockQuantity());
+            putInt(out, e.availableQuantity());
+        } else if (event instanceof BookSyncedEvent e) {
+            putLong(out, e.bookExternalId());
+            putString(out, e.title());
+            putDecimal(out, e.price());
+            putInt(out, e.stockQuantity());
+            putInt(out, e.availableQuantity());
+            out.put((byte) (e.created() ? 1 : 0));
+        } else if (event instanceof AvailabilityChangedEvent e) {
+            putLong(out, e.bookExternalId());
+            putInt(out, e.delta());
+            out.put((byte) e.cause().ordinal());
+        } else {
+            throw new IllegalArgumentException("Evento no soportado por el journal: " + event.getClass().getName());
+        }
+    }
+    
+    static DomainEvent decode(JournalEventType type, ByteBuffer in) {
+        return switch (type) {
+            case RESERVATION_CREATED -> new ReservationCreatedEvent(
+                    getLong(in), getLong(in), getLong(in), getDate(in), getDate(in), getInt(in), getDecimal(in),
+                    in.get() == 1);
+            case RESERVATION_RETURNED -> new ReservationReturnedEvent(
+                    getLong(in), getLong(in), getLong(in), getDate(in), getDate(in), getDate(in),
+                    getDecimal(in), getDecimal(in));
+            case STOCK_ADJUSTED -> new StockAdjustedEvent(getLong(in), getInt(in), getInt(in));
+            case BOOK_SYNCED -> new BookSyncedEvent(
+                    getLong(in), getString(in), getDecimal(in), getInt(in), getInt(in), in.get() == 1);
+            case AVAILABILITY_CHANGED -> new AvailabilityChangedEvent(
+                    getLong(in), getInt(in), AvailabilityChangedEvent.Cause.values()[in.get()]);
+        };
+    }
+    
+    private static void putLong(ByteBuffer out, Long value) {
+        out.putLong(value != null ? value : NULL_LONG);
+    }
+    
+    private static Long getLong(ByteBuffer in) {
+        long value = in.getLong();
+        return value != NULL_LONG ? value : null;
+    }
+    
+    private static void putInt(ByteBuffer out, Integer value) {
+        out.putInt(value != null ? value : NULL_INT);
+    }
+    
+    private static Integer getInt(ByteBuffer in) {
+        int value = in.getInt();
+        return value != NULL_INT ? value : null;
+    }
+    
+    private static void putDate(ByteBuffer out, LocalDate value) {
+        out.putLong(value != null ? value.toEpochDay() : NULL_LONG);
+    }
+    
+    private static LocalDate getDate(ByteBuffer in) {
+        long value = in.getLong();
+        return value != NULL_LONG ? LocalDate.ofEpochDay(value) : null;
+    }
+    
+    private static void putDecimal(ByteBuffer out, BigDecimal value) {
+        if (value == null) {
+            out.put((byte) -1);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.put((byte) unscaled.length);
+        out.put(unscaled);
+        out.putInt(value.scale());
+    }
+    
+    private static BigDecimal getDecimal(ByteBuffer in) {
+        byte length = in.get();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.getInt());
+    }
+    
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+    
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.event.DomainEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Sólo se registran eventos de transacciones confirmadas
+@Component
+@ConditionalOnProperty(name = "libreria.journal.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class JournalEventListener {
+    
+    private final EventJournal eventJournal;
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDomainEvent(DomainEvent event) {
+        try {
+            eventJournal.append(event);
+        } catch (RuntimeException e) {
+            log.error("No se pudo registrar el evento {} en el journal: {}", event, e.getMessage(), e);
+        }
+    }
+}
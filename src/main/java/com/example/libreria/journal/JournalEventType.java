@@ -0,0 +1,28 @@
+package com.example.libreria.journal;
+
+public enum JournalEventType {
+    RESERVATION_CREATED((byte) 1),
+    RESERVATION_RETURNED((byte) 2),
+    STOCK_ADJUSTED((byte) 3),
+    BOOK_SYNCED((byte) 4),
+    AVAILABILITY_CHANGED((byte) 5);
+    
+    private final byte code;
+    
+    JournalEventType(byte code) {
+        this.code = code;
+    }
+    
+    public byte code() {
+        return code;
+    }
+    
+    public static JournalEventType fromCode(byte code) {
+        for (JournalEventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Tipo de evento desconocido en el journal: " + code);
+    }
+}
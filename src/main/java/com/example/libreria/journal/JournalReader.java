@@ -0,0 +1,133 @@
+package com.example.libreria.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Lee el journal en orden de secuencia. Sirve tanto para replay completo como para seguir la cola
+ * (tail): cuando no hay registros nuevos {@link #poll(int)} devuelve una lista vacía y la próxima
+ * llamada continúa desde el mismo punto.
+ */
+public class JournalReader {
+    
+    private final Path directory;
+    private long nextSequence;
+    private Path currentSegment;
+    private Cursor cursor;
+    
+    JournalReader(Path directory, long fromSequence) {
+        this.directory = directory;
+        this.nextSequence = Math.max(1, fromSequence);
+    }
+    
+    public long nextSequence() {
+        return nextSequence;
+    }
+    
+    public List<JournalRecord> poll(int maxRecords) {
+        List<JournalRecord> records = new ArrayList<>();
+        if (cursor == null && !openSegmentContaining(nextSequence)) {
+            return records;
+        }
+        while (records.size() < maxRecords) {
+            JournalRecord record = cursor.next();
+            if (record == null) {
+                Path next = segmentAfter(currentSegment);
+                if (next == null) {
+                    break;
+                }
+                // Hay un segmento siguiente, así que el actual está cerrado; se relee una vez por si el
+                // escritor agregó registros entre la lectura anterior y la rotación
+                record = cursor.next();
+                if (record == null) {
+                    open(next);
+                    continue;
+                }
+            }
+            if (record.sequence() >= nextSequence) {
+                records.add(record);
+                nextSequence = record.sequence() + 1;
+            }
+        }
+        return records;
+    }
+    
+    private boolean openSegmentContaining(long sequence) {
+        List<Path> segments = EventJournal.listSegments(directory);
+        if (segments.isEmpty()) {
+            return false;
+        }
+        Path selected = segments.get(0);
+        for (Path segment : segments) {
+            if (EventJournal.firstSequenceOf(segment) <= sequence) {
+                selected = segment;
+            }
+        }
+        return open(selected);
+    }
+    
+    private Path segmentAfter(Path segment) {
+        for (Path candidate : EventJournal.listSegments(directory)) {
+            if (candidate.compareTo(segment) > 0) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    private boolean open(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.cursor = new Cursor(buffer);
+            this.currentSegment = segment;
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo abrir el segmento del journal " + segment, e);
+        }
+    }
+    
+    // Decodifica registros consecutivos de un segmento; se detiene en el primero vacío o inválido
+    static class Cursor {
+        
+        private final ByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+        
+        Cursor(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        int position() {
+            return buffer.position();
+        }
+        
+        JournalRecord next() {
+            int start = buffer.position();
+            if (buffer.limit() - start < EventJournal.HEADER_SIZE) {
+                return null;
+            }
+            int size = buffer.getInt(start);
+            if (size < EventJournal.HEADER_SIZE || size > buffer.limit() - start) {
+                return null;
+            }
+            crc.reset();
+            crc.update(buffer.slice(start + 8, size - 8));
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                return null;
+            }
+            long sequence = buffer.getLong(start + 8);
+            long timestamp = buffer.getLong(start + 16);
+            JournalEventType type = JournalEventType.fromCode(buffer.get(start + 24));
+            ByteBuffer payload = buffer.slice(start + EventJournal.HEADER_SIZE, size - EventJournal.HEADER_SIZE);
+            JournalRecord record = new JournalRecord(sequence, timestamp, type, JournalCodec.decode(type, payload));
+            buffer.position(start + size);
+            return record;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.event.DomainEvent;
+
+public record JournalRecord(long sequence, long timestampMillis, JournalEventType type, DomainEvent event) {
+}
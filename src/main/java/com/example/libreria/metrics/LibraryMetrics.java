@@ -0,0 +1,259 @@
+package com.example.libreria.metrics;
+
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+@Component
+@Slf4j
+public class LibraryMetrics {
+    
+    public static final String SERVICE_TIMER = "libreria.service";
+    public static final String EXTERNAL_REQUESTS = "libreria.external.requests";
+    public static final String SYNC_TIMER = "libreria.books.sync";
+    public static final String REQUEST_SQL_STATEMENTS = "libreria.http.sql.statements";
+    public static final String REQUEST_SQL_TIME = "libreria.http.sql.time";
+    public static final String WAITLIST_EVENTS = "libreria.waitlist.events";
+    public static final String ADMISSION_REQUESTS = "libreria.admission.requests";
+    public static final String IDEMPOTENT_REQUESTS = "libreria.idempotency.requests";
+    public static final String BOOK_HYDRATION = "libreria.books.hydration";
+    public static final String RESPONSE_CACHE = "libreria.response.cache";
+    public static final String CHANGE_FEED_LAG = "libreria.change.feed.lag";
+    public static final String DATASOURCE_ROUTING = "libreria.datasource.routing";
+    public static final String OVERDUE_NOTICES = "libreria.overdue.notices";
+    public static final String STOCK_RECONCILIATION = "libreria.stock.reconciliation";
+    public static final String AVAILABILITY_STREAM = "libreria.availability.stream";
+    
+    private final MeterRegistry registry;
+    private final Counter stockExhausted;
+    private final Counter lateFeesCharged;
+    private final Counter lateFeesAmount;
+    private final Timer syncTimer;
+    private final Counter syncRows;
+    private final AtomicLong lastSyncRowsPerSecond = new AtomicLong();
+    private final ReservationRepository reservationRepository;
+    // Las cuentas de reservas abiertas se refrescan aparte: un scrape no consulta la base
+    private final AtomicLong activeReservations = new AtomicLong();
+    private final AtomicLong overdueReservations = new AtomicLong();
+    
+    public LibraryMetrics(MeterRegistry registry, ReservationRepository reservationRepository) {
+        this.registry = registry;
+        this.reservationRepository = reservationRepository;
+        this.stockExhausted = Counter.builder("libreria.reservations.rejected")
+                .description("Reservas rechazadas por falta de stock")
+                .tag("reason", "stock_exhausted")
+                .register(registry);
+        this.lateFeesCharged = Counter.builder("libreria.late.fees.charged")
+                .description("Devoluciones con multa por demora")
+                .register(registry);
+        this.lateFeesAmount = Counter.builder("libreria.late.fees.amount")
+                .description("Importe total cobrado en multas por demora")
+                .register(registry);
+        this.syncTimer = Timer.builder(SYNC_TIMER)
+                .description("Duración de la sincronización con la API externa")
+                .register(registry);
+        this.syncRows = Counter.builder("libreria.books.sync.rows")
+                .description("Libros procesados por la sincronización")
+                .register(registry);
+        Gauge.builder("libreria.books.sync.rows.per.second", lastSyncRowsPerSecond, AtomicLong::get)
+                .description("Libros por segundo de la última sincronización")
+                .register(registry);
+        Gauge.builder("libreria.reservations.open", activeReservations, AtomicLong::get)
+                .tag("state", "active")
+                .register(registry);
+        Gauge.builder("libreria.reservations.open", overdueReservations, AtomicLong::get)
+                .tag("state", "overdue")
+                .register(registry);
+    }
+    
+    // Dos cuentas sobre idx_reservations_status_due cada refresh-interval, no una por scrape
+    @Scheduled(fixedDelayString = "${libreria.metrics.open-reservations.refresh-interval:PT30S}")
+    public void refreshOpenReservations() {
+        try {
+            activeReservations.set(reservationRepository.countByStatus(Reservation.ReservationStatus.ACTIVE));
+            overdueReservations.set(reservationRepository.countOverdueReservations());
+        } catch (RuntimeException e) {
+            log.warn("Open reservation gauges not refreshed: {}", e.getMessage());
+        }
+    }
+    
+    public Timer.Sample startExternalRequest() {
+        return Timer.start(registry);
+    }
+    
+    public void recordExternalRequest(Timer.Sample sample, String operation, boolean success) {
+        sample.stop(Timer.builder(EXTERNAL_REQUESTS)
+                .description("Latencia de las llamadas a la API externa de libros")
+                .tag("operation", operation)
+                .tag("outcome", success ? "success" : "error")
+                .register(registry));
+    }
+    
+    public void recordSync(int rows, long elapsedNanos) {
+        syncTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        syncRows.increment(rows);
+        if (elapsedNanos > 0) {
+            lastSyncRowsPerSecond.set(rows * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        }
+    }
+    
+    public void recordRequestSql(String method, String uri, int statements, long elapsedNanos) {
+        DistributionSummary.builder(REQUEST_SQL_STATEMENTS)
+                .description("Sentencias SQL ejecutadas por request HTTP")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(registry)
+                .record(statements);
+        Timer.builder(REQUEST_SQL_TIME)
+                .description("Tiempo JDBC acumulado por request HTTP")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(registry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void recordStockExhausted() {
+        stockExhausted.increment();
+    }
+    
+    public void recordLateFee(BigDecimal lateFee) {
+        lateFeesCharged.increment();
+        lateFeesAmount.increment(lateFee.doubleValue());
+    }
+    
+    // event: enqueued, held, fulfilled, expired, cancelled
+    public void recordWaitlistEvent(String event) {
+        Counter.builder(WAITLIST_EVENTS)
+                .description("Movimientos de la lista de espera de libros")
+                .tag("event", event)
+                .register(registry)
+                .increment();
+    }
+    
+    // outcome: fetched, not_found, negative_hit, coalesced o already_present
+    public void recordBookHydration(String outcome) {
+        Counter.builder(BOOK_HYDRATION)
+                .description("Libros buscados en la API externa al reservar uno no sincronizado")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+    
+    // outcome: executed, replayed, coalesced o conflict
+    public void recordIdempotentRequest(String scope, String outcome) {
+        Counter.builder(IDEMPOTENT_REQUESTS)
+                .description("Solicitudes con Idempotency-Key")
+                .tag("scope", scope)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+    
+    // outcome: allowed, throttled (429) o shed (503)
+    public void recordAdmission(String endpoint, String outcome) {
+        Counter.builder(ADMISSION_REQUESTS)
+                .description("Decisiones del control de admisión de escrituras")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+    
+    public void registerAdmissionGauges(IntSupplier writesInFlight, IntSupplier trackedKeys) {
+        Gauge.builder("libreria.admission.writes.inflight", writesInFlight, IntSupplier::getAsInt)
+                .description("Escrituras en curso admitidas por el límite global")
+                .register(registry);
+        Gauge.builder("libreria.admission.buckets", trackedKeys, IntSupplier::getAsInt)
+                .description("Usuarios y clientes con token bucket en memoria")
+                .register(registry);
+    }
+    
+    // outcome: hit, miss o not_modified
+    public void recordResponseCache(String outcome) {
+        Counter.builder(RESPONSE_CACHE)
+                .description("GET de libros y usuarios servidos desde la caché de respuestas")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+    
+    public void registerResponseCacheGauges(IntSupplier entries, LongSupplier bytes) {
+        Gauge.builder("libreria.response.cache.entries", entries, IntSupplier::getAsInt)
+                .description("Respuestas serializadas en la caché")
+                .register(registry);
+        Gauge.builder("libreria.response.cache.bytes", bytes, LongSupplier::getAsLong)
+                .description("Bytes ocupados por la caché de respuestas, con las versiones gzip")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+    
+    // Desde que otra instancia escribió el cambio hasta que esta invalidó su caché
+    public void recordChangeFeedLag(long lagMillis) {
+        Timer.builder(CHANGE_FEED_LAG)
+                .description("Demora en aplicar los cambios de otras instancias a la caché local")
+                .register(registry)
+                .record(Math.max(lagMillis, 0), TimeUnit.MILLISECONDS);
+    }
+    
+    // Una por conexión pedida: a qué base fue (primary/replica) y por qué (write, read, sticky, replica-lagging)
+    public void recordDataSourceRoute(String route, String reason) {
+        Counter.builder(DATASOURCE_ROUTING)
+                .description("Conexiones pedidas a la base primaria o a la réplica")
+                .tag("route", route)
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+    
+    public void registerReplicaLagGauge(LongSupplier lagMillis) {
+        Gauge.builder("libreria.datasource.replica.lag", lagMillis, LongSupplier::getAsLong)
+                .description("Atraso de la réplica según el último latido (-1 si no responde)")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+    
+    // outcome: sent, failed o skipped (otra pasada ya lo tomó)
+    public void recordOverdueNotice(String outcome) {
+        Counter.builder(OVERDUE_NOTICES)
+                .description("Avisos de préstamos vencidos")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+    
+    public void recordStockReconciliation(String outcome) {
+        Counter.builder(STOCK_RECONCILIATION)
+                .description("Conciliación del stock: chunks revisados o salteados, reparaciones y diferencias")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+    
+    public void registerAvailabilityStreamGauge(IntSupplier subscribers) {
+        Gauge.builder("libreria.availability.stream.subscribers", subscribers, IntSupplier::getAsInt)
+                .description("Clientes conectados al stream de disponibilidad")
+                .register(registry);
+    }
+    
+    // event: connected, resumed o dropped_to_snapshot
+    public void recordAvailabilityStream(String event) {
+        Counter.builder(AVAILABILITY_STREAM)
+                .description("Conexiones al stream de disponibilidad, clientes atrasados que recibieron la foto completa y clientes dados de baja por lentos")
+                .tag("event", event)
+                .register(registry)
+                .increment();
+    }
+}
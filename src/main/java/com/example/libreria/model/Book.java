@@ -4,12 +4,14 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
 @Table(name = "books")
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,5 +47,10 @@ public class Book {
     
     @Column(name = "available_quantity", nullable = false)
     private Integer availableQuantity = 0;
+    
+    // Sube con cada UPDATE que mueve available_quantity; la conciliación de stock lo usa para saltear
+    // los rangos sin cambios. Null en las filas que restaura el snapshot (cuenta como 0)
+    @Column(name = "stock_version")
+    private Long stockVersion = 0L;
 }
 
@@ -0,0 +1,42 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Feed de cambios entre instancias: la versión autoincremental da el orden de lectura
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeLogEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long version;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private ChangeEntity entity;
+    
+    // null en los cambios que afectan a todos los libros
+    @Column(name = "entity_id")
+    private Long entityId;
+    
+    // Instancia que escribió el cambio: ya invalidó su propia caché
+    @Column(name = "node_id", nullable = false, length = 36)
+    private String nodeId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    public enum ChangeEntity {
+        BOOK, ALL_BOOKS, USER
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Primera respuesta de una solicitud con Idempotency-Key; la clave incluye el endpoint
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_idempotency_created_at", columnList = "status, created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    
+    @Id
+    @Column(name = "request_key", length = 300)
+    private String requestKey;
+    
+    // SHA-256 del cuerpo: la misma clave con otro cuerpo es un error del cliente
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 12)
+    private IdempotencyStatus status;
+    
+    // Identifica la reserva de la clave: si venció y la tomó otra solicitud, la primera ya no puede completarla
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+    
+    @Column(name = "response_status")
+    private Integer responseStatus;
+    
+    @Column(name = "response_body", length = 16384)
+    private String responseBody;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Mientras está IN_PROGRESS vence a los pocos segundos, para no bloquear la clave si la instancia se cae.
+    // Una clave IN_PROGRESS nunca tiene la operación confirmada: se completa en la misma transacción
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    public enum IdempotencyStatus {
+        IN_PROGRESS, COMPLETED
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Aviso de demora de una reserva en un día: la fila se toma antes de enviarlo, así dos pasadas no lo repiten
+@Entity
+@Table(name = "overdue_notice_deliveries", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_overdue_notice_reservation_date", columnNames = {"reservation_id", "notice_date"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueNoticeDelivery {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "reservation_id", nullable = false)
+    private Long reservationId;
+    
+    @Column(name = "notice_date", nullable = false)
+    private LocalDate noticeDate;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private DeliveryStatus status;
+    
+    @Column(name = "days_late", nullable = false)
+    private Long daysLate;
+    
+    @Column(name = "late_fee", nullable = false, precision = 10, scale = 2)
+    private BigDecimal lateFee;
+    
+    @Column(nullable = false)
+    private Integer attempts;
+    
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    // SENDING queda si la instancia se cae a mitad del envío: ese día no se reintenta
+    public enum DeliveryStatus {
+        SENDING, SENT, FAILED
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Una sola fila que la primaria actualiza cada segundo; la réplica atrasa lo que tarde en verla
+@Entity
+@Table(name = "replica_heartbeat")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaHeartbeat {
+    
+    @Id
+    private Integer id;
+    
+    @Column(name = "beat_at", nullable = false)
+    private LocalDateTime beatAt;
+}
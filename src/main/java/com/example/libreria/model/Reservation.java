@@ -10,7 +10,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
+@Table(name = "reservations", indexes = {
+        @Index(name = "idx_reservations_book_status", columnList = "book_external_id, status, start_date"),
+        @Index(name = "idx_reservations_status_due", columnList = "status, expected_return_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -53,6 +56,10 @@ public class Reservation {
     @Column(nullable = false)
     private ReservationStatus status = ReservationStatus.ACTIVE;
     
+    // Reserva a futuro que todavía no tomó su ejemplar del pool; null en las reservas anteriores
+    @Column(name = "pending_start")
+    private Boolean pendingStart = false;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
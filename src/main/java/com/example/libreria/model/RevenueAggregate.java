@@ -0,0 +1,42 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Totales acumulados de facturación por libro, usuario, mes calendario (en franjas) y total general (en franjas)
+@Entity
+@Table(name = "revenue_aggregates")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueAggregate {
+    
+    @EmbeddedId
+    private RevenueAggregateId id;
+    
+    @Column(name = "reservation_count", nullable = false)
+    private Long reservationCount = 0L;
+    
+    @Column(name = "active_count", nullable = false)
+    private Long activeCount = 0L;
+    
+    @Column(name = "rental_days", nullable = false)
+    private Long rentalDays = 0L;
+    
+    @Column(name = "total_fee", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalFee = BigDecimal.ZERO;
+    
+    @Column(name = "late_fee", nullable = false, precision = 19, scale = 2)
+    private BigDecimal lateFee = BigDecimal.ZERO;
+    
+    @Column(name = "late_returns", nullable = false)
+    private Long lateReturns = 0L;
+    
+    public enum Scope {
+        BOOK, USER, MONTH, TOTAL
+    }
+}
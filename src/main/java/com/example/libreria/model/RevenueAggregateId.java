@@ -0,0 +1,26 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueAggregateId implements Serializable {
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scope_type", nullable = false, length = 10)
+    private RevenueAggregate.Scope scope;
+    
+    // externalId del libro, id del usuario, "yyyy-MM#franja" o "all#franja"
+    @Column(name = "scope_key", nullable = false, length = 32)
+    private String scopeKey;
+}
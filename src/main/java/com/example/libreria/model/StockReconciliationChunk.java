@@ -0,0 +1,39 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Último resultado de la conciliación de stock de un rango de libros (chunk_start, chunk_end]
+@Entity
+@Table(name = "stock_reconciliation_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReconciliationChunk {
+    
+    // Último external_id del chunk anterior (0 para el primero)
+    @Id
+    @Column(name = "chunk_start")
+    private Long chunkStart;
+    
+    @Column(name = "chunk_end", nullable = false)
+    private Long chunkEnd;
+    
+    // CRC32 de lo que se lee de los índices para cada libro del rango: stock, disponible, reservas y asignados
+    @Column(nullable = false)
+    private Long checksum;
+    
+    @Column(name = "book_count", nullable = false)
+    private Integer bookCount;
+    
+    // Diferencias que quedaron sin reparar; un chunk con diferencias se vuelve a revisar aunque no cambie
+    @Column(nullable = false)
+    private Integer mismatches;
+    
+    @Column(name = "checked_at", nullable = false)
+    private LocalDateTime checkedAt;
+}
@@ -0,0 +1,34 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Contadores por usuario mantenidos en la misma transacción que cada reserva y devolución
+@Entity
+@Table(name = "user_reservation_summary")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserReservationSummary {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "active_count", nullable = false)
+    private Integer activeCount = 0;
+    
+    @Column(name = "lifetime_reservations", nullable = false)
+    private Long lifetimeReservations = 0L;
+    
+    @Column(name = "outstanding_late_fees", nullable = false, precision = 12, scale = 2)
+    private BigDecimal outstandingLateFees = BigDecimal.ZERO;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
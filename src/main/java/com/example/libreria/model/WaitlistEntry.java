@@ -0,0 +1,56 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Cola FIFO por libro: el orden lo da el id autoincremental
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+        @Index(name = "idx_waitlist_book_status", columnList = "book_external_id, status, id"),
+        @Index(name = "idx_waitlist_user_book", columnList = "user_id, book_external_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "book_external_id", nullable = false)
+    private Long bookExternalId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "rental_days", nullable = false)
+    private Integer rentalDays;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private WaitlistStatus status = WaitlistStatus.WAITING;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    // Momento en que se le asignó un ejemplar y plazo para confirmar la reserva
+    @Column(name = "held_at")
+    private LocalDateTime heldAt;
+    
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum WaitlistStatus {
+        WAITING, HELD, FULFILLED, EXPIRED, CANCELLED
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.libreria.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Un aviso por línea (to, subject, body y los datos de la reserva); reemplaza al servidor de correo en desarrollo y tests
+public class FileNoticeTransport implements NoticeTransport {
+    
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    
+    public FileNoticeTransport(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    public void send(OverdueNotice notice) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("to", notice.email());
+        message.put("subject", notice.subject());
+        message.put("body", notice.body());
+        message.put("reservationId", notice.reservationId());
+        message.put("daysLate", notice.daysLate());
+        message.put("lateFee", notice.lateFee());
+        byte[] line;
+        try {
+            line = (objectMapper.writeValueAsString(message) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el aviso de la reserva " + notice.reservationId(), e);
+        }
+        // Las líneas de hilos distintos no se intercalan
+        synchronized (this) {
+            try {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                Files.write(file, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo escribir el aviso en " + file, e);
+            }
+        }
+    }
+    
+    @Override
+    public String description() {
+        return "file " + file;
+    }
+}
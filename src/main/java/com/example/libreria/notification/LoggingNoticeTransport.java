@@ -0,0 +1,18 @@
+package com.example.libreria.notification;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class LoggingNoticeTransport implements NoticeTransport {
+    
+    @Override
+    public void send(OverdueNotice notice) {
+        log.info("Overdue notice for reservation {} to {}: {} ({} days late, fee {})", notice.reservationId(),
+                notice.email(), notice.subject(), notice.daysLate(), notice.lateFee());
+    }
+    
+    @Override
+    public String description() {
+        return "log";
+    }
+}
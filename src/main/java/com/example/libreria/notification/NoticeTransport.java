@@ -0,0 +1,13 @@
+package com.example.libreria.notification;
+
+/**
+ * Canal por el que salen los avisos de préstamos vencidos, según {@code libreria.overdue-notices.transport}:
+ * el log de la aplicación o un archivo JSON lines que hace de bandeja de salida. Se llama desde varios hilos.
+ */
+public interface NoticeTransport {
+    
+    // Cualquier RuntimeException deja el aviso como FAILED para reintentarlo en la próxima pasada
+    void send(OverdueNotice notice);
+    
+    String description();
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.notification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Aviso a un usuario con un préstamo vencido; la multa es la que pagaría si lo devolviera hoy
+public record OverdueNotice(Long reservationId, Long userId, String userName, String email, String bookTitle,
+                            LocalDate expectedReturnDate, long daysLate, BigDecimal lateFee) {
+    
+    public String subject() {
+        return "Préstamo vencido: " + bookTitle;
+    }
+    
+    public String body() {
+        return "Hola " + userName + ",\n\n"
+                + "El libro \"" + bookTitle + "\" debía devolverse el " + expectedReturnDate
+                + " y lleva " + daysLate + (daysLate == 1 ? " día" : " días") + " de demora.\n"
+                + "La multa a la fecha es de $" + lateFee.toPlainString()
+                + " y aumenta con cada día hasta la devolución.\n";
+    }
+}
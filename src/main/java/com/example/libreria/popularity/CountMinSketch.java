@@ -0,0 +1,92 @@
+package com.example.libreria.popularity;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch de depth filas por width contadores. Cada estimación es mayor o igual a la
+ * cuenta real y la excede en a lo sumo e/width del total con probabilidad 1 - e^-depth. Suma con
+ * actualización conservadora: sólo sube los contadores que están en el mínimo, lo que baja el
+ * error sin perder la cota. No es thread-safe.
+ */
+public final class CountMinSketch {
+    
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+    private long total;
+    
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("depth >= 1 y width potencia de dos: " + depth + " x " + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+    
+    public void add(long item, long count) {
+        int[] cells = cells(item);
+        long target = min(cells) + count;
+        for (int cell : cells) {
+            if (counters[cell] < target) {
+                counters[cell] = target;
+            }
+        }
+        total += count;
+    }
+    
+    public long estimate(long item) {
+        return min(cells(item));
+    }
+    
+    public long total() {
+        return total;
+    }
+    
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+    
+    int depth() {
+        return depth;
+    }
+    
+    int width() {
+        return width;
+    }
+    
+    // Vista directa para el checkpoint
+    long[] counters() {
+        return counters;
+    }
+    
+    void restore(long[] values, long restoredTotal) {
+        System.arraycopy(values, 0, counters, 0, counters.length);
+        total = restoredTotal;
+    }
+    
+    private long min(int[] cells) {
+        long min = Long.MAX_VALUE;
+        for (int cell : cells) {
+            min = Math.min(min, counters[cell]);
+        }
+        return min;
+    }
+    
+    // Semillas fijas por fila: un checkpoint se lee igual en otra ejecución
+    private int[] cells(long item) {
+        int[] cells = new int[depth];
+        for (int row = 0; row < depth; row++) {
+            cells[row] = row * width + (int) (mix(item + 0x9E3779B97F4A7C15L * (row + 1)) & (width - 1));
+        }
+        return cells;
+    }
+    
+    // Finalizador de SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
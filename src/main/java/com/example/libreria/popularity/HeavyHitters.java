@@ -0,0 +1,182 @@
+package com.example.libreria.popularity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Libros más reservados en una ventana deslizante de windowDays días, sin guardar una cuenta por libro.
+ * Cada día tiene su propio {@link CountMinSketch}; el puntaje de un libro es la suma de sus estimaciones
+ * en los días de la ventana, con el día d pesando decay^(hoy - d) (1.0 = cuenta simple de la semana).
+ * Los candidatos a top-K se mantienen en un heap ordenado de capacity entradas: un libro entra si
+ * supera al de menor puntaje. Al cambiar el día se recalculan, porque la ventana avanza.
+ */
+public class HeavyHitters {
+    
+    public record HeavyHitter(long externalId, double score, long today) {
+    }
+    
+    private record Candidate(long externalId, double score) {
+    }
+    
+    private static final Comparator<Candidate> BY_SCORE = Comparator.comparingDouble(Candidate::score)
+            .thenComparingLong(Candidate::externalId);
+    
+    private final int windowDays;
+    private final double decay;
+    private final int capacity;
+    
+    // Anillo de sketches diarios; days[i] es el día que cuenta sketches[i] (Long.MIN_VALUE si está vacío)
+    private final CountMinSketch[] sketches;
+    private final long[] days;
+    private long currentDay = Long.MIN_VALUE;
+    
+    private final TreeSet<Candidate> heap = new TreeSet<>(BY_SCORE);
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+    
+    public HeavyHitters(int windowDays, double decay, int depth, int width, int capacity) {
+        if (windowDays < 1 || capacity < 1 || decay <= 0 || decay > 1) {
+            throw new IllegalArgumentException("Ventana, capacidad o decaimiento inválidos");
+        }
+        this.windowDays = windowDays;
+        this.decay = decay;
+        this.capacity = capacity;
+        this.sketches = new CountMinSketch[windowDays];
+        this.days = new long[windowDays];
+        for (int i = 0; i < windowDays; i++) {
+            sketches[i] = new CountMinSketch(depth, width);
+            days[i] = Long.MIN_VALUE;
+        }
+    }
+    
+    public synchronized void record(long externalId, LocalDate day) {
+        long epochDay = day.toEpochDay();
+        advance(epochDay);
+        // Un día que ya salió de la ventana no cuenta
+        if (epochDay <= currentDay - windowDays) {
+            return;
+        }
+        int slot = slot(epochDay);
+        if (days[slot] != epochDay) {
+            sketches[slot].clear();
+            days[slot] = epochDay;
+        }
+        sketches[slot].add(externalId, 1);
+        offer(externalId, score(externalId));
+    }
+    
+    public synchronized List<HeavyHitter> top(int limit, LocalDate today) {
+        advance(today.toEpochDay());
+        List<HeavyHitter> top = new ArrayList<>(Math.min(limit, heap.size()));
+        Iterator<Candidate> descending = heap.descendingIterator();
+        while (descending.hasNext() && top.size() < limit) {
+            Candidate candidate = descending.next();
+            top.add(new HeavyHitter(candidate.externalId(), candidate.score(), estimateOn(candidate.externalId(), currentDay)));
+        }
+        return top;
+    }
+    
+    public synchronized double score(long externalId) {
+        double score = 0;
+        for (int i = 0; i < windowDays; i++) {
+            if (inWindow(days[i])) {
+                score += sketches[i].estimate(externalId) * Math.pow(decay, currentDay - days[i]);
+            }
+        }
+        return score;
+    }
+    
+    public int capacity() {
+        return capacity;
+    }
+    
+    int windowDays() {
+        return windowDays;
+    }
+    
+    double decay() {
+        return decay;
+    }
+    
+    CountMinSketch[] sketches() {
+        return sketches;
+    }
+    
+    long[] days() {
+        return days;
+    }
+    
+    long currentDay() {
+        return currentDay;
+    }
+    
+    synchronized List<Long> candidateIds() {
+        return new ArrayList<>(candidates.keySet());
+    }
+    
+    // Desde un checkpoint: los puntajes se recalculan con los sketches restaurados
+    synchronized void restore(long restoredCurrentDay, List<Long> candidateIds) {
+        currentDay = restoredCurrentDay;
+        for (Long id : candidateIds) {
+            offer(id, score(id));
+        }
+    }
+    
+    private void advance(long epochDay) {
+        if (epochDay <= currentDay) {
+            return;
+        }
+        currentDay = epochDay;
+        for (int i = 0; i < windowDays; i++) {
+            if (days[i] != Long.MIN_VALUE && !inWindow(days[i])) {
+                sketches[i].clear();
+                days[i] = Long.MIN_VALUE;
+            }
+        }
+        List<Long> ids = new ArrayList<>(candidates.keySet());
+        heap.clear();
+        candidates.clear();
+        for (Long id : ids) {
+            offer(id, score(id));
+        }
+    }
+    
+    private void offer(long externalId, double score) {
+        Candidate previous = candidates.remove(externalId);
+        if (previous != null) {
+            heap.remove(previous);
+        }
+        if (score <= 0) {
+            return;
+        }
+        if (candidates.size() >= capacity) {
+            Candidate weakest = heap.first();
+            if (weakest.score() >= score) {
+                return;
+            }
+            heap.pollFirst();
+            candidates.remove(weakest.externalId());
+        }
+        Candidate candidate = new Candidate(externalId, score);
+        heap.add(candidate);
+        candidates.put(externalId, candidate);
+    }
+    
+    private long estimateOn(long externalId, long epochDay) {
+        int slot = slot(epochDay);
+        return days[slot] == epochDay ? sketches[slot].estimate(externalId) : 0;
+    }
+    
+    private boolean inWindow(long day) {
+        return day != Long.MIN_VALUE && day > currentDay - windowDays && day <= currentDay;
+    }
+    
+    private int slot(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) windowDays);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.libreria.popularity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint de {@link HeavyHitters}:
+ * {@code [magic][versión][ventana][decay][depth][width][día actual] (día, total, contadores)* [candidatos] [crc32]}.
+ * Como el snapshot del catálogo, se escribe en un temporal que reemplaza al anterior con un move atómico.
+ * Un archivo de otra configuración (ventana o tamaño de los sketches) no se puede usar y se descarta.
+ */
+final class HeavyHittersFile {
+    
+    static final int MAGIC = 0x4C424848; // "LBHH"
+    static final int FORMAT_VERSION = 1;
+    
+    private HeavyHittersFile() {
+    }
+    
+    static void write(Path file, HeavyHitters heavyHitters) throws IOException {
+        // Sketches y candidatos se copian juntos, para no mezclar dos momentos, y se escriben sin el lock
+        CountMinSketch[] sketches = heavyHitters.sketches();
+        long currentDay;
+        long[] days;
+        long[] totals = new long[sketches.length];
+        long[][] counters = new long[sketches.length][];
+        List<Long> candidates;
+        synchronized (heavyHitters) {
+            currentDay = heavyHitters.currentDay();
+            days = heavyHitters.days().clone();
+            for (int i = 0; i < sketches.length; i++) {
+                totals[i] = sketches[i].total();
+                counters[i] = sketches[i].counters().clone();
+            }
+            candidates = heavyHitters.candidateIds();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(heavyHitters.windowDays());
+            out.writeDouble(heavyHitters.decay());
+            out.writeInt(sketches[0].depth());
+            out.writeInt(sketches[0].width());
+            out.writeLong(currentDay);
+            for (int i = 0; i < sketches.length; i++) {
+                out.writeLong(days[i]);
+                out.writeLong(totals[i]);
+                for (long counter : counters[i]) {
+                    out.writeLong(counter);
+                }
+            }
+            out.writeInt(candidates.size());
+            for (long id : candidates) {
+                out.writeLong(id);
+            }
+            out.flush();
+            // El CRC se toma antes de escribirlo: no se incluye a sí mismo
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    // Carga el checkpoint en heavyHitters, que tiene que estar recién creado con la misma configuración
+    static void read(Path file, HeavyHitters heavyHitters) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, 64 * 1024), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " no es un checkpoint de títulos populares");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Versión de checkpoint no soportada: " + version);
+            }
+            CountMinSketch[] sketches = heavyHitters.sketches();
+            int windowDays = in.readInt();
+            double decay = in.readDouble();
+            int depth = in.readInt();
+            int width = in.readInt();
+            if (windowDays != heavyHitters.windowDays() || decay != heavyHitters.decay()
+                    || depth != sketches[0].depth() || width != sketches[0].width()) {
+                throw new IOException("El checkpoint es de otra configuración: ventana " + windowDays
+                        + ", decay " + decay + ", sketch " + depth + " x " + width);
+            }
+            long currentDay = in.readLong();
+            long[] days = new long[windowDays];
+            long[] totals = new long[windowDays];
+            long[][] counters = new long[windowDays][depth * width];
+            for (int i = 0; i < windowDays; i++) {
+                days[i] = in.readLong();
+                totals[i] = in.readLong();
+                for (int c = 0; c < counters[i].length; c++) {
+                    counters[i][c] = in.readLong();
+                }
+            }
+            int candidateCount = in.readInt();
+            List<Long> candidates = new ArrayList<>(candidateCount);
+            for (int i = 0; i < candidateCount; i++) {
+                candidates.add(in.readLong());
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("El checkpoint " + file + " está corrupto (CRC)");
+            }
+            // Recién validado el archivo entero se toca el estado
+            synchronized (heavyHitters) {
+                for (int i = 0; i < windowDays; i++) {
+                    heavyHitters.days()[i] = days[i];
+                    sketches[i].restore(counters[i], totals[i]);
+                }
+                heavyHitters.restore(currentDay, candidates);
+            }
+        } catch (EOFException e) {
+            throw new IOException("El checkpoint " + file + " está truncado", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.libreria.popularity;
+
+import com.example.libreria.event.ReservationCreatedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cuenta las reservas confirmadas por libro en {@link HeavyHitters}. Con checkpoint habilitado, el
+ * estado se guarda cada checkpoint-interval si cambió y al apagar, y se carga al arrancar. Cada
+ * instancia cuenta las reservas que atendió.
+ */
+@Component
+@Slf4j
+public class PopularityTracker {
+    
+    static final String FILE_NAME = "popular-books.checkpoint";
+    
+    private final HeavyHitters heavyHitters;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    
+    @Value("${libreria.popularity.checkpoint.enabled:false}")
+    private boolean checkpointEnabled;
+    
+    @Value("${libreria.popularity.checkpoint.directory:./data/popularity}")
+    private Path directory;
+    
+    public PopularityTracker(@Value("${libreria.popularity.window-days:7}") int windowDays,
+                             @Value("${libreria.popularity.decay:1.0}") double decay,
+                             @Value("${libreria.popularity.sketch-depth:4}") int depth,
+                             @Value("${libreria.popularity.sketch-width:2048}") int width,
+                             @Value("${libreria.popularity.candidates:100}") int candidates) {
+        this.heavyHitters = new HeavyHitters(windowDays, decay, depth, width, candidates);
+    }
+    
+    @PostConstruct
+    public void restore() {
+        if (!checkpointEnabled) {
+            return;
+        }
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            HeavyHittersFile.read(file, heavyHitters);
+            log.info("Restored popular books from checkpoint {}", file);
+        } catch (IOException e) {
+            log.warn("Ignoring popular books checkpoint {}: {}", file, e.getMessage());
+        }
+    }
+    
+    // Sólo reservas confirmadas: una que se deshace no suma
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        heavyHitters.record(event.bookExternalId(), LocalDate.now());
+        dirty.set(true);
+    }
+    
+    public List<HeavyHitters.HeavyHitter> top(int limit) {
+        return heavyHitters.top(limit, LocalDate.now());
+    }
+    
+    public int capacity() {
+        return heavyHitters.capacity();
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.popularity.checkpoint.interval:PT1M}",
+            initialDelayString = "${libreria.popularity.checkpoint.interval:PT1M}")
+    public void checkpointIfChanged() {
+        if (!checkpointEnabled || !dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            HeavyHittersFile.write(directory.resolve(FILE_NAME), heavyHitters);
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            log.error("Could not write popular books checkpoint: {}", e.getMessage(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        checkpointIfChanged();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.libreria.ratelimit;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Control de admisión de los endpoints de escritura configurados en libreria.rate-limit:
+ * primero un token bucket por usuario (o por cliente si el request no lo identifica),
+ * que responde 429. El userId lo elige el cliente, así que con usuario también se limita
+ * su dirección, con addressFactor veces la capacidad de un usuario: rotar el userId no
+ * evita el límite y varios usuarios detrás de una misma IP no se bloquean entre sí. Luego
+ * un límite global de escrituras en curso, que responde 503 antes de que se agote el pool
+ * de conexiones.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "libreria.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    
+    public static final String USER_ID_HEADER = "X-User-Id";
+    private static final int MAX_INSPECTED_BODY = 16 * 1024;
+    
+    private record Rule(String name, String method, PathPattern pattern, int capacity, double refillPerSecond) {
+    }
+    
+    private final List<Rule> rules;
+    private final TokenBucketTable buckets;
+    private final Semaphore writes;
+    private final int maxWrites;
+    private final long queueTimeoutNanos;
+    private final int addressFactor;
+    private final LibraryMetrics libraryMetrics;
+    private final ObjectMapper objectMapper;
+    
+    public AdmissionControlFilter(RateLimitProperties properties, TokenBucketTable buckets,
+                                  LibraryMetrics libraryMetrics, ObjectMapper objectMapper) {
+        PathPatternParser parser = new PathPatternParser();
+        this.rules = properties.getEndpoints().entrySet().stream()
+                .map(entry -> toRule(parser, entry))
+                .toList();
+        this.buckets = buckets;
+        this.writes = new Semaphore(properties.getMaxConcurrentWrites());
+        this.queueTimeoutNanos = properties.getQueueTimeout().toNanos();
+        this.addressFactor = properties.getAddressFactor();
+        this.libraryMetrics = libraryMetrics;
+        this.objectMapper = objectMapper;
+        this.maxWrites = properties.getMaxConcurrentWrites();
+        libraryMetrics.registerAdmissionGauges(this::writesInFlight, buckets::size);
+    }
+    
+    // Las tareas en segundo plano lo miran para no competir con las escrituras de los clientes
+    public int writesInFlight() {
+        return maxWrites - writes.availablePermits();
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Rule rule = match(request);
+        if (rule == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest effective = request;
+        String client = request.getHeader(USER_ID_HEADER);
+        if (client == null && isSmallJson(request)) {
+            CachedBodyHttpServletRequest cached = new CachedBodyHttpServletRequest(request);
+            client = userIdFromBody(cached.getBody());
+            effective = cached;
+        }
+        long now = System.nanoTime();
+        long waitNanos;
+        if (client != null) {
+            // La dirección se cobra sólo si el usuario tenía token: un usuario ya limitado que
+            // insiste no vacía el bucket que comparte con los demás usuarios de su IP
+            waitNanos = acquire(rule, "user:" + client, 1, now);
+            if (waitNanos == 0) {
+                waitNanos = acquire(rule, "address:" + request.getRemoteAddr(), addressFactor, now);
+            }
+        } else {
+            waitNanos = acquire(rule, "client:" + request.getRemoteAddr(), 1, now);
+        }
+        if (waitNanos > 0) {
+            libraryMetrics.recordAdmission(rule.name(), "throttled");
+            long seconds = Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, seconds,
+                    "Demasiadas solicitudes, reintente en " + seconds + " segundos");
+            return;
+        }
+        if (!acquireWriteSlot()) {
+            libraryMetrics.recordAdmission(rule.name(), "shed");
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1,
+                    "El servidor está saturado, reintente en unos segundos");
+            return;
+        }
+        try {
+            libraryMetrics.recordAdmission(rule.name(), "allowed");
+            filterChain.doFilter(effective, response);
+        } finally {
+            writes.release();
+        }
+    }
+    
+    private long acquire(Rule rule, String key, int factor, long nowNanos) {
+        return buckets.tryAcquire(rule.name() + '|' + key, (double) rule.capacity() * factor,
+                rule.refillPerSecond() * factor, nowNanos);
+    }
+    
+    private boolean acquireWriteSlot() {
+        try {
+            return writes.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private Rule match(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (Rule rule : rules) {
+            if (rule.method().equalsIgnoreCase(request.getMethod()) && rule.pattern().matches(path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isSmallJson(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        long length = request.getContentLengthLong();
+        return contentType != null && contentType.startsWith(MediaType.APPLICATION_JSON_VALUE)
+                && length > 0 && length <= MAX_INSPECTED_BODY;
+    }
+    
+    private String userIdFromBody(byte[] body) {
+        try {
+            JsonNode userId = objectMapper.readTree(body).get("userId");
+            return userId != null && userId.canConvertToLong() ? userId.asText() : null;
+        } catch (IOException e) {
+            // El controlador devolverá el error de formato
+            return null;
+        }
+    }
+    
+    private void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), Map.of("message", message));
+    }
+    
+    private static Rule toRule(PathPatternParser parser, Map.Entry<String, RateLimitProperties.Endpoint> entry) {
+        RateLimitProperties.Endpoint endpoint = entry.getValue();
+        if (endpoint.getRefillPerSecond() <= 0 || endpoint.getCapacity() < 1) {
+            throw new IllegalStateException("Límite inválido para el endpoint " + entry.getKey());
+        }
+        return new Rule(entry.getKey(), endpoint.getMethod(), parser.parse(endpoint.getPattern()),
+                endpoint.getCapacity(), endpoint.getRefillPerSecond());
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.libreria.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "libreria.rate-limit")
+public class RateLimitProperties {
+    
+    private boolean enabled = true;
+    
+    // Escrituras simultáneas admitidas; debe quedar por debajo del pool de conexiones
+    private int maxConcurrentWrites = 8;
+    
+    // Espera máxima por un lugar antes de rechazar con 503
+    private Duration queueTimeout = Duration.ofMillis(50);
+    
+    // Capacidad y reposición del bucket por dirección, en múltiplos de las de un usuario
+    private int addressFactor = 5;
+    
+    private int stripes = 64;
+    
+    private int maxKeys = 100_000;
+    
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    
+    @Data
+    public static class Endpoint {
+        
+        private String method = "POST";
+        private String pattern;
+        // Ráfaga máxima y tokens repuestos por segundo, por usuario o cliente
+        private int capacity = 10;
+        private double refillPerSecond = 1.0;
+    }
+}
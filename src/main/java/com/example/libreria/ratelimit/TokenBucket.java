@@ -0,0 +1,45 @@
+package com.example.libreria.ratelimit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// Estado inmutable reemplazado por CAS: ningún hilo bloquea a otro al consumir tokens
+final class TokenBucket {
+    
+    private record State(double tokens, long refilledAt) {
+    }
+    
+    private final double capacity;
+    private final double tokensPerNano;
+    private final AtomicReference<State> state;
+    
+    TokenBucket(double capacity, double tokensPerNano, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerNano;
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+    
+    // Devuelve 0 si se consumió un token, o los nanosegundos hasta que haya uno disponible
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            State current = state.get();
+            double tokens = available(current, nowNanos);
+            if (tokens < 1) {
+                return Math.max(1L, (long) Math.ceil((1 - tokens) / tokensPerNano));
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, Math.max(nowNanos, current.refilledAt())))) {
+                return 0;
+            }
+        }
+    }
+    
+    // Un bucket lleno equivale a uno nuevo, así que puede descartarse sin perder información.
+    // Usa su propia capacidad: en una franja conviven buckets de endpoints con límites distintos
+    boolean isFull(long nowNanos) {
+        return available(state.get(), nowNanos) >= capacity;
+    }
+    
+    private double available(State state, long nowNanos) {
+        long elapsed = Math.max(0L, nowNanos - state.refilledAt());
+        return Math.min(capacity, state.tokens() + elapsed * tokensPerNano);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.libreria.ratelimit;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buckets por clave repartidos en franjas independientes. Las lecturas y el consumo de
+ * tokens no toman locks; sólo el alta de una clave nueva sincroniza dentro de su franja.
+ * Cuando una franja supera su cupo, cada alta avanza una manecilla (como en el algoritmo
+ * del reloj) sobre a lo sumo {@value #SWEEP_BATCH} buckets y descarta los llenos, que
+ * equivalen a buckets nuevos; el costo de una clave nueva no depende del tamaño de la franja.
+ * Si aun así la franja llega al doble del cupo, se descartan los buckets bajo la manecilla
+ * aunque no estén llenos: esos clientes recuperan la ráfaga completa, pero la memoria queda acotada.
+ */
+public class TokenBucketTable {
+    
+    private static final int SWEEP_BATCH = 8;
+    
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxKeysPerStripe;
+    
+    public TokenBucketTable(int stripeCount, int maxKeys) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / size);
+    }
+    
+    public long tryAcquire(String key, double capacity, double refillPerSecond, long nowNanos) {
+        Stripe stripe = stripeFor(key);
+        TokenBucket bucket = stripe.buckets.get(key);
+        if (bucket == null) {
+            bucket = stripe.add(key, capacity, refillPerSecond / 1_000_000_000d, nowNanos);
+        }
+        return bucket.tryAcquire(nowNanos);
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+    
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+    
+    private final class Stripe {
+        
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        // Iterador débilmente consistente: sigue siendo válido aunque el mapa cambie entre altas
+        private Iterator<TokenBucket> hand = buckets.values().iterator();
+        
+        synchronized TokenBucket add(String key, double capacity, double tokensPerNano, long nowNanos) {
+            TokenBucket existing = buckets.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (buckets.size() >= maxKeysPerStripe) {
+                sweep(nowNanos);
+            }
+            TokenBucket bucket = new TokenBucket(capacity, tokensPerNano, nowNanos);
+            buckets.put(key, bucket);
+            return bucket;
+        }
+        
+        private void sweep(long nowNanos) {
+            for (int i = 0; i < SWEEP_BATCH; i++) {
+                if (!hand.hasNext()) {
+                    hand = buckets.values().iterator();
+                    if (!hand.hasNext()) {
+                        return;
+                    }
+                }
+                TokenBucket bucket = hand.next();
+                if (bucket.isFull(nowNanos) || buckets.size() >= 2 * maxKeysPerStripe) {
+                    hand.remove();
+                }
+            }
+        }
+    }
+}
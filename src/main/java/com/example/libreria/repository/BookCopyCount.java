@@ -0,0 +1,4 @@
+package com.example.libreria.repository;
+
+public record BookCopyCount(Long bookExternalId, Long copies) {
+}
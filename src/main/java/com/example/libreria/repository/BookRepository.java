@@ -1,9 +1,16 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Book;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,5 +19,40 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     Optional<Book> findByExternalId(Long externalId);
     
     boolean existsByExternalId(Long externalId);
+    
+    List<Book> findByExternalIdIn(Collection<Long> externalIds);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.externalId = :externalId")
+    Optional<Book> findByExternalIdForUpdate(@Param("externalId") Long externalId);
+    
+    // Actualizaciones atómicas: el chequeo y la escritura ocurren en la misma sentencia
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity - 1, " +
+            "b.stockVersion = COALESCE(b.stockVersion, 0) + 1 " +
+            "WHERE b.externalId = :externalId AND b.availableQuantity > 0")
+    int decrementAvailableQuantity(@Param("externalId") Long externalId);
+    
+    // El préstamo común en una sola sentencia: hay ejemplar, nadie espera y el usuario no tiene uno asignado
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity - 1, " +
+            "b.stockVersion = COALESCE(b.stockVersion, 0) + 1 " +
+            "WHERE b.externalId = :externalId AND b.availableQuantity > 0 AND NOT EXISTS (" +
+            "SELECT w.id FROM WaitlistEntry w WHERE w.bookExternalId = :externalId " +
+            "AND (w.status = 'WAITING' OR (w.status = 'HELD' AND w.userId = :userId)))")
+    int takeFromPool(@Param("externalId") Long externalId, @Param("userId") Long userId);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity + 1, " +
+            "b.stockVersion = COALESCE(b.stockVersion, 0) + 1 " +
+            "WHERE b.externalId = :externalId AND b.availableQuantity < b.stockQuantity")
+    int incrementAvailableQuantity(@Param("externalId") Long externalId);
+    
+    // El stock nuevo no puede quedar por debajo de los ejemplares prestados o asignados (stock - disponibles)
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableQuantity = b.availableQuantity + (:stockQuantity - b.stockQuantity), " +
+            "b.stockQuantity = :stockQuantity, b.stockVersion = COALESCE(b.stockVersion, 0) + 1 " +
+            "WHERE b.externalId = :externalId AND b.stockQuantity - b.availableQuantity <= :stockQuantity")
+    int adjustStock(@Param("externalId") Long externalId, @Param("stockQuantity") Integer stockQuantity);
 }
 
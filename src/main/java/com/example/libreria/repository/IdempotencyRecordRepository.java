@@ -0,0 +1,30 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.IdempotencyRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+    
+    @Query("SELECT r.requestKey FROM IdempotencyRecord r WHERE r.status = 'COMPLETED' ORDER BY r.createdAt")
+    List<String> findOldestCompletedKeys(Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.requestKey IN :keys")
+    int deleteByRequestKeyIn(@Param("keys") List<String> keys);
+}
@@ -1,7 +1,9 @@
 package com.example.libreria.repository;
 
+import com.example.libreria.availability.ReservationSpan;
 import com.example.libreria.model.Reservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,6 +23,55 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     @Query ("SELECT r FROM Reservation  r WHERE  r.expectedReturnDate < CURRENT_DATE AND r.status = 'ACTIVE'")
     List<Reservation> findOverdueReservations();
 
+    long countByStatus(Reservation.ReservationStatus status);
+
+    @Query ("SELECT COUNT(r) FROM Reservation r WHERE r.expectedReturnDate < CURRENT_DATE AND r.status = 'ACTIVE'")
+    long countOverdueReservations();
+
+    @Query ("SELECT COUNT(r) FROM Reservation r WHERE r.user.id = :userId AND r.expectedReturnDate < CURRENT_DATE AND r.status = 'ACTIVE'")
+    long countOverdueReservationsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.example.libreria.availability.ReservationSpan(r.startDate, r.expectedReturnDate) " +
+            "FROM Reservation r WHERE r.book.externalId = :externalId AND r.status IN ('ACTIVE', 'OVERDUE') " +
+            "AND r.startDate < :before")
+    List<ReservationSpan> findOpenSpans(@Param("externalId") Long externalId, @Param("before") LocalDate before);
+    
+    @Query("SELECT r.id FROM Reservation r WHERE r.pendingStart = true AND r.status = 'ACTIVE' " +
+            "AND r.startDate <= :today ORDER BY r.startDate, r.id")
+    List<Long> findIdsDueToStart(@Param("today") LocalDate today);
+    
+    // Lo usan el inicio de una reserva a futuro y su devolución anticipada: sólo uno de los dos la toma
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reservation r SET r.pendingStart = false " +
+            "WHERE r.id = :id AND r.pendingStart = true AND r.status = 'ACTIVE'")
+    int clearPendingStart(@Param("id") Long id);
+    
+    // Sólo una devolución cierra la reserva, aunque lleguen dos a la vez o desde distintas instancias
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = 'RETURNED' WHERE r.id = :id AND r.status = 'ACTIVE'")
+    int claimReturn(@Param("id") Long id);
+    
+    // Lo que releaseStockHeldByUser devuelve a cada libro
+    @Query("SELECT new com.example.libreria.repository.BookCopyCount(r.book.externalId, COUNT(r)) " +
+            "FROM Reservation r WHERE r.user.id = :userId AND r.status IN ('ACTIVE', 'OVERDUE') " +
+            "AND (r.pendingStart IS NULL OR r.pendingStart = FALSE) GROUP BY r.book.externalId")
+    List<BookCopyCount> countStockHeldByUser(@Param("userId") Long userId);
+    
+    // Devuelve al stock los ejemplares de las reservas abiertas del usuario, agrupado por libro
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE books b SET available_quantity = available_quantity + " +
+            "(SELECT COUNT(*) FROM reservations r WHERE r.book_external_id = b.external_id " +
+            "AND r.user_id = :userId AND r.status IN ('ACTIVE', 'OVERDUE') " +
+            "AND (r.pending_start IS NULL OR r.pending_start = FALSE)), " +
+            "stock_version = COALESCE(stock_version, 0) + 1 " +
+            "WHERE b.external_id IN (SELECT r.book_external_id FROM reservations r " +
+            "WHERE r.user_id = :userId AND r.status IN ('ACTIVE', 'OVERDUE'))", nativeQuery = true)
+    int releaseStockHeldByUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM Reservation r WHERE r.user.id = :userId")
+    int deleteAllByUserIdInBulk(@Param("userId") Long userId);
+
     // TODO: Implementar los métodos de la reserva
 }
 
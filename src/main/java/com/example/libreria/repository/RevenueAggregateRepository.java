@@ -0,0 +1,10 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.RevenueAggregate;
+import com.example.libreria.model.RevenueAggregateId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RevenueAggregateRepository extends JpaRepository<RevenueAggregate, RevenueAggregateId> {
+}
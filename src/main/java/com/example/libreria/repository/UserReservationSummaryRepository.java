@@ -0,0 +1,32 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.UserReservationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface UserReservationSummaryRepository extends JpaRepository<UserReservationSummary, Long> {
+    
+    // Devuelve 0 si la fila no existe o si el usuario ya tiene maxActive préstamos abiertos
+    @Modifying
+    @Query("UPDATE UserReservationSummary s SET s.activeCount = s.activeCount + 1, " +
+            "s.lifetimeReservations = s.lifetimeReservations + 1, s.updatedAt = :now " +
+            "WHERE s.userId = :userId AND s.activeCount < :maxActive")
+    int registerLoan(@Param("userId") Long userId, @Param("maxActive") int maxActive, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE UserReservationSummary s SET s.activeCount = s.activeCount - 1, " +
+            "s.outstandingLateFees = s.outstandingLateFees + :lateFee, s.updatedAt = :now " +
+            "WHERE s.userId = :userId")
+    int registerReturn(@Param("userId") Long userId, @Param("lateFee") BigDecimal lateFee, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("DELETE FROM UserReservationSummary s WHERE s.userId = :userId")
+    int deleteByUserIdInBulk(@Param("userId") Long userId);
+}
@@ -0,0 +1,61 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    
+    @Query("SELECT w FROM WaitlistEntry w WHERE w.userId = :userId AND w.bookExternalId = :bookExternalId " +
+            "AND w.status IN ('WAITING', 'HELD') ORDER BY w.id")
+    List<WaitlistEntry> findOpenEntries(@Param("userId") Long userId, @Param("bookExternalId") Long bookExternalId);
+    
+    @Query("SELECT MIN(w.id) FROM WaitlistEntry w WHERE w.bookExternalId = :bookExternalId AND w.status = 'WAITING'")
+    Long findHeadId(@Param("bookExternalId") Long bookExternalId);
+    
+    @Query("SELECT COUNT(w) > 0 FROM WaitlistEntry w WHERE w.bookExternalId = :bookExternalId AND w.status = 'WAITING'")
+    boolean hasWaiters(@Param("bookExternalId") Long bookExternalId);
+    
+    @Query("SELECT COUNT(w) FROM WaitlistEntry w WHERE w.bookExternalId = :bookExternalId " +
+            "AND w.status = 'WAITING' AND w.id < :id")
+    long countAhead(@Param("bookExternalId") Long bookExternalId, @Param("id") Long id);
+    
+    @Query("SELECT w.rentalDays FROM WaitlistEntry w WHERE w.bookExternalId = :bookExternalId AND w.status = 'HELD'")
+    List<Integer> findHeldRentalDays(@Param("bookExternalId") Long bookExternalId);
+    
+    // Asigna el ejemplar liberado a la entrada si nadie la tomó antes
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = com.example.libreria.model.WaitlistEntry.WaitlistStatus.HELD, " +
+            "w.heldAt = :now, w.holdExpiresAt = :expiresAt " +
+            "WHERE w.id = :id AND w.status = 'WAITING'")
+    int hold(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = com.example.libreria.model.WaitlistEntry.WaitlistStatus.WAITING, " +
+            "w.heldAt = NULL, w.holdExpiresAt = NULL " +
+            "WHERE w.id = :id AND w.status = 'HELD'")
+    int unhold(@Param("id") Long id);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WaitlistEntry w SET w.status = :target WHERE w.id = :id AND w.status = :expected")
+    int transition(@Param("id") Long id,
+                   @Param("expected") WaitlistEntry.WaitlistStatus expected,
+                   @Param("target") WaitlistEntry.WaitlistStatus target);
+    
+    @Query("SELECT w.id FROM WaitlistEntry w WHERE w.status = 'HELD' AND w.holdExpiresAt <= :now ORDER BY w.id")
+    List<Long> findExpiredHoldIds(@Param("now") LocalDateTime now);
+    
+    // Libros con ejemplares en el pool y gente esperando (p. ej. tras ampliar el stock)
+    @Query("SELECT DISTINCT w.bookExternalId FROM WaitlistEntry w, Book b " +
+            "WHERE b.externalId = w.bookExternalId AND w.status = 'WAITING' AND b.availableQuantity > 0")
+    List<Long> findBooksWithIdleCopies();
+    
+    List<WaitlistEntry> findByUserIdAndStatusIn(Long userId, List<WaitlistEntry.WaitlistStatus> statuses);
+}
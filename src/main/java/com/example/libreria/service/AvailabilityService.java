@@ -0,0 +1,105 @@
+package com.example.libreria.service;
+
+import com.example.libreria.availability.AvailabilityCalendar;
+import com.example.libreria.availability.ReservationSpan;
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.exception.UnavailableException;
+import com.example.libreria.exception.ValidationException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.WaitlistEntryRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disponibilidad por día de cada libro. Una reserva abierta ocupa un ejemplar en
+ * [startDate, expectedReturnDate); si está vencida se asume que vuelve mañana. Un ejemplar
+ * asignado desde la lista de espera ocupa desde hoy los días que pidió el usuario.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class AvailabilityService {
+    
+    private static final int DEFAULT_DAYS = 30;
+    
+    private final BookRepository bookRepository;
+    private final ReservationRepository reservationRepository;
+    private final WaitlistEntryRepository waitlistRepository;
+    
+    @Value("${libreria.availability.max-range-days:366}")
+    private int maxRangeDays;
+    
+    // from y to inclusive; por defecto los próximos 30 días
+    @Transactional(readOnly = true)
+    public BookAvailabilityDTO getAvailability(Long externalId, LocalDate from, LocalDate to) {
+        LocalDate start = from != null ? from : LocalDate.now();
+        LocalDate end = to != null ? to : start.plusDays(DEFAULT_DAYS - 1);
+        if (end.isBefore(start)) {
+            throw new ValidationException("La fecha final no puede ser anterior a la inicial");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= maxRangeDays) {
+            throw new ValidationException("El período consultado no puede superar " + maxRangeDays + " días");
+        }
+        Book book = bookRepository.findByExternalId(externalId)
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
+        
+        AvailabilityCalendar calendar = buildCalendar(book, start, end.plusDays(1));
+        int[] available = calendar.availablePerDay();
+        List<BookAvailabilityDTO.DayAvailability> days = new ArrayList<>(available.length);
+        for (int i = 0; i < available.length; i++) {
+            days.add(new BookAvailabilityDTO.DayAvailability(start.plusDays(i), Math.max(0, available[i])));
+        }
+        int minAvailable = Math.max(0, calendar.minAvailable(start, end.plusDays(1)));
+        return new BookAvailabilityDTO(externalId, start, end, book.getStockQuantity(), minAvailable, days);
+    }
+    
+    /**
+     * Verifica que quede un ejemplar libre todos los días del préstamo, desde hoy si empezó antes.
+     * Bloquea la fila del libro hasta el fin de la transacción para que dos reservas no tomen el mismo hueco.
+     */
+    @Transactional
+    public void validateSpan(Long externalId, LocalDate startDate, LocalDate expectedReturnDate) {
+        Book book = bookRepository.findByExternalIdForUpdate(externalId)
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
+        LocalDate today = LocalDate.now();
+        LocalDate from = startDate.isAfter(today) ? startDate : today;
+        LocalDate to = occupiedUntil(expectedReturnDate, today);
+        
+        AvailabilityCalendar calendar = buildCalendar(book, from, to);
+        if (calendar.minAvailable(from, to) < 1) {
+            throw new UnavailableException("El libro '" + book.getTitle() + "' no tiene ejemplares libres entre "
+                    + from + " y " + to.minusDays(1));
+        }
+    }
+    
+    private AvailabilityCalendar buildCalendar(Book book, LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        AvailabilityCalendar calendar = new AvailabilityCalendar(from, to, book.getStockQuantity());
+        for (ReservationSpan span : reservationRepository.findOpenSpans(book.getExternalId(), to)) {
+            calendar.occupy(span.startDate(), occupiedUntil(span.expectedReturnDate(), today));
+        }
+        for (Integer rentalDays : waitlistRepository.findHeldRentalDays(book.getExternalId())) {
+            calendar.occupy(today, today.plusDays(rentalDays));
+        }
+        return calendar;
+    }
+    
+    private static LocalDate occupiedUntil(LocalDate expectedReturnDate, LocalDate today) {
+        LocalDate tomorrow = today.plusDays(1);
+        return expectedReturnDate.isAfter(tomorrow) ? expectedReturnDate : tomorrow;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.libreria.service;
+
+import com.example.libreria.catalog.CatalogSource;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.exception.BookNotSyncedException;
+import com.example.libreria.exception.CatalogUnavailableException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Trae del origen del catálogo (la API externa por defecto) un libro que todavía no se sincronizó.
+ * Los pedidos simultáneos del mismo id comparten una sola llamada, y los ids que el catálogo no
+ * conoce se recuerdan un tiempo para que no se repita la consulta en cada reserva. Si se llena
+ * la caché negativa se olvidan primero los ids más viejos, no todos.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class BookHydrationService {
+    
+    private final ConcurrentHashMap<Long, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    // id -> System.nanoTime() hasta el que se considera inexistente
+    private final ConcurrentHashMap<Long, Long> notFound = new ConcurrentHashMap<>();
+    // Entradas de notFound en orden de alta; como todas tienen el mismo TTL, también en orden de vencimiento
+    private final ArrayDeque<Missing> missingOrder = new ArrayDeque<>();
+    
+    private record Missing(Long externalId, long until) {
+    }
+    
+    private final CatalogSource catalogSource;
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+    private final LibraryMetrics libraryMetrics;
+    
+    @Value("${libreria.hydration.negative-ttl:30s}")
+    private Duration negativeTtl;
+    
+    @Value("${libreria.hydration.negative-max-entries:10000}")
+    private int negativeMaxEntries;
+    
+    @Value("${libreria.hydration.wait-timeout:10s}")
+    private Duration waitTimeout;
+    
+    // Corre la operación y, si falla porque el libro no está local, lo trae del catálogo y la reintenta una vez.
+    // Se llama fuera de cualquier transacción: la llamada al catálogo y la espera no retienen una conexión
+    public <T> T withHydration(Long externalId, Supplier<T> operation) {
+        try {
+            return operation.get();
+        } catch (BookNotSyncedException e) {
+            if (!externalId.equals(e.getExternalId()) || !hydrate(externalId)) {
+                throw e;
+            }
+            return operation.get();
+        }
+    }
+    
+    // true si el libro quedó guardado localmente; false si el catálogo no lo conoce
+    public boolean hydrate(Long externalId) {
+        if (isKnownMissing(externalId)) {
+            libraryMetrics.recordBookHydration("negative_hit");
+            return false;
+        }
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(externalId, mine);
+        if (running != null) {
+            libraryMetrics.recordBookHydration("coalesced");
+            return await(externalId, running);
+        }
+        try {
+            boolean found = fetchAndSave(externalId);
+            mine.complete(found);
+            return found;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(externalId, mine);
+        }
+    }
+    
+    private boolean fetchAndSave(Long externalId) {
+        // Otro hilo pudo terminar de guardarlo entre la búsqueda del llamador y este punto
+        if (bookRepository.existsByExternalId(externalId)) {
+            libraryMetrics.recordBookHydration("already_present");
+            return true;
+        }
+        ExternalBookDTO externalBook = catalogSource.findById(externalId);
+        if (externalBook == null || externalBook.getId() == null) {
+            rememberMissing(externalId);
+            libraryMetrics.recordBookHydration("not_found");
+            return false;
+        }
+        if (!externalId.equals(externalBook.getId())) {
+            throw new RuntimeException("El catálogo devolvió el libro " + externalBook.getId() + " al pedir el " + externalId);
+        }
+        try {
+            bookService.createFromExternal(externalBook);
+        } catch (DataIntegrityViolationException e) {
+            // Una sincronización lo dio de alta al mismo tiempo
+            log.debug("Book {} was created concurrently", externalId);
+        }
+        libraryMetrics.recordBookHydration("fetched");
+        return true;
+    }
+    
+    private boolean await(Long externalId, CompletableFuture<Boolean> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new CatalogUnavailableException("Tiempo de espera agotado al obtener el libro " + externalId + " del catálogo");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CatalogUnavailableException("Se interrumpió la obtención del libro " + externalId);
+        }
+    }
+    
+    private boolean isKnownMissing(Long externalId) {
+        Long until = notFound.get(externalId);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        notFound.remove(externalId, until);
+        return false;
+    }
+    
+    // Sólo en el camino de un id desconocido, después de consultar el catálogo: el lock no compite con las lecturas
+    private synchronized void rememberMissing(Long externalId) {
+        long now = System.nanoTime();
+        long until = now + negativeTtl.toNanos();
+        notFound.put(externalId, until);
+        missingOrder.addLast(new Missing(externalId, until));
+        // Se quitan desde el más viejo los vencidos y, si sigue lleno, los que sobran
+        Missing oldest = missingOrder.peekFirst();
+        while (oldest != null && (now - oldest.until() >= 0 || notFound.size() > negativeMaxEntries)) {
+            missingOrder.pollFirst();
+            notFound.remove(oldest.externalId(), oldest.until());
+            oldest = missingOrder.peekFirst();
+        }
+    }
+}
@@ -1,48 +1,115 @@
 package com.example.libreria.service;
 
+import com.example.libreria.cache.ChangeFeed;
+import com.example.libreria.catalog.CatalogSource;
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.exception.UnavailableException;
+import com.example.libreria.metrics.LibraryMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
 @Slf4j
 public class BookService {
     
+    private static final int DEFAULT_STOCK = 10;
+    private static final int SYNC_BATCH_SIZE = 500;
+    
     private final BookRepository bookRepository;
-    private final ExternalBookService externalBookService;
+    private final CatalogSource catalogSource;
+    private final LibraryMetrics libraryMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeFeed changeFeed;
     
     @Transactional
     public void syncBooksFromExternalApi() {
-        log.info("Synchronizing books from external API");
-        List<ExternalBookDTO> externalBooks = externalBookService.fetchAllBooks();
-        
+        log.info("Synchronizing books from catalog source: {}", catalogSource.description());
+        long start = System.nanoTime();
+        changeFeed.allBooksChanged();
+        int total = 0;
+        // El catálogo se procesa por lotes: una consulta por lote para los libros ya guardados
+        try (Stream<ExternalBookDTO> externalBooks = catalogSource.books()) {
+            List<ExternalBookDTO> batch = new ArrayList<>(SYNC_BATCH_SIZE);
+            Iterator<ExternalBookDTO> iterator = externalBooks.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == SYNC_BATCH_SIZE || !iterator.hasNext()) {
+                    total += syncBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        libraryMetrics.recordSync(total, System.nanoTime() - start);
+        log.info("Synchronization completed: {} books", total);
+    }
+    
+    private int syncBatch(List<ExternalBookDTO> externalBooks) {
+        Map<Long, Book> existing = bookRepository.findAllById(
+                        externalBooks.stream().map(ExternalBookDTO::getId).toList()).stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+        List<Book> books = new ArrayList<>(externalBooks.size());
+        List<Boolean> created = new ArrayList<>(externalBooks.size());
         for (ExternalBookDTO externalBook : externalBooks) {
-            Book existingBook = bookRepository.findByExternalId(externalBook.getId())
-                    .orElse(null);
-            
+            Book existingBook = existing.get(externalBook.getId());
             if (existingBook == null) {
                 Book newBook = convertToBook(externalBook);
-                newBook.setStockQuantity(10); // Stock inicial por defecto
-                newBook.setAvailableQuantity(10);
-                bookRepository.save(newBook);
-                log.info("Created new book: {}", newBook.getTitle());
+                newBook.setStockQuantity(DEFAULT_STOCK); // Stock inicial por defecto
+                newBook.setAvailableQuantity(DEFAULT_STOCK);
+                // Un id repetido en el catálogo actualiza el libro creado en este mismo lote
+                existing.put(newBook.getExternalId(), newBook);
+                books.add(newBook);
+                created.add(true);
             } else {
                 // Actualizar información del libro
                 updateBookFromExternal(existingBook, externalBook);
-                bookRepository.save(existingBook);
-                log.info("Updated book: {}", existingBook.getTitle());
+                books.add(existingBook);
+                created.add(false);
             }
         }
-        log.info("Synchronization completed");
+        bookRepository.saveAll(books);
+        for (int i = 0; i < books.size(); i++) {
+            publishSynced(books.get(i), created.get(i));
+        }
+        log.debug("Synchronized batch of {} books", books.size());
+        return externalBooks.size();
+    }
+    
+    // Alta de un libro pedido por una reserva antes de sincronizarlo; se confirma aparte
+    // para que la reserva que lo pidió, y las que esperaban la misma llamada, lo encuentren
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void createFromExternal(ExternalBookDTO externalBook) {
+        if (bookRepository.existsByExternalId(externalBook.getId())) {
+            return;
+        }
+        changeFeed.bookChanged(externalBook.getId());
+        Book newBook = convertToBook(externalBook);
+        newBook.setStockQuantity(DEFAULT_STOCK);
+        newBook.setAvailableQuantity(DEFAULT_STOCK);
+        bookRepository.save(newBook);
+        publishSynced(newBook, true);
+        log.info("Created book {} on demand: {}", newBook.getExternalId(), newBook.getTitle());
     }
     
     @Transactional(readOnly = true)
@@ -55,51 +122,63 @@ public class BookService {
     @Transactional(readOnly = true)
     public BookResponseDTO getBookByExternalId(Long externalId) {
         Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
         return convertToDTO(book);
     }
     
     @Transactional
     public BookResponseDTO updateStock(Long externalId, Integer stockQuantity) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        int reserved = book.getStockQuantity() - book.getAvailableQuantity();
-        if (stockQuantity < reserved) {
-            throw new RuntimeException("No se puede reducir el stock por debajo de los libros reservados: " + reserved);
+        changeFeed.bookChanged(externalId);
+        // Un único UPDATE condicional: un préstamo o devolución concurrente (de esta u otra instancia)
+        // no se pierde entre la lectura del stock y la escritura
+        if (bookRepository.adjustStock(externalId, stockQuantity) == 0) {
+            Book book = bookRepository.findByExternalId(externalId)
+                    .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
+            int reserved = book.getStockQuantity() - book.getAvailableQuantity();
+            throw new ConflictException("No se puede reducir el stock por debajo de los libros reservados: " + reserved);
         }
         
-        book.setStockQuantity(stockQuantity);
-        book.setAvailableQuantity(stockQuantity - reserved);
-        bookRepository.save(book);
+        Book book = bookRepository.findByExternalId(externalId)
+                .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
+        eventPublisher.publishEvent(new StockAdjustedEvent(externalId, book.getStockQuantity(), book.getAvailableQuantity()));
         
         return convertToDTO(book);
     }
     
     @Transactional
     public void decreaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() <= 0) {
-            throw new RuntimeException("No hay libros disponibles para reservar");
+        changeFeed.bookChanged(externalId);
+        if (bookRepository.decrementAvailableQuantity(externalId) == 0) {
+            bookRepository.findByExternalId(externalId)
+                    .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
+            libraryMetrics.recordStockExhausted();
+            throw new UnavailableException("No hay libros disponibles para reservar");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
-        bookRepository.save(book);
+    }
+    
+    // false si no se pudo: sin ejemplares, con cola o con un ejemplar ya asignado al usuario
+    @Transactional
+    public boolean takeFromPool(Long externalId, Long userId) {
+        if (bookRepository.takeFromPool(externalId, userId) == 0) {
+            return false;
+        }
+        changeFeed.bookChanged(externalId);
+        return true;
     }
     
     @Transactional
     public void increaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() >= book.getStockQuantity()) {
-            throw new RuntimeException("La cantidad disponible no puede exceder el stock");
+        changeFeed.bookChanged(externalId);
+        if (bookRepository.incrementAvailableQuantity(externalId) == 0) {
+            bookRepository.findByExternalId(externalId)
+                    .orElseThrow(() -> new NotFoundException("Libro no encontrado con ID externo: " + externalId));
+            throw new ConflictException("La cantidad disponible no puede exceder el stock");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-        bookRepository.save(book);
+    }
+    
+    private void publishSynced(Book book, boolean created) {
+        eventPublisher.publishEvent(new BookSyncedEvent(book.getExternalId(), book.getTitle(), book.getPrice(),
+                book.getStockQuantity(), book.getAvailableQuantity(), created));
     }
     
     private Book convertToBook(ExternalBookDTO dto) {
@@ -116,7 +195,10 @@ public class BookService {
     
     private void updateBookFromExternal(Book book, ExternalBookDTO dto) {
         book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
+        // Reemplazar la colección fuerza a Hibernate a reescribir book_authors
+        if (book.getAuthorName() == null || !new ArrayList<>(book.getAuthorName()).equals(dto.getAuthorName())) {
+            book.setAuthorName(dto.getAuthorName());
+        }
         book.setFirstPublishYear(dto.getFirstPublishYear());
         book.setEditionCount(dto.getEditionCount());
         book.setHasFulltext(dto.getHasFulltext());
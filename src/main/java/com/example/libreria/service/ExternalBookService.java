@@ -1,12 +1,15 @@
 package com.example.libreria.service;
 
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.metrics.LibraryMetrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
@@ -19,15 +22,22 @@ public class ExternalBookService {
     // TODO: completar llamada a la API externa (ver bien todo el proyecto...)
     
     private final RestTemplate restTemplate;
+    private final LibraryMetrics libraryMetrics;
     
     @Value("${external.api.books.url}")
     private String externalApiUrl;
     
-    public ExternalBookService(RestTemplate restTemplate) {
+    public ExternalBookService(RestTemplate restTemplate, LibraryMetrics libraryMetrics) {
         this.restTemplate = restTemplate;
+        this.libraryMetrics = libraryMetrics;
+    }
+    
+    public String getExternalApiUrl() {
+        return externalApiUrl;
     }
     
     public List<ExternalBookDTO> fetchAllBooks() {
+        Timer.Sample sample = libraryMetrics.startExternalRequest();
         try {
             log.info("Fetching books from external API: {}", externalApiUrl);
             ResponseEntity<List<ExternalBookDTO>> response = restTemplate.exchange(
@@ -38,22 +48,32 @@ public class ExternalBookService {
             );
             
             List<ExternalBookDTO> books = response.getBody();
+            libraryMetrics.recordExternalRequest(sample, "fetchAllBooks", true);
             log.info("Successfully fetched {} books from external API", books != null ? books.size() : 0);
             return books != null ? books : Collections.emptyList();
         } catch (RestClientException e) {
+            libraryMetrics.recordExternalRequest(sample, "fetchAllBooks", false);
             log.error("Error fetching books from external API: {}", e.getMessage(), e);
             throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
         }
     }
     
+    // null si la API no conoce el libro
     public ExternalBookDTO fetchBookById(Long id) {
+        Timer.Sample sample = libraryMetrics.startExternalRequest();
         try {
             log.info("Fetching book with id {} from external API", id);
             String url = externalApiUrl + "/" + id;
             ExternalBookDTO book = restTemplate.getForObject(url, ExternalBookDTO.class);
+            libraryMetrics.recordExternalRequest(sample, "fetchBookById", true);
             log.info("Successfully fetched book: {}", book != null ? book.getTitle() : "null");
             return book;
+        } catch (HttpClientErrorException.NotFound e) {
+            libraryMetrics.recordExternalRequest(sample, "fetchBookById", true);
+            log.info("Book {} not found in external API", id);
+            return null;
         } catch (RestClientException e) {
+            libraryMetrics.recordExternalRequest(sample, "fetchBookById", false);
             log.error("Error fetching book {} from external API: {}", id, e.getMessage(), e);
             throw new RuntimeException("Error al obtener el libro de la API externa: " + e.getMessage(), e);
         }
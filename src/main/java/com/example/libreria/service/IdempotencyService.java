@@ -0,0 +1,288 @@
+package com.example.libreria.service;
+
+import com.example.libreria.exception.BookWaitlistedException;
+import com.example.libreria.exception.IdempotencyConflictException;
+import com.example.libreria.exception.ValidationException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.IdempotencyRecord;
+import com.example.libreria.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Soporte de Idempotency-Key para los endpoints de escritura. La clave se reserva con un INSERT
+ * (visible para las demás instancias) antes de ejecutar la operación, fuera de su transacción;
+ * los duplicados concurrentes de la misma instancia esperan el resultado de la primera solicitud.
+ * La operación corre en una transacción que también marca la clave COMPLETED con la respuesta:
+ * o se confirman las dos cosas o ninguna, así que una clave IN_PROGRESS (liberada por un error o
+ * vencida tras lock-timeout) nunca corresponde a una reserva o devolución ya confirmada.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class IdempotencyService {
+    
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int EVICTION_BATCH = 1000;
+    
+    private static final String CLAIM =
+            "INSERT INTO idempotency_keys (request_key, fingerprint, status, claim_token, created_at, expires_at) " +
+            "VALUES (?, ?, 'IN_PROGRESS', ?, ?, ?)";
+    private static final String COMPLETE =
+            "UPDATE idempotency_keys SET status = 'COMPLETED', response_status = ?, response_body = ?, expires_at = ? " +
+            "WHERE request_key = ? AND status = 'IN_PROGRESS' AND claim_token = ?";
+    private static final String RELEASE =
+            "DELETE FROM idempotency_keys WHERE request_key = ? AND status = 'IN_PROGRESS' AND claim_token = ?";
+    private static final String DELETE_IF_EXPIRED =
+            "DELETE FROM idempotency_keys WHERE request_key = ? AND expires_at < ?";
+    
+    private record StoredResponse(String fingerprint, int status, String body) {
+    }
+    
+    private record InFlight(String fingerprint, CompletableFuture<StoredResponse> response) {
+    }
+    
+    private record Completed<T>(ResponseEntity<T> response, StoredResponse stored) {
+    }
+    
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    // Filas estimadas: las claves reservadas acá menos las borradas. Con varias instancias se queda
+    // corta, así que cada recount-interval (o si pasa de max-entries) se cuenta la tabla
+    private final AtomicLong estimatedEntries = new AtomicLong();
+    private volatile long countedAt;
+    private volatile boolean counted;
+    
+    private final IdempotencyRecordRepository idempotencyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final LibraryMetrics libraryMetrics;
+    
+    // Cuánto se conserva la respuesta para repetirla
+    @Value("${libreria.idempotency.ttl:24h}")
+    private Duration ttl;
+    
+    // Vencimiento de una clave reservada cuya solicitud no terminó (por ejemplo, si la instancia se cayó)
+    @Value("${libreria.idempotency.lock-timeout:30s}")
+    private Duration lockTimeout;
+    
+    @Value("${libreria.idempotency.in-flight-timeout:10s}")
+    private Duration inFlightTimeout;
+    
+    @Value("${libreria.idempotency.max-entries:100000}")
+    private long maxEntries;
+    
+    @Value("${libreria.idempotency.recount-interval:PT1H}")
+    private Duration recountInterval;
+    
+    /**
+     * Ejecuta la operación una sola vez por clave y endpoint; las repeticiones reciben la misma
+     * respuesta con el header Idempotent-Replayed. Si la operación falla su transacción se revierte
+     * y la clave se libera. Un 202 por lista de espera también se guarda y se repite.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException("El header " + HEADER + " debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres");
+        }
+        String requestKey = scope + ":" + key;
+        String fingerprint = fingerprint(request);
+        
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(requestKey, mine);
+        if (running != null) {
+            return replay(scope, "coalesced", fingerprint, await(running), responseType);
+        }
+        try {
+            String token = UUID.randomUUID().toString();
+            StoredResponse previous = claim(requestKey, fingerprint, token);
+            if (previous != null) {
+                mine.response().complete(previous);
+                return replay(scope, "replayed", fingerprint, previous, responseType);
+            }
+            Completed<T> completed;
+            try {
+                completed = transactionTemplate.execute(status -> runAndComplete(requestKey, fingerprint, token, action));
+            } catch (RuntimeException e) {
+                // Se revirtió junto con la operación: la clave sigue IN_PROGRESS con nuestro token
+                estimatedEntries.addAndGet(-jdbcTemplate.update(RELEASE, requestKey, token));
+                throw e;
+            }
+            mine.response().complete(completed.stored());
+            libraryMetrics.recordIdempotentRequest(scope, "executed");
+            return completed.response();
+        } catch (RuntimeException e) {
+            mine.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(requestKey, mine);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.idempotency.sweep-interval:PT1M}")
+    public void evictExpired() {
+        int expired = idempotencyRepository.deleteExpired(LocalDateTime.now());
+        long estimate = estimatedEntries.addAndGet(-expired);
+        long now = System.nanoTime();
+        if (!counted || estimate > maxEntries || now - countedAt >= recountInterval.toNanos()) {
+            estimate = idempotencyRepository.count();
+            estimatedEntries.set(estimate);
+            countedAt = now;
+            counted = true;
+        }
+        int evicted = 0;
+        long excess = estimate - maxEntries;
+        while (excess > 0) {
+            List<String> oldest = idempotencyRepository.findOldestCompletedKeys(
+                    PageRequest.of(0, (int) Math.min(excess, EVICTION_BATCH)));
+            if (oldest.isEmpty()) {
+                break;
+            }
+            int deleted = idempotencyRepository.deleteByRequestKeyIn(oldest);
+            evicted += deleted;
+            excess -= deleted;
+        }
+        estimatedEntries.addAndGet(-evicted);
+        if (expired > 0 || evicted > 0) {
+            log.debug("Evicted {} expired and {} excess idempotency keys", expired, evicted);
+        }
+    }
+    
+    // null si la clave quedó reservada para esta solicitud; la respuesta guardada si ya se completó
+    private StoredResponse claim(String requestKey, String fingerprint, String token) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                jdbcTemplate.update(CLAIM, requestKey, fingerprint, token, Timestamp.valueOf(now),
+                        Timestamp.valueOf(now.plus(lockTimeout)));
+                estimatedEntries.incrementAndGet();
+                return null;
+            } catch (DuplicateKeyException e) {
+                IdempotencyRecord existing = idempotencyRepository.findById(requestKey).orElse(null);
+                if (existing == null) {
+                    continue;
+                }
+                // Una clave IN_PROGRESS vencida no tiene nada confirmado: su solicitud, si sigue viva,
+                // ya no podrá completarla y se revertirá (ver runAndComplete)
+                if (existing.getExpiresAt().isBefore(now)) {
+                    jdbcTemplate.update(DELETE_IF_EXPIRED, requestKey, Timestamp.valueOf(now));
+                    continue;
+                }
+                if (existing.getStatus() == IdempotencyRecord.IdempotencyStatus.COMPLETED) {
+                    return new StoredResponse(existing.getFingerprint(), existing.getResponseStatus(),
+                            existing.getResponseBody());
+                }
+                break;
+            }
+        }
+        throw new IdempotencyConflictException("Hay una solicitud con la misma " + HEADER + " en curso");
+    }
+    
+    // Dentro de la transacción de la operación: si la respuesta no se puede guardar, la operación se revierte
+    @SuppressWarnings("unchecked")
+    private <T> Completed<T> runAndComplete(String requestKey, String fingerprint, String token,
+                                            Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (BookWaitlistedException e) {
+            // La entrada en la lista de espera se confirma: se responde el mismo 202 que GlobalExceptionHandler
+            response = (ResponseEntity<T>) ResponseEntity.status(HttpStatus.ACCEPTED).body(e.getBody());
+        }
+        String body = null;
+        try {
+            if (response.getBody() != null) {
+                body = objectMapper.writeValueAsString(response.getBody());
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo guardar la respuesta idempotente", e);
+        }
+        StoredResponse stored = new StoredResponse(fingerprint, response.getStatusCode().value(), body);
+        int updated = jdbcTemplate.update(COMPLETE, stored.status(), body, Timestamp.valueOf(LocalDateTime.now().plus(ttl)),
+                requestKey, token);
+        if (updated == 0) {
+            // La clave venció y la tomó otra solicitud: confirmar duplicaría la operación
+            log.warn("Idempotency key {} expired before its request completed, rolling back", requestKey);
+            throw new IdempotencyConflictException("Hay una solicitud con la misma " + HEADER + " en curso");
+        }
+        return new Completed<>(response, stored);
+    }
+    
+    private StoredResponse await(InFlight running) {
+        try {
+            return running.response().get(inFlightTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("Hay una solicitud con la misma " + HEADER + " en curso");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Hay una solicitud con la misma " + HEADER + " en curso");
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> replay(String scope, String outcome, String fingerprint, StoredResponse stored,
+                                         Class<T> responseType) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            libraryMetrics.recordIdempotentRequest(scope, "conflict");
+            throw new IdempotencyConflictException("La " + HEADER + " ya se usó con otra solicitud");
+        }
+        libraryMetrics.recordIdempotentRequest(scope, outcome);
+        try {
+            // El 202 de la lista de espera no es del tipo de la respuesta: se repite como JSON genérico
+            Class<?> bodyType = stored.status() == HttpStatus.ACCEPTED.value() ? Map.class : responseType;
+            T body = stored.body() != null ? (T) objectMapper.readValue(stored.body(), bodyType) : null;
+            return ResponseEntity.status(stored.status()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo leer la respuesta idempotente guardada", e);
+        }
+    }
+    
+    private String fingerprint(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la solicitud", e);
+        }
+    }
+}
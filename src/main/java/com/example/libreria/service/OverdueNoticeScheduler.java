@@ -0,0 +1,31 @@
+package com.example.libreria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Una pasada por día; si se repite (otra instancia, reinicio) sólo manda los avisos que faltan
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OverdueNoticeScheduler {
+    
+    private final OverdueNoticeService overdueNoticeService;
+    
+    @Value("${libreria.overdue-notices.enabled:false}")
+    private boolean enabled;
+    
+    @Scheduled(cron = "${libreria.overdue-notices.cron:0 0 9 * * *}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            overdueNoticeService.dispatch();
+        } catch (RuntimeException e) {
+            log.warn("Overdue notice dispatch failed: {}", e.getMessage());
+        }
+    }
+}
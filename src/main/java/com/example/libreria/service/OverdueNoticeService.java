@@ -0,0 +1,223 @@
+package com.example.libreria.service;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.notification.NoticeTransport;
+import com.example.libreria.notification.OverdueNotice;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Avisos a los usuarios con préstamos vencidos. Las reservas se leen de a batch-size ordenadas por id
+ * (keyset, sin OFFSET) junto con el usuario y el libro, y cada lote se envía en otro hilo, con hasta
+ * parallelism lotes en curso. Cada aviso se anota en overdue_notice_deliveries antes de enviarlo y su
+ * resultado apenas termina el envío: una segunda pasada, en esta u otra instancia, sólo manda los que
+ * faltan o fallaron. Si la instancia se cae a mitad de un envío, el aviso queda SENDING y se retoma
+ * pasado sending-timeout (podría llegar dos veces; nunca se pierde).
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class OverdueNoticeService {
+    
+    // Vencidas sin aviso enviado dentro de repeat-every ni otro en curso hoy (un SENDING más viejo que
+    // sending-timeout quedó de una pasada que se cayó y se vuelve a tomar)
+    private static final String SELECT_PAGE =
+            "SELECT r.id, r.user_id, u.name, u.email, b.title, r.expected_return_date, r.daily_rate " +
+            "FROM reservations r JOIN users u ON u.id = r.user_id JOIN books b ON b.external_id = r.book_external_id " +
+            "WHERE r.id > ? AND r.status IN ('ACTIVE', 'OVERDUE') AND r.expected_return_date < ? " +
+            "AND (r.pending_start IS NULL OR r.pending_start = FALSE) " +
+            "AND NOT EXISTS (SELECT 1 FROM overdue_notice_deliveries d WHERE d.reservation_id = r.id " +
+            "AND ((d.status = 'SENT' AND d.notice_date > ?) " +
+            "OR (d.status = 'SENDING' AND d.notice_date = ? AND d.updated_at >= ?))) " +
+            "ORDER BY r.id LIMIT ?";
+    private static final String CLAIM =
+            "INSERT INTO overdue_notice_deliveries (reservation_id, notice_date, status, days_late, late_fee, attempts, updated_at) " +
+            "VALUES (?, ?, 'SENDING', ?, ?, 1, ?)";
+    private static final String RECLAIM =
+            "UPDATE overdue_notice_deliveries SET status = 'SENDING', days_late = ?, late_fee = ?, " +
+            "attempts = attempts + 1, updated_at = ? WHERE reservation_id = ? AND notice_date = ? " +
+            "AND (status = 'FAILED' OR (status = 'SENDING' AND updated_at < ?))";
+    private static final String COMPLETE =
+            "UPDATE overdue_notice_deliveries SET status = ?, last_error = ?, updated_at = ? " +
+            "WHERE reservation_id = ? AND notice_date = ? AND status = 'SENDING'";
+    
+    public record DispatchResult(int selected, int sent, int failed, int skipped) {
+    }
+    
+    private record Candidate(Long reservationId, Long userId, String userName, String email, String bookTitle,
+                             LocalDate expectedReturnDate, BigDecimal dailyRate) {
+    }
+    
+    private static final RowMapper<Candidate> CANDIDATE_MAPPER = (rs, rowNum) -> new Candidate(
+            rs.getLong("id"),
+            rs.getLong("user_id"),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getString("title"),
+            rs.getDate("expected_return_date").toLocalDate(),
+            rs.getBigDecimal("daily_rate"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ReservationService reservationService;
+    private final NoticeTransport noticeTransport;
+    private final LibraryMetrics libraryMetrics;
+    
+    @Value("${libreria.overdue-notices.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${libreria.overdue-notices.parallelism:4}")
+    private int parallelism;
+    
+    // Un préstamo que sigue vencido se vuelve a avisar cuando pasó este tiempo desde el último aviso enviado
+    @Value("${libreria.overdue-notices.repeat-every:7d}")
+    private Duration repeatEvery;
+    
+    // Un aviso SENDING sin resultado pasado este tiempo se da por abandonado; mucho más que lo que tarda un envío
+    @Value("${libreria.overdue-notices.sending-timeout:10m}")
+    private Duration sendingTimeout;
+    
+    public DispatchResult dispatch() {
+        return dispatch(LocalDate.now());
+    }
+    
+    // today fija el día de la pasada: la demora, la multa y la fila de entrega se calculan con él
+    public DispatchResult dispatch(LocalDate today) {
+        Date noticeDate = Date.valueOf(today);
+        Date sentAfter = Date.valueOf(today.minusDays(Math.max(repeatEvery.toDays(), 1)));
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        int selected = 0;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<?>> inFlight = new ArrayDeque<>();
+        try {
+            long afterId = 0;
+            List<Candidate> page;
+            do {
+                page = jdbcTemplate.query(SELECT_PAGE, CANDIDATE_MAPPER, afterId, noticeDate, sentAfter, noticeDate,
+                        staleBefore(), batchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                selected += page.size();
+                afterId = page.get(page.size() - 1).reservationId();
+                // Con parallelism lotes en curso, la lectura espera al más viejo
+                if (inFlight.size() >= parallelism) {
+                    await(inFlight.removeFirst());
+                }
+                List<Candidate> batch = page;
+                inFlight.addLast(executor.submit(() -> sendBatch(batch, today, sent, failed, skipped)));
+            } while (page.size() == batchSize);
+            while (!inFlight.isEmpty()) {
+                await(inFlight.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        DispatchResult result = new DispatchResult(selected, sent.get(), failed.get(), skipped.get());
+        if (selected > 0) {
+            log.info("Overdue notices for {}: {} selected, {} sent, {} failed, {} skipped",
+                    today, result.selected(), result.sent(), result.failed(), result.skipped());
+        }
+        return result;
+    }
+    
+    private void sendBatch(List<Candidate> batch, LocalDate today, AtomicInteger sent,
+                           AtomicInteger failed, AtomicInteger skipped) {
+        for (Candidate candidate : batch) {
+            OverdueNotice notice = render(candidate, today);
+            if (!claim(notice, today)) {
+                // Otra pasada lo está enviando o ya lo envió
+                skipped.incrementAndGet();
+                libraryMetrics.recordOverdueNotice("skipped");
+                continue;
+            }
+            try {
+                noticeTransport.send(notice);
+                complete(notice, today, "SENT", null);
+                sent.incrementAndGet();
+                libraryMetrics.recordOverdueNotice("sent");
+            } catch (RuntimeException e) {
+                log.warn("Could not send overdue notice for reservation {} via {}: {}",
+                        notice.reservationId(), noticeTransport.description(), e.getMessage());
+                complete(notice, today, "FAILED", truncate(e.getMessage()));
+                failed.incrementAndGet();
+                libraryMetrics.recordOverdueNotice("failed");
+            }
+        }
+    }
+    
+    // Apenas termina cada envío: una caída sólo deja SENDING los avisos que estaban saliendo en ese momento
+    private void complete(OverdueNotice notice, LocalDate today, String status, String error) {
+        jdbcTemplate.update(COMPLETE, status, error, Timestamp.valueOf(LocalDateTime.now()),
+                notice.reservationId(), Date.valueOf(today));
+    }
+    
+    private OverdueNotice render(Candidate candidate, LocalDate today) {
+        long daysLate = ChronoUnit.DAYS.between(candidate.expectedReturnDate(), today);
+        return new OverdueNotice(candidate.reservationId(), candidate.userId(), candidate.userName(), candidate.email(),
+                candidate.bookTitle(), candidate.expectedReturnDate(), daysLate,
+                reservationService.calculateLateFee(candidate.dailyRate(), daysLate));
+    }
+    
+    // La restricción única (reserva, día) decide quién envía; un aviso que falló hoy, o quedó SENDING
+    // más de sending-timeout, se vuelve a tomar
+    private boolean claim(OverdueNotice notice, LocalDate today) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Date noticeDate = Date.valueOf(today);
+        try {
+            jdbcTemplate.update(CLAIM, notice.reservationId(), noticeDate, notice.daysLate(), notice.lateFee(), now);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return jdbcTemplate.update(RECLAIM, notice.daysLate(), notice.lateFee(), now,
+                    notice.reservationId(), noticeDate, staleBefore()) > 0;
+        }
+    }
+    
+    private Timestamp staleBefore() {
+        return Timestamp.valueOf(LocalDateTime.now().minus(sendingTimeout));
+    }
+    
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Envío de avisos interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló un lote de avisos de demora", e.getCause());
+        }
+    }
+    
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+}
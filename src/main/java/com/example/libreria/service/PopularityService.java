@@ -0,0 +1,63 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.PopularBookDTO;
+import com.example.libreria.exception.ValidationException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.Book;
+import com.example.libreria.popularity.HeavyHitters;
+import com.example.libreria.popularity.PopularityTracker;
+import com.example.libreria.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class PopularityService {
+    
+    private final PopularityTracker popularityTracker;
+    private final BookRepository bookRepository;
+    
+    // Un título es "hot" con al menos hot-min-today reservas hoy que sean hot-share de las de la ventana
+    @Value("${libreria.popularity.hot-min-today:5}")
+    private long hotMinToday;
+    
+    @Value("${libreria.popularity.hot-share:0.4}")
+    private double hotShare;
+    
+    // Los títulos salen del sketch; la base sólo se consulta por los limit libros del resultado
+    @Transactional(readOnly = true)
+    public List<PopularBookDTO> getPopularBooks(int limit) {
+        if (limit < 1 || limit > popularityTracker.capacity()) {
+            throw new ValidationException("limit debe estar entre 1 y " + popularityTracker.capacity());
+        }
+        List<HeavyHitters.HeavyHitter> top = popularityTracker.top(limit);
+        Map<Long, Book> books = bookRepository.findByExternalIdIn(
+                        top.stream().map(HeavyHitters.HeavyHitter::externalId).toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+        List<PopularBookDTO> popular = new ArrayList<>(top.size());
+        for (HeavyHitters.HeavyHitter hitter : top) {
+            Book book = books.get(hitter.externalId());
+            if (book == null) {
+                continue;
+            }
+            long reservations = Math.round(hitter.score());
+            boolean hot = hitter.today() >= hotMinToday && hitter.today() >= hotShare * hitter.score();
+            popular.add(new PopularBookDTO(book.getExternalId(), book.getTitle(), reservations, hitter.today(), hot,
+                    book.getStockQuantity(), book.getAvailableQuantity()));
+        }
+        return popular;
+    }
+}
@@ -3,14 +3,25 @@ package com.example.libreria.service;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.event.AvailabilityChangedEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.ReservationReturnedEvent;
+import com.example.libreria.exception.BookNotSyncedException;
+import com.example.libreria.exception.BookWaitlistedException;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.metrics.LibraryMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
 import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +35,7 @@ import static java.time.LocalDateTime.now;
 
 @Service
 @RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
 @Slf4j
 public class ReservationService {
     
@@ -34,8 +46,14 @@ public class ReservationService {
     private final BookService bookService;
     private final UserService userService;
     private final UserRepository userRepository;
-
-    @Transactional
+    private final ReservationSummaryService reservationSummaryService;
+    private final WaitlistService waitlistService;
+    private final AvailabilityService availabilityService;
+    private final LibraryMetrics libraryMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // La entrada en la lista de espera se confirma aunque la solicitud termine en excepción
+    @Transactional(noRollbackFor = BookWaitlistedException.class)
     public ReservationResponseDTO createReservation(ReservationRequestDTO requestDTO) {
 
         // TODO: Implementar la creación de una reserva
@@ -45,20 +63,39 @@ public class ReservationService {
         // Validar que el usuario existe
 
         User user = userRepository.findById(requestDTO.getUserId())
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + requestDTO.getUserId()));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + requestDTO.getUserId()));
 
         // Validar que el libro existe y está disponible
 
+        // Si todavía no se sincronizó, el llamador lo trae del catálogo fuera de la transacción y reintenta
         Book book = bookRepository.findByExternalId(requestDTO.getBookExternalId())
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + requestDTO.getBookExternalId()));
-
-        // Crear la reserva
-        if (book.getAvailableQuantity() <= 0) {
-            throw new RuntimeException("El libro '" + book.getTitle() + "' no está disponible");
-        }
+                .orElseThrow(() -> new BookNotSyncedException(requestDTO.getBookExternalId()));
 
+        // Una reserva a futuro no toma un ejemplar del pool hasta el día en que empieza
         LocalDate startDate = requestDTO.getStartDate();
         LocalDate expectedReturnDate = startDate.plusDays(requestDTO.getRentalDays());
+        boolean startsLater = startDate.isAfter(LocalDate.now());
+
+        // Sin cola ni ejemplar asignado, un solo UPDATE toma el ejemplar; si no, se mira la lista de espera.
+        // Un ejemplar asignado desde la lista de espera ya está fuera del pool
+        boolean fromPool = false;
+        boolean fromHold = false;
+        if (!startsLater) {
+            fromPool = bookService.takeFromPool(book.getExternalId(), user.getId());
+            fromHold = !fromPool && waitlistService.fulfillHold(user.getId(), book.getExternalId());
+            if (!fromPool && !fromHold && !canTakeFromPool(book)) {
+                libraryMetrics.recordStockExhausted();
+                WaitlistEntryDTO entry = waitlistService.enqueue(user.getId(), book.getExternalId(), requestDTO.getRentalDays());
+                throw new BookWaitlistedException("El libro '" + book.getTitle() + "' no está disponible", entry);
+            }
+        }
+
+        // Que el préstamo no pise reservas a futuro ya confirmadas
+        availabilityService.validateSpan(book.getExternalId(), startDate, expectedReturnDate);
+
+        // Valida el máximo de préstamos simultáneos con el contador del usuario. El contador se bloquea
+        // después del libro, en el mismo orden que la devolución
+        reservationSummaryService.registerLoan(user.getId());
 
         BigDecimal dailyRate = book.getPrice();
         BigDecimal totalFee = calculateTotalFee(dailyRate, requestDTO.getRentalDays());
@@ -73,13 +110,20 @@ public class ReservationService {
         reservation.setTotalFee(totalFee);
         reservation.setLateFee(BigDecimal.ZERO);
         reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        reservation.setPendingStart(startsLater);
         reservation.setCreatedAt(now());
 
 
         Reservation savedReservation = reservationRepository.save(reservation);
-        // Reducir la cantidad disponible
+        // Reducir la cantidad disponible (atómico: falla si otra reserva tomó el último ejemplar)
+
+        if (!startsLater && !fromPool && !fromHold) {
+            bookService.decreaseAvailableQuantity(book.getExternalId());
+        }
 
-        bookService.updateStock(book.getExternalId(), book.getAvailableQuantity() - 1);
+        eventPublisher.publishEvent(new ReservationCreatedEvent(savedReservation.getId(), user.getId(),
+                book.getExternalId(), startDate, expectedReturnDate, requestDTO.getRentalDays(), totalFee,
+                !startsLater && !fromHold));
 
         log.info("Reserva creada exitosamente con ID: {}", savedReservation.getId());
 
@@ -92,10 +136,18 @@ public class ReservationService {
 
         // TODO: Implementar la devolución de un libro
         Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + reservationId));
+                .orElseThrow(() -> new NotFoundException("Reserva no encontrada con ID: " + reservationId));
         
         if (reservation.getStatus() != Reservation.ReservationStatus.ACTIVE) {
-            throw new RuntimeException("La reserva ya fue devuelta");
+            throw new ConflictException("La reserva ya fue devuelta");
+        }
+        
+        // Devuelta antes de empezar no tiene ejemplar que liberar, salvo que el inicio la haya tomado recién
+        boolean holdsCopy = !Boolean.TRUE.equals(reservation.getPendingStart())
+                || reservationRepository.clearPendingStart(reservationId) == 0;
+        reservation.setPendingStart(false);
+        if (reservationRepository.claimReturn(reservationId) == 0) {
+            throw new ConflictException("La reserva ya fue devuelta");
         }
         
         LocalDate returnDate = returnRequest.getReturnDate();
@@ -111,28 +163,57 @@ public class ReservationService {
             reservation.setLateFee(lateFee);
             BigDecimal newTotalFee = reservation.getTotalFee().add(lateFee);
             reservation.setTotalFee(newTotalFee);
+            libraryMetrics.recordLateFee(lateFee);
 
             log.info("Libro devuelto con {} días de retraso. Multa: ${}", daysLate, lateFee);
         } else {
             log.info("Libro devuelto a tiempo");
         }
         reservation.setStatus(Reservation.ReservationStatus.RETURNED);
-        // Aumentar la cantidad disponible
+        // El ejemplar pasa al primero de la lista de espera o vuelve al pool. Va antes del contador del usuario:
+        // el alta toma el libro y después el contador, y el mismo orden evita interbloqueos
         Book book = reservation.getBook();
-        bookService.updateStock(book.getExternalId(), book.getAvailableQuantity() + 1);
+        if (holdsCopy) {
+            waitlistService.releaseCopy(book.getExternalId());
+        }
+        reservationSummaryService.registerReturn(reservation.getUser().getId(), reservationId, reservation.getLateFee());
 
         Reservation updatedReservation = reservationRepository.save(reservation);
 
+        eventPublisher.publishEvent(new ReservationReturnedEvent(reservation.getId(), reservation.getUser().getId(),
+                book.getExternalId(), reservation.getStartDate(), expectedReturnDate, returnDate,
+                reservation.getLateFee(), reservation.getTotalFee()));
+
         log.info("Devolución procesada exitosamente");
 
         return convertToDTO(updatedReservation);
 
     }
     
+    @Transactional(readOnly = true)
+    public List<Long> findReservationsDueToStart() {
+        return reservationRepository.findIdsDueToStart(LocalDate.now());
+    }
+    
+    // Falla si el ejemplar no está en el pool (un préstamo anterior se devolvió tarde) y se reintenta después
+    @Transactional
+    public boolean startReservation(Long reservationId) {
+        Reservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new NotFoundException("Reserva no encontrada con ID: " + reservationId));
+        if (reservationRepository.clearPendingStart(reservationId) == 0) {
+            return false;
+        }
+        bookService.decreaseAvailableQuantity(reservation.getBook().getExternalId());
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(reservation.getBook().getExternalId(), -1,
+                AvailabilityChangedEvent.Cause.RESERVATION_STARTED));
+        log.info("Reserva {} iniciada", reservationId);
+        return true;
+    }
+    
     @Transactional(readOnly = true)
     public ReservationResponseDTO getReservationById(Long id) {
         Reservation reservation = reservationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Reserva no encontrada con ID: " + id));
         return convertToDTO(reservation);
     }
     
@@ -164,6 +245,18 @@ public class ReservationService {
                 .collect(Collectors.toList());
     }
     
+    // Quien llega no se adelanta a la lista de espera: los ejemplares del pool se asignan primero a la cola
+    private boolean canTakeFromPool(Book book) {
+        if (book.getAvailableQuantity() <= 0) {
+            return false;
+        }
+        if (!waitlistService.hasWaiters(book.getExternalId())) {
+            return true;
+        }
+        waitlistService.promoteWaiters(book.getExternalId());
+        return !waitlistService.hasWaiters(book.getExternalId());
+    }
+    
     private BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
 
         if(dailyRate == null || rentalDays == null || rentalDays < 0)
@@ -175,7 +268,8 @@ public class ReservationService {
         return totalFee.setScale(2, RoundingMode.HALF_UP);
         // TODO: Implementar el cálculo del total de la reserva
     }
-    private BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
+    // También la usan los avisos de demora, con la multa a la fecha
+    BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
 
         if (daysLate<=0){
             return BigDecimal.ZERO;
@@ -209,6 +303,7 @@ public class ReservationService {
         dto.setTotalFee(reservation.getTotalFee());
         dto.setLateFee(reservation.getLateFee());
         dto.setStatus(reservation.getStatus());
+        dto.setPendingStart(Boolean.TRUE.equals(reservation.getPendingStart()));
         dto.setCreatedAt(reservation.getCreatedAt());
         return dto;
     }
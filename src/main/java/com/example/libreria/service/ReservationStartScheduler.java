@@ -0,0 +1,27 @@
+package com.example.libreria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Las reservas a futuro toman su ejemplar del pool el día que empiezan, cada una en su propia transacción
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationStartScheduler {
+    
+    private final ReservationService reservationService;
+    
+    @Scheduled(fixedDelayString = "${libreria.reservations.start-sweep-interval:PT5M}")
+    public void sweep() {
+        for (Long id : reservationService.findReservationsDueToStart()) {
+            try {
+                reservationService.startReservation(id);
+            } catch (RuntimeException e) {
+                // El ejemplar todavía no volvió: se reintenta en la próxima pasada
+                log.warn("Could not start reservation {}: {}", id, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.UserReservationSummaryDTO;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.UserReservationSummary;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.repository.UserReservationSummaryRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import static java.time.LocalDateTime.now;
+
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class ReservationSummaryService {
+    
+    // Usuarios anteriores al resumen: la fila se arma una sola vez a partir de sus reservas, y no se inserta
+    // nada si ya existe. La reserva que se está devolviendo se cuenta como abierta y sin multa, sea cual sea
+    // lo que ya se escribió de ella: la devolución la descuenta después
+    private static final String INITIALIZE_SUMMARY =
+            "INSERT INTO user_reservation_summary (user_id, active_count, lifetime_reservations, " +
+            "outstanding_late_fees, updated_at) " +
+            "SELECT ?, COALESCE(SUM(CASE WHEN status IN ('ACTIVE', 'OVERDUE') THEN 1 ELSE 0 END), 0) + ?, " +
+            "COUNT(*) + ?, COALESCE(SUM(late_fee), 0), ? FROM reservations WHERE user_id = ? AND id <> ? " +
+            "HAVING NOT EXISTS (SELECT 1 FROM user_reservation_summary WHERE user_id = ?)";
+    private static final long NO_RESERVATION = -1L;
+    
+    private final UserReservationSummaryRepository summaryRepository;
+    private final ReservationRepository reservationRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${libreria.reservations.max-active-per-user:10}")
+    private int maxActivePerUser;
+    
+    // Se llama antes de guardar la reserva nueva para que la inicialización no la cuente
+    @Transactional
+    public void registerLoan(Long userId) {
+        if (summaryRepository.registerLoan(userId, maxActivePerUser, now()) > 0) {
+            return;
+        }
+        // Sin fila se crea y se reintenta; con fila, el usuario ya está en el máximo
+        if (initialize(userId, NO_RESERVATION) && summaryRepository.registerLoan(userId, maxActivePerUser, now()) > 0) {
+            return;
+        }
+        throw new ConflictException("El usuario " + userId + " alcanzó el máximo de "
+                + maxActivePerUser + " préstamos simultáneos");
+    }
+    
+    // La reserva puede estar ya marcada como devuelta en la base: la inicialización no la lee
+    @Transactional
+    public void registerReturn(Long userId, Long reservationId, BigDecimal lateFee) {
+        BigDecimal fee = lateFee != null ? lateFee : BigDecimal.ZERO;
+        if (summaryRepository.registerReturn(userId, fee, now()) == 0) {
+            initialize(userId, reservationId);
+            summaryRepository.registerReturn(userId, fee, now());
+        }
+    }
+    
+    @Transactional
+    public UserReservationSummaryDTO getSummary(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Usuario no encontrado con ID: " + userId);
+        }
+        UserReservationSummary summary = summaryRepository.findById(userId).orElseGet(() -> {
+            initialize(userId, NO_RESERVATION);
+            return summaryRepository.findById(userId).orElseThrow();
+        });
+        // Las vencidas dependen de la fecha actual: se cuentan sólo entre las reservas activas
+        long overdue = summary.getActiveCount() > 0
+                ? reservationRepository.countOverdueReservationsByUserId(userId)
+                : 0L;
+        return new UserReservationSummaryDTO(userId, summary.getActiveCount(), overdue,
+                summary.getLifetimeReservations(), summary.getOutstandingLateFees(), maxActivePerUser);
+    }
+    
+    // false si la fila ya existía
+    private boolean initialize(Long userId, long returningReservationId) {
+        int returning = returningReservationId == NO_RESERVATION ? 0 : 1;
+        try {
+            if (jdbcTemplate.update(INITIALIZE_SUMMARY, userId, returning, returning, Timestamp.valueOf(now()),
+                    userId, returningReservationId, userId) == 0) {
+                return false;
+            }
+            log.debug("Initialized reservation summary for user {}", userId);
+        } catch (DuplicateKeyException e) {
+            log.debug("Reservation summary for user {} created concurrently", userId);
+        }
+        return true;
+    }
+}
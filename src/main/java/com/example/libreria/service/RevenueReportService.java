@@ -0,0 +1,395 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ConsistencyReportDTO;
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.ReservationReturnedEvent;
+import com.example.libreria.event.UserDeletingEvent;
+import com.example.libreria.exception.ValidationException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.RevenueAggregate;
+import com.example.libreria.model.RevenueAggregateId;
+import com.example.libreria.repository.RevenueAggregateRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.example.libreria.model.RevenueAggregate.Scope.*;
+
+/**
+ * Mantiene los totales de facturación y uso por libro, usuario y mes.
+ * Los incrementos se aplican en la misma transacción que la reserva o la devolución, en un solo
+ * batch, así los reportes nunca divergen de la tabla de reservas. Cada mes y el total general se
+ * reparten en month-stripes filas (según el usuario): ninguna fila la actualizan todas las reservas,
+ * que si no esperarían una detrás de otra su bloqueo hasta el commit. Leer un mes o el total suma
+ * month-stripes filas, una cantidad fija que no crece con las reservas.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class RevenueReportService {
+
+    private static final String TOTAL_KEY = "all";
+    // Las filas de un mes son yyyy-MM#n y las del total, all#n
+    private static final String STRIPE_SEPARATOR = "#";
+
+    // Las filas se actualizan siempre en el mismo orden (libro, usuario, meses ascendentes, total)
+    // para que dos transacciones concurrentes no se bloqueen mutuamente
+    private static final Comparator<RevenueAggregateId> LOCK_ORDER =
+            Comparator.comparing(RevenueAggregateId::getScope).thenComparing(RevenueAggregateId::getScopeKey);
+
+    private static final String INSERT_ROW =
+            "INSERT INTO revenue_aggregates (scope_type, scope_key, reservation_count, active_count, " +
+            "rental_days, total_fee, late_fee, late_returns) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Suma el incremento o crea la fila con él en una sola sentencia: la primera reserva de una clave
+    // no necesita un INSERT aparte que pueda fallar por clave duplicada dentro de la transacción
+    private static final String APPLY_DELTA =
+            "MERGE INTO revenue_aggregates t USING (SELECT CAST(? AS VARCHAR(10)) AS scope_type, " +
+            "CAST(? AS VARCHAR(32)) AS scope_key) s ON (t.scope_type = s.scope_type AND t.scope_key = s.scope_key) " +
+            "WHEN MATCHED THEN UPDATE SET reservation_count = t.reservation_count + ?, " +
+            "active_count = t.active_count + ?, rental_days = t.rental_days + ?, total_fee = t.total_fee + ?, " +
+            "late_fee = t.late_fee + ?, late_returns = t.late_returns + ? " +
+            "WHEN NOT MATCHED THEN INSERT (scope_type, scope_key, reservation_count, active_count, rental_days, " +
+            "total_fee, late_fee, late_returns) VALUES (s.scope_type, s.scope_key, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SUM_COLUMNS =
+            "COALESCE(SUM(reservation_count), 0), COALESCE(SUM(active_count), 0), COALESCE(SUM(rental_days), 0), " +
+            "COALESCE(SUM(total_fee), 0), COALESCE(SUM(late_fee), 0), COALESCE(SUM(late_returns), 0)";
+    private static final String SUM_STRIPES =
+            "SELECT " + SUM_COLUMNS + " FROM revenue_aggregates WHERE scope_type = ? AND scope_key LIKE ?";
+    private static final String SUM_BY_MONTH =
+            "SELECT SUBSTRING(scope_key, 1, 7) AS month_key, " + SUM_COLUMNS + " FROM revenue_aggregates " +
+            "WHERE scope_type = 'MONTH' GROUP BY SUBSTRING(scope_key, 1, 7) ORDER BY month_key";
+
+    private static final String SCAN_RESERVATIONS =
+            "SELECT user_id, book_external_id, start_date, actual_return_date, rental_days, " +
+            "total_fee, late_fee, status FROM reservations";
+
+    private final RevenueAggregateRepository revenueAggregateRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${libreria.reports.month-stripes:16}")
+    private int monthStripes;
+
+    @EventListener
+    @Transactional
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        Delta delta = new Delta(1, 1, event.rentalDays(), nullToZero(event.totalFee()), BigDecimal.ZERO, 0);
+        apply(List.of(
+                new Change(BOOK, String.valueOf(event.bookExternalId()), delta),
+                new Change(USER, String.valueOf(event.userId()), delta),
+                new Change(MONTH, stripedMonth(event.startDate(), event.userId()), delta),
+                new Change(TOTAL, TOTAL_KEY + stripe(event.userId()), delta)));
+    }
+
+    @EventListener
+    @Transactional
+    public void onReservationReturned(ReservationReturnedEvent event) {
+        BigDecimal lateFee = nullToZero(event.lateFee());
+        int lateReturns = lateFee.signum() > 0 ? 1 : 0;
+        Delta returned = new Delta(0, -1, 0, lateFee, lateFee, lateReturns);
+        List<Change> changes = new ArrayList<>(5);
+        changes.add(new Change(BOOK, String.valueOf(event.bookExternalId()), returned));
+        changes.add(new Change(USER, String.valueOf(event.userId()), returned));
+        // El alquiler queda en el mes de inicio; la multa se factura en el mes de la devolución
+        changes.add(new Change(MONTH, stripedMonth(event.startDate(), event.userId()),
+                new Delta(0, -1, 0, BigDecimal.ZERO, BigDecimal.ZERO, 0)));
+        if (lateReturns > 0) {
+            changes.add(new Change(MONTH, stripedMonth(event.returnDate(), event.userId()),
+                    new Delta(0, 0, 0, lateFee, lateFee, 1)));
+        }
+        changes.add(new Change(TOTAL, TOTAL_KEY + stripe(event.userId()), returned));
+        apply(changes);
+    }
+
+    // Las reservas del usuario se borran en bloque: se descuentan sus aportes antes del borrado
+    @EventListener
+    @Transactional
+    public void onUserDeleting(UserDeletingEvent event) {
+        Map<RevenueAggregateId, Totals> contributions = new TreeMap<>(LOCK_ORDER);
+        contributions.putAll(scan(SCAN_RESERVATIONS + " WHERE user_id = ?", event.userId()));
+        List<Change> changes = new ArrayList<>();
+        contributions.forEach((id, totals) -> {
+            if (id.getScope() == BOOK) {
+                changes.add(new Change(BOOK, id.getScopeKey(), totals.negated()));
+            } else if (id.getScope() != USER) {
+                changes.add(new Change(id.getScope(), id.getScopeKey() + stripe(event.userId()), totals.negated()));
+            }
+        });
+        if (!changes.isEmpty()) {
+            apply(changes);
+        }
+        jdbcTemplate.update("DELETE FROM revenue_aggregates WHERE scope_type = ? AND scope_key = ?",
+                USER.name(), String.valueOf(event.userId()));
+    }
+
+    @Transactional(readOnly = true)
+    public RevenueReportDTO getBookReport(Long externalId) {
+        return getReport(BOOK, String.valueOf(externalId));
+    }
+
+    @Transactional(readOnly = true)
+    public RevenueReportDTO getUserReport(Long userId) {
+        return getReport(USER, String.valueOf(userId));
+    }
+
+    @Transactional(readOnly = true)
+    public RevenueReportDTO getMonthReport(String month) {
+        String key;
+        try {
+            key = YearMonth.parse(month).toString();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Mes inválido, se espera el formato yyyy-MM: " + month);
+        }
+        return sumStripes(MONTH, key);
+    }
+
+    @Transactional(readOnly = true)
+    public RevenueReportDTO getTotals() {
+        return sumStripes(TOTAL, TOTAL_KEY);
+    }
+
+    @Transactional(readOnly = true)
+    public List<RevenueReportDTO> getMonthlyReports() {
+        return jdbcTemplate.query(SUM_BY_MONTH, (rs, rowNum) -> sumToDTO(MONTH, rs.getString("month_key"), rs, 2));
+    }
+
+    /**
+     * Recalcula todos los totales con un recorrido completo de las reservas.
+     * El DELETE bloquea las filas, así que las reservas concurrentes esperan al commit
+     * y luego aplican su incremento sobre los valores recalculados.
+     */
+    @Transactional
+    public int rebuild() {
+        jdbcTemplate.update("DELETE FROM revenue_aggregates");
+        Map<RevenueAggregateId, Totals> computed = scan(SCAN_RESERVATIONS);
+        List<Object[]> rows = new ArrayList<>(computed.size());
+        computed.forEach((id, totals) -> rows.add(new Object[] {
+                id.getScope().name(), isStriped(id.getScope()) ? id.getScopeKey() + STRIPE_SEPARATOR + 0 : id.getScopeKey(),
+                totals.reservations, totals.active,
+                totals.rentalDays, totals.totalFee, totals.lateFee, totals.lateReturns}));
+        jdbcTemplate.batchUpdate(INSERT_ROW, rows);
+        log.info("Rebuilt revenue aggregates: {} rows", rows.size());
+        return rows.size();
+    }
+
+    @Transactional(readOnly = true)
+    public ConsistencyReportDTO checkConsistency() {
+        Map<RevenueAggregateId, Totals> expected = scan(SCAN_RESERVATIONS);
+        // Las franjas de cada mes y del total se suman
+        Map<RevenueAggregateId, Totals> stored = new HashMap<>();
+        for (RevenueAggregate aggregate : revenueAggregateRepository.findAll()) {
+            RevenueAggregateId id = aggregate.getId();
+            String key = isStriped(id.getScope()) ? stripeBase(id.getScopeKey()) : id.getScopeKey();
+            stored.computeIfAbsent(new RevenueAggregateId(id.getScope(), key), k -> new Totals())
+                    .add(Totals.of(aggregate).asDelta());
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        expected.forEach((id, totals) -> {
+            Totals found = stored.get(id);
+            if (found == null) {
+                mismatches.add(id.getScope() + ":" + id.getScopeKey() + " no existe en los totales");
+            } else if (!totals.matches(found)) {
+                mismatches.add(id.getScope() + ":" + id.getScopeKey() + " esperado " + totals
+                        + " pero se encontró " + found);
+            }
+        });
+        stored.forEach((id, found) -> {
+            if (!expected.containsKey(id) && !found.isZero()) {
+                mismatches.add(id.getScope() + ":" + id.getScopeKey() + " no tiene reservas pero registra " + found);
+            }
+        });
+        if (!mismatches.isEmpty()) {
+            log.warn("Revenue aggregates diverge from reservations in {} keys", mismatches.size());
+        }
+        return new ConsistencyReportDTO(mismatches.isEmpty(), expected.size(), mismatches);
+    }
+
+    // Un solo batch con todos los incrementos, en el orden de LOCK_ORDER
+    private void apply(List<Change> changes) {
+        jdbcTemplate.batchUpdate(APPLY_DELTA, changes, changes.size(), (ps, change) -> {
+            ps.setString(1, change.scope().name());
+            ps.setString(2, change.key());
+            // El mismo incremento para la fila existente (3-8) y para la nueva (9-14)
+            Delta delta = change.delta();
+            for (int first : new int[] {3, 9}) {
+                ps.setLong(first, delta.reservations());
+                ps.setLong(first + 1, delta.active());
+                ps.setLong(first + 2, delta.rentalDays());
+                ps.setBigDecimal(first + 3, delta.totalFee());
+                ps.setBigDecimal(first + 4, delta.lateFee());
+                ps.setLong(first + 5, delta.lateReturns());
+            }
+        });
+    }
+
+    private RevenueReportDTO sumStripes(RevenueAggregate.Scope scope, String key) {
+        return jdbcTemplate.queryForObject(SUM_STRIPES, (rs, rowNum) -> sumToDTO(scope, key, rs, 1),
+                scope.name(), key + STRIPE_SEPARATOR + "%");
+    }
+
+    // Todas las filas de mes que toca una transacción usan la misma franja: se bloquean en orden de mes
+    private String stripedMonth(LocalDate date, Long userId) {
+        return monthKey(date) + stripe(userId);
+    }
+
+    private String stripe(Long userId) {
+        return STRIPE_SEPARATOR + Math.floorMod(userId, Math.max(1, monthStripes));
+    }
+
+    private static boolean isStriped(RevenueAggregate.Scope scope) {
+        return scope == MONTH || scope == TOTAL;
+    }
+
+    private static String stripeBase(String stripedKey) {
+        return stripedKey.substring(0, stripedKey.lastIndexOf(STRIPE_SEPARATOR));
+    }
+
+    private Map<RevenueAggregateId, Totals> scan(String sql, Object... args) {
+        Map<RevenueAggregateId, Totals> totals = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            String user = String.valueOf(rs.getLong("user_id"));
+            String book = String.valueOf(rs.getLong("book_external_id"));
+            LocalDate startDate = rs.getDate("start_date").toLocalDate();
+            Date returnDate = rs.getDate("actual_return_date");
+            int rentalDays = rs.getInt("rental_days");
+            BigDecimal totalFee = nullToZero(rs.getBigDecimal("total_fee"));
+            BigDecimal lateFee = nullToZero(rs.getBigDecimal("late_fee"));
+            int active = "RETURNED".equals(rs.getString("status")) ? 0 : 1;
+            int lateReturns = lateFee.signum() > 0 ? 1 : 0;
+
+            Delta reservation = new Delta(1, active, rentalDays, totalFee, lateFee, lateReturns);
+            add(totals, BOOK, book, reservation);
+            add(totals, USER, user, reservation);
+            add(totals, MONTH, monthKey(startDate),
+                    new Delta(1, active, rentalDays, totalFee.subtract(lateFee), BigDecimal.ZERO, 0));
+            if (lateReturns > 0 && returnDate != null) {
+                add(totals, MONTH, monthKey(returnDate.toLocalDate()), new Delta(0, 0, 0, lateFee, lateFee, 1));
+            }
+            add(totals, TOTAL, TOTAL_KEY, reservation);
+        }, args);
+        return totals;
+    }
+
+    private static void add(Map<RevenueAggregateId, Totals> totals, RevenueAggregate.Scope scope,
+                            String key, Delta delta) {
+        totals.computeIfAbsent(new RevenueAggregateId(scope, key), id -> new Totals()).add(delta);
+    }
+
+    private RevenueReportDTO getReport(RevenueAggregate.Scope scope, String key) {
+        return revenueAggregateRepository.findById(new RevenueAggregateId(scope, key))
+                .map(this::convertToDTO)
+                .orElseGet(() -> new RevenueReportDTO(scope, key, 0L, 0L, 0L,
+                        BigDecimal.ZERO, BigDecimal.ZERO, 0L));
+    }
+
+    private static RevenueReportDTO sumToDTO(RevenueAggregate.Scope scope, String key, ResultSet rs, int first)
+            throws SQLException {
+        return new RevenueReportDTO(scope, key, rs.getLong(first), rs.getLong(first + 1), rs.getLong(first + 2),
+                rs.getBigDecimal(first + 3), rs.getBigDecimal(first + 4), rs.getLong(first + 5));
+    }
+
+    private RevenueReportDTO convertToDTO(RevenueAggregate aggregate) {
+        RevenueReportDTO dto = new RevenueReportDTO();
+        dto.setScope(aggregate.getId().getScope());
+        dto.setKey(aggregate.getId().getScopeKey());
+        dto.setReservationCount(aggregate.getReservationCount());
+        dto.setActiveCount(aggregate.getActiveCount());
+        dto.setRentalDays(aggregate.getRentalDays());
+        dto.setTotalFee(aggregate.getTotalFee());
+        dto.setLateFee(aggregate.getLateFee());
+        dto.setLateReturns(aggregate.getLateReturns());
+        return dto;
+    }
+
+    private static String monthKey(LocalDate date) {
+        return YearMonth.from(date).toString();
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private record Delta(long reservations, long active, long rentalDays,
+                         BigDecimal totalFee, BigDecimal lateFee, long lateReturns) {
+    }
+
+    private record Change(RevenueAggregate.Scope scope, String key, Delta delta) {
+    }
+
+    private static final class Totals {
+        private long reservations;
+        private long active;
+        private long rentalDays;
+        private BigDecimal totalFee = BigDecimal.ZERO;
+        private BigDecimal lateFee = BigDecimal.ZERO;
+        private long lateReturns;
+
+        static Totals of(RevenueAggregate aggregate) {
+            Totals totals = new Totals();
+            totals.add(new Delta(aggregate.getReservationCount(), aggregate.getActiveCount(),
+                    aggregate.getRentalDays(), aggregate.getTotalFee(), aggregate.getLateFee(),
+                    aggregate.getLateReturns()));
+            return totals;
+        }
+
+        void add(Delta delta) {
+            reservations += delta.reservations();
+            active += delta.active();
+            rentalDays += delta.rentalDays();
+            totalFee = totalFee.add(delta.totalFee());
+            lateFee = lateFee.add(delta.lateFee());
+            lateReturns += delta.lateReturns();
+        }
+
+        Delta asDelta() {
+            return new Delta(reservations, active, rentalDays, totalFee, lateFee, lateReturns);
+        }
+
+        Delta negated() {
+            return new Delta(-reservations, -active, -rentalDays, totalFee.negate(), lateFee.negate(), -lateReturns);
+        }
+
+        boolean matches(Totals other) {
+            return reservations == other.reservations
+                    && active == other.active
+                    && rentalDays == other.rentalDays
+                    && totalFee.compareTo(other.totalFee) == 0
+                    && lateFee.compareTo(other.lateFee) == 0
+                    && lateReturns == other.lateReturns;
+        }
+
+        boolean isZero() {
+            return reservations == 0 && active == 0 && rentalDays == 0
+                    && totalFee.signum() == 0 && lateFee.signum() == 0 && lateReturns == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "{reservas=" + reservations + ", activas=" + active + ", dias=" + rentalDays
+                    + ", facturado=" + totalFee + ", multas=" + lateFee + ", devolucionesTardias=" + lateReturns + "}";
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.libreria.service;
+
+import com.example.libreria.exception.ConflictException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockReconciliationScheduler {
+    
+    private final StockReconciliationService stockReconciliationService;
+    
+    @Value("${libreria.stock-reconciliation.enabled:false}")
+    private boolean enabled;
+    
+    // Las pasadas incrementales sólo ven los cambios que pasaron por books; cada tanto se revisa todo
+    @Value("${libreria.stock-reconciliation.full-interval:PT24H}")
+    private Duration fullInterval;
+    
+    private long lastFull = System.nanoTime();
+    
+    @Scheduled(fixedDelayString = "${libreria.stock-reconciliation.interval:PT15M}",
+            initialDelayString = "${libreria.stock-reconciliation.interval:PT15M}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        boolean full = System.nanoTime() - lastFull >= fullInterval.toNanos();
+        try {
+            stockReconciliationService.reconcile(full);
+            if (full) {
+                lastFull = System.nanoTime();
+            }
+        } catch (ConflictException e) {
+            log.debug("Stock reconciliation skipped: a run is already in progress");
+        } catch (RuntimeException e) {
+            log.warn("Stock reconciliation failed: {}", e.getMessage());
+        }
+    }
+}
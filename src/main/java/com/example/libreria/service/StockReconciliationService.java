@@ -0,0 +1,289 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cache.ChangeFeed;
+import com.example.libreria.dto.StockReconciliationDTO;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.ratelimit.AdmissionControlFilter;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Conciliación del stock: para cada libro, stock_quantity - available_quantity tiene que ser igual a sus
+ * reservas abiertas ya iniciadas más los ejemplares asignados desde la lista de espera. Recorre los
+ * libros por rangos de chunk-size ordenados por external_id. De cada rango calcula primero un checksum
+ * sólo con las filas de books (stock, disponible y stock_version, que sube con cada préstamo, devolución,
+ * asignación, inicio de una reserva diferida o ajuste); si es el de la pasada anterior y el rango había
+ * quedado bien, no se vuelve a revisar. Un cambio en reservations que no pasó por books no mueve el
+ * checksum: para eso está la pasada full. Entre rangos se pausa para ocupar a lo sumo duty-cycle del
+ * tiempo y espera mientras haya escrituras de clientes en curso.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class StockReconciliationService {
+    
+    private static final String OPEN_RESERVATION =
+            "status IN ('ACTIVE', 'OVERDUE') AND (pending_start IS NULL OR pending_start = FALSE)";
+    
+    private static final String CHUNK_END =
+            "SELECT MAX(external_id) FROM (SELECT external_id FROM books WHERE external_id > ? " +
+            "ORDER BY external_id LIMIT ?) chunk";
+    // Sólo las filas de books del rango, sin tocar reservations ni waitlist_entries: cada cambio de las
+    // reservas abiertas (incluido el paso de pending_start a iniciada) o de los asignados mueve stock_version
+    private static final String CHUNK_FINGERPRINT =
+            "SELECT external_id, stock_quantity, available_quantity, COALESCE(stock_version, 0) AS stock_version " +
+            "FROM books WHERE external_id > ? AND external_id <= ? ORDER BY external_id";
+    private static final String CHUNK_COUNTS =
+            "SELECT b.external_id, b.stock_quantity, b.available_quantity, " +
+            "COALESCE(r.open_count, 0) AS open_reservations, COALESCE(w.held_count, 0) AS held_copies FROM books b " +
+            "LEFT JOIN (SELECT book_external_id, COUNT(*) AS open_count FROM reservations " +
+            "WHERE book_external_id > ? AND book_external_id <= ? AND " + OPEN_RESERVATION +
+            " GROUP BY book_external_id) r ON r.book_external_id = b.external_id " +
+            "LEFT JOIN (SELECT book_external_id, COUNT(*) AS held_count FROM waitlist_entries " +
+            "WHERE book_external_id > ? AND book_external_id <= ? AND status = 'HELD' " +
+            "GROUP BY book_external_id) w ON w.book_external_id = b.external_id " +
+            "WHERE b.external_id > ? AND b.external_id <= ? ORDER BY b.external_id";
+    private static final String BOOK_COUNTS =
+            "SELECT b.external_id, b.stock_quantity, b.available_quantity, " +
+            "(SELECT COUNT(*) FROM reservations r WHERE r.book_external_id = b.external_id AND " + OPEN_RESERVATION +
+            ") AS open_reservations, (SELECT COUNT(*) FROM waitlist_entries w WHERE w.book_external_id = b.external_id " +
+            "AND w.status = 'HELD') AS held_copies FROM books b WHERE b.external_id = ?";
+    // El recálculo y la escritura en una sola sentencia: no pisa un préstamo o devolución concurrente
+    private static final String REPAIR =
+            "UPDATE books SET available_quantity = stock_quantity " +
+            "- (SELECT COUNT(*) FROM reservations r WHERE r.book_external_id = books.external_id AND " + OPEN_RESERVATION + ") " +
+            "- (SELECT COUNT(*) FROM waitlist_entries w WHERE w.book_external_id = books.external_id AND w.status = 'HELD'), " +
+            "stock_version = COALESCE(stock_version, 0) + 1 WHERE external_id = ? AND stock_quantity >= " +
+            "(SELECT COUNT(*) FROM reservations r WHERE r.book_external_id = books.external_id AND " + OPEN_RESERVATION + ") " +
+            "+ (SELECT COUNT(*) FROM waitlist_entries w WHERE w.book_external_id = books.external_id AND w.status = 'HELD')";
+    private static final String BOOK_STOCK = "SELECT stock_quantity, available_quantity FROM books WHERE external_id = ?";
+    private static final String LOAD_CHUNKS =
+            "SELECT chunk_start, chunk_end, checksum, mismatches FROM stock_reconciliation_chunks";
+    private static final String UPDATE_CHUNK =
+            "UPDATE stock_reconciliation_chunks SET chunk_end = ?, checksum = ?, book_count = ?, mismatches = ?, " +
+            "checked_at = ? WHERE chunk_start = ?";
+    private static final String INSERT_CHUNK =
+            "INSERT INTO stock_reconciliation_chunks (chunk_start, chunk_end, checksum, book_count, mismatches, checked_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    // Rangos que dejaron de existir porque se agregaron libros y cambiaron los límites
+    private static final String DELETE_STALE_CHUNKS = "DELETE FROM stock_reconciliation_chunks WHERE checked_at < ?";
+    
+    private record ChunkState(long chunkEnd, long checksum, int mismatches) {
+    }
+    
+    private record BookCounts(long externalId, int stock, int available, long open, long held) {
+        
+        boolean consistent() {
+            return available >= 0 && available <= stock && stock - available == open + held;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("libro %d: stock=%d disponible=%d reservas abiertas=%d asignados=%d",
+                    externalId, stock, available, open, held);
+        }
+    }
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChangeFeed changeFeed;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LibraryMetrics libraryMetrics;
+    private final ObjectProvider<AdmissionControlFilter> admissionControl;
+    
+    @Value("${libreria.stock-reconciliation.chunk-size:500}")
+    private int chunkSize;
+    
+    // false: sólo informa las diferencias; true: recalcula available_quantity a partir de las reservas
+    @Value("${libreria.stock-reconciliation.repair:false}")
+    private boolean repair;
+    
+    // Fracción del tiempo que puede ocupar: después de cada chunk se pausa en proporción a lo que tardó
+    @Value("${libreria.stock-reconciliation.throttle.duty-cycle:0.2}")
+    private double dutyCycle;
+    
+    // Con estas escrituras de clientes en curso o más, se espera antes del próximo chunk
+    @Value("${libreria.stock-reconciliation.throttle.busy-writes:2}")
+    private int busyWrites;
+    
+    @Value("${libreria.stock-reconciliation.throttle.max-wait:5s}")
+    private Duration maxWait;
+    
+    // full ignora los checksums de la pasada anterior y revisa todos los libros
+    public StockReconciliationDTO reconcile(boolean full) {
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("La conciliación de stock ya está en curso");
+        }
+        try {
+            return run(full);
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    private StockReconciliationDTO run(boolean full) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Map<Long, ChunkState> previous = full ? Map.of() : loadChunks();
+        int chunks = 0;
+        int skipped = 0;
+        int checked = 0;
+        int repaired = 0;
+        List<String> details = new ArrayList<>();
+        
+        long chunkStart = 0;
+        Long chunkEnd;
+        while ((chunkEnd = jdbcTemplate.queryForObject(CHUNK_END, Long.class, chunkStart, chunkSize)) != null) {
+            long started = System.nanoTime();
+            long start = chunkStart;
+            long end = chunkEnd;
+            chunks++;
+            List<long[]> fingerprint = jdbcTemplate.query(CHUNK_FINGERPRINT, (rs, rowNum) -> new long[]{
+                    rs.getLong("external_id"), rs.getInt("stock_quantity"), rs.getInt("available_quantity"),
+                    rs.getLong("stock_version")}, start, end);
+            long checksum = checksum(fingerprint);
+            ChunkState last = previous.get(start);
+            if (last != null && last.chunkEnd() == end && last.checksum() == checksum && last.mismatches() == 0) {
+                skipped++;
+                saveChunk(start, end, checksum, fingerprint.size(), 0);
+                libraryMetrics.recordStockReconciliation("chunk_skipped");
+            } else {
+                int unresolved = 0;
+                for (BookCounts counts : jdbcTemplate.query(CHUNK_COUNTS, (rs, rowNum) -> counts(rs),
+                        start, end, start, end, start, end)) {
+                    checked++;
+                    if (counts.consistent()) {
+                        continue;
+                    }
+                    // Se confirma con una lectura del libro solo antes de informar o reparar
+                    BookCounts current = jdbcTemplate.queryForObject(BOOK_COUNTS, (rs, rowNum) -> counts(rs),
+                            counts.externalId());
+                    if (current == null || current.consistent()) {
+                        continue;
+                    }
+                    if (repair && repair(current)) {
+                        repaired++;
+                        continue;
+                    }
+                    unresolved++;
+                    details.add(current.toString());
+                    libraryMetrics.recordStockReconciliation("mismatch");
+                    log.warn("Stock mismatch: {}", current);
+                }
+                saveChunk(start, end, checksum, fingerprint.size(), unresolved);
+                libraryMetrics.recordStockReconciliation("chunk_checked");
+            }
+            chunkStart = end;
+            throttle(System.nanoTime() - started);
+        }
+        jdbcTemplate.update(DELETE_STALE_CHUNKS, Timestamp.valueOf(startedAt));
+        
+        if (repaired > 0 || !details.isEmpty()) {
+            log.info("Stock reconciliation: {} chunks ({} skipped), {} books checked, {} repaired, {} mismatches",
+                    chunks, skipped, checked, repaired, details.size());
+        }
+        return new StockReconciliationDTO(chunks, skipped, checked, details.size(), repaired, details);
+    }
+    
+    private boolean repair(BookCounts counts) {
+        Integer updated = transactionTemplate.execute(status -> {
+            changeFeed.bookChanged(counts.externalId());
+            int rows = jdbcTemplate.update(REPAIR, counts.externalId());
+            if (rows > 0) {
+                // Como un ajuste de stock: el journal lo registra y el snapshot del catálogo queda desactualizado
+                StockAdjustedEvent adjusted = jdbcTemplate.queryForObject(BOOK_STOCK, (rs, rowNum) -> new StockAdjustedEvent(
+                        counts.externalId(), rs.getInt("stock_quantity"), rs.getInt("available_quantity")),
+                        counts.externalId());
+                eventPublisher.publishEvent(adjusted);
+            }
+            return rows;
+        });
+        if (updated == null || updated == 0) {
+            // El stock quedó por debajo de lo reservado: no hay un disponible válido, se informa
+            return false;
+        }
+        libraryMetrics.recordStockReconciliation("repaired");
+        log.warn("Repaired available quantity of {}", counts);
+        return true;
+    }
+    
+    private void throttle(long chunkNanos) {
+        try {
+            if (dutyCycle > 0 && dutyCycle < 1) {
+                TimeUnit.NANOSECONDS.sleep((long) (chunkNanos * (1 / dutyCycle - 1)));
+            }
+            AdmissionControlFilter admission = admissionControl.getIfAvailable();
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            while (admission != null && admission.writesInFlight() >= busyWrites && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Conciliación de stock interrumpida", e);
+        }
+    }
+    
+    private Map<Long, ChunkState> loadChunks() {
+        Map<Long, ChunkState> chunks = new HashMap<>();
+        jdbcTemplate.query(LOAD_CHUNKS, rs -> {
+            chunks.put(rs.getLong("chunk_start"),
+                    new ChunkState(rs.getLong("chunk_end"), rs.getLong("checksum"), rs.getInt("mismatches")));
+        });
+        return chunks;
+    }
+    
+    private void saveChunk(long start, long end, long checksum, int books, int mismatches) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (jdbcTemplate.update(UPDATE_CHUNK, end, checksum, books, mismatches, now, start) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_CHUNK, start, end, checksum, books, mismatches, now);
+        } catch (DuplicateKeyException e) {
+            // Otra instancia lo insertó en la misma pasada
+            jdbcTemplate.update(UPDATE_CHUNK, end, checksum, books, mismatches, now, start);
+        }
+    }
+    
+    private static BookCounts counts(ResultSet rs) throws SQLException {
+        return new BookCounts(rs.getLong("external_id"), rs.getInt("stock_quantity"), rs.getInt("available_quantity"),
+                rs.getLong("open_reservations"), rs.getLong("held_copies"));
+    }
+    
+    private static long checksum(List<long[]> rows) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        for (long[] row : rows) {
+            for (long value : row) {
+                crc.update(buffer.clear().putLong(value).array());
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -1,11 +1,22 @@
 package com.example.libreria.service;
 
+import com.example.libreria.cache.ChangeFeed;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.AvailabilityChangedEvent;
+import com.example.libreria.event.UserDeletingEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.metrics.LibraryMetrics;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.BookCopyCount;
+import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import com.example.libreria.repository.UserReservationSummaryRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,15 +25,21 @@ import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
 @Slf4j
 public class UserService {
     
     private final UserRepository userRepository;
+    private final ReservationRepository reservationRepository;
+    private final UserReservationSummaryRepository summaryRepository;
+    private final WaitlistService waitlistService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeFeed changeFeed;
     
     @Transactional
     public UserResponseDTO createUser(UserRequestDTO requestDTO) {
         if (userRepository.existsByEmail(requestDTO.getEmail())) {
-            throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+            throw new ConflictException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
         User user = new User();
@@ -38,7 +55,7 @@ public class UserService {
     @Transactional(readOnly = true)
     public UserResponseDTO getUserById(Long id) {
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
         return convertToDTO(user);
     }
     
@@ -52,14 +69,15 @@ public class UserService {
     @Transactional
     public UserResponseDTO updateUser(Long id, UserRequestDTO requestDTO) {
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
         
         // Verificar si el email ya existe en otro usuario
         if (!user.getEmail().equals(requestDTO.getEmail()) && 
             userRepository.existsByEmail(requestDTO.getEmail())) {
-            throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+            throw new ConflictException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
+        changeFeed.userChanged(id);
         user.setName(requestDTO.getName());
         user.setEmail(requestDTO.getEmail());
         user.setPhoneNumber(requestDTO.getPhoneNumber());
@@ -72,16 +90,32 @@ public class UserService {
     @Transactional
     public void deleteUser(Long id) {
         if (!userRepository.existsById(id)) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + id);
+            throw new NotFoundException("Usuario no encontrado con ID: " + id);
         }
-        userRepository.deleteById(id);
-        log.info("Deleted user with id: {}", id);
+        // Los ejemplares reservados para el usuario pasan al siguiente en la lista de espera
+        waitlistService.cancelAllForUser(id);
+        summaryRepository.deleteByUserIdInBulk(id);
+        // La liberación por lotes no dice qué libros tocó: se invalidan todos en la caché de respuestas
+        changeFeed.userChanged(id);
+        changeFeed.allBooksChanged();
+        // Borrado por lotes: se libera el stock de las reservas abiertas y se eliminan
+        // las reservas sin hidratar la colección User.reservations
+        List<BookCopyCount> held = reservationRepository.countStockHeldByUser(id);
+        int booksReleased = reservationRepository.releaseStockHeldByUser(id);
+        held.forEach(copies -> eventPublisher.publishEvent(new AvailabilityChangedEvent(copies.bookExternalId(),
+                Math.toIntExact(copies.copies()), AvailabilityChangedEvent.Cause.USER_DELETED)));
+        // Las proyecciones descuentan los aportes del usuario mientras sus reservas siguen visibles
+        eventPublisher.publishEvent(new UserDeletingEvent(id));
+        int reservationsDeleted = reservationRepository.deleteAllByUserIdInBulk(id);
+        userRepository.deleteByIdInBulk(id);
+        log.info("Deleted user with id: {} ({} reservations, stock released on {} books)",
+                id, reservationsDeleted, booksReleased);
     }
     
     @Transactional(readOnly = true)
     public User getUserEntity(Long id) {
         return userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado con ID: " + id));
     }
     
     private UserResponseDTO convertToDTO(User user) {
@@ -0,0 +1,33 @@
+package com.example.libreria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Cada hold vencido y cada libro se procesan en su propia transacción
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WaitlistExpiryScheduler {
+    
+    private final WaitlistService waitlistService;
+    
+    @Scheduled(fixedDelayString = "${libreria.waitlist.sweep-interval:PT30S}")
+    public void sweep() {
+        for (Long id : waitlistService.findExpiredHoldIds()) {
+            try {
+                waitlistService.expireHold(id);
+            } catch (RuntimeException e) {
+                log.warn("Could not expire waitlist hold {}: {}", id, e.getMessage());
+            }
+        }
+        for (Long bookExternalId : waitlistService.findBooksWithIdleCopies()) {
+            try {
+                waitlistService.promoteWaiters(bookExternalId);
+            } catch (RuntimeException e) {
+                log.warn("Could not promote waiters of book {}: {}", bookExternalId, e.getMessage());
+            }
+        }
+    }
+}
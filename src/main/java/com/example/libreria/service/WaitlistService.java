@@ -0,0 +1,215 @@
+package com.example.libreria.service;
+
+import com.example.libreria.cache.ChangeFeed;
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.event.AvailabilityChangedEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.WaitlistEntry;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.WaitlistEntryRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static java.time.LocalDateTime.now;
+
+/**
+ * Lista de espera FIFO por libro. Un ejemplar devuelto se asigna a la primera entrada
+ * en espera (hold) en vez de volver al pool; el usuario tiene un plazo para confirmar la
+ * reserva y, si no lo hace, el ejemplar pasa al siguiente.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed(LibraryMetrics.SERVICE_TIMER)
+@Slf4j
+public class WaitlistService {
+    
+    private static final List<WaitlistEntry.WaitlistStatus> OPEN_STATUSES =
+            List.of(WaitlistEntry.WaitlistStatus.WAITING, WaitlistEntry.WaitlistStatus.HELD);
+    
+    private final WaitlistEntryRepository waitlistRepository;
+    private final BookRepository bookRepository;
+    private final BookService bookService;
+    private final LibraryMetrics libraryMetrics;
+    private final ChangeFeed changeFeed;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${libreria.waitlist.hold-duration:48h}")
+    private Duration holdDuration;
+    
+    // Un mismo usuario conserva su lugar aunque reintente la solicitud
+    @Transactional
+    public WaitlistEntryDTO enqueue(Long userId, Long bookExternalId, Integer rentalDays) {
+        List<WaitlistEntry> open = waitlistRepository.findOpenEntries(userId, bookExternalId);
+        if (!open.isEmpty()) {
+            return convertToDTO(open.get(0));
+        }
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setUserId(userId);
+        entry.setBookExternalId(bookExternalId);
+        entry.setRentalDays(rentalDays);
+        entry.setStatus(WaitlistEntry.WaitlistStatus.WAITING);
+        WaitlistEntry saved = waitlistRepository.save(entry);
+        libraryMetrics.recordWaitlistEvent("enqueued");
+        log.info("User {} joined the waitlist of book {} (entry {})", userId, bookExternalId, saved.getId());
+        return convertToDTO(saved);
+    }
+    
+    @Transactional(readOnly = true)
+    public boolean hasWaiters(Long bookExternalId) {
+        return waitlistRepository.hasWaiters(bookExternalId);
+    }
+    
+    // Consume el ejemplar reservado para el usuario, si tiene uno vigente
+    @Transactional
+    public boolean fulfillHold(Long userId, Long bookExternalId) {
+        LocalDateTime now = now();
+        for (WaitlistEntry entry : waitlistRepository.findOpenEntries(userId, bookExternalId)) {
+            if (entry.getStatus() == WaitlistEntry.WaitlistStatus.HELD
+                    && entry.getHoldExpiresAt().isAfter(now)
+                    && waitlistRepository.transition(entry.getId(), WaitlistEntry.WaitlistStatus.HELD,
+                            WaitlistEntry.WaitlistStatus.FULFILLED) > 0) {
+                libraryMetrics.recordWaitlistEvent("fulfilled");
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // El ejemplar liberado pasa primero por la cola; sólo vuelve al pool si no hay nadie esperando
+    @Transactional
+    public void releaseCopy(Long bookExternalId) {
+        if (holdForHead(bookExternalId) == null) {
+            bookService.increaseAvailableQuantity(bookExternalId);
+            eventPublisher.publishEvent(new AvailabilityChangedEvent(bookExternalId, 1,
+                    AvailabilityChangedEvent.Cause.COPY_RELEASED));
+        }
+    }
+    
+    // Mueve ejemplares del pool a la cola (stock ampliado o ejemplares liberados en paralelo a una alta)
+    @Transactional
+    public int promoteWaiters(Long bookExternalId) {
+        int promoted = 0;
+        Long held;
+        while ((held = holdForHead(bookExternalId)) != null) {
+            changeFeed.bookChanged(bookExternalId);
+            if (bookRepository.decrementAvailableQuantity(bookExternalId) == 0) {
+                waitlistRepository.unhold(held);
+                break;
+            }
+            promoted++;
+        }
+        if (promoted > 0) {
+            eventPublisher.publishEvent(new AvailabilityChangedEvent(bookExternalId, -promoted,
+                    AvailabilityChangedEvent.Cause.WAITERS_PROMOTED));
+        }
+        return promoted;
+    }
+    
+    @Transactional
+    public boolean expireHold(Long id) {
+        WaitlistEntry entry = waitlistRepository.findById(id).orElse(null);
+        if (entry == null || entry.getStatus() != WaitlistEntry.WaitlistStatus.HELD
+                || entry.getHoldExpiresAt().isAfter(now())) {
+            return false;
+        }
+        if (waitlistRepository.transition(id, WaitlistEntry.WaitlistStatus.HELD,
+                WaitlistEntry.WaitlistStatus.EXPIRED) == 0) {
+            return false;
+        }
+        libraryMetrics.recordWaitlistEvent("expired");
+        log.info("Hold {} on book {} expired", id, entry.getBookExternalId());
+        releaseCopy(entry.getBookExternalId());
+        return true;
+    }
+    
+    @Transactional
+    public WaitlistEntryDTO cancel(Long id) {
+        WaitlistEntry entry = waitlistRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Entrada de lista de espera no encontrada con ID: " + id));
+        if (!cancelEntry(entry)) {
+            throw new ConflictException("La entrada de lista de espera ya no está activa");
+        }
+        WaitlistEntryDTO dto = convertToDTO(entry);
+        dto.setStatus(WaitlistEntry.WaitlistStatus.CANCELLED);
+        dto.setPosition(null);
+        return dto;
+    }
+    
+    @Transactional
+    public void cancelAllForUser(Long userId) {
+        waitlistRepository.findByUserIdAndStatusIn(userId, OPEN_STATUSES).forEach(this::cancelEntry);
+    }
+    
+    @Transactional(readOnly = true)
+    public WaitlistEntryDTO getEntry(Long id) {
+        WaitlistEntry entry = waitlistRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Entrada de lista de espera no encontrada con ID: " + id));
+        return convertToDTO(entry);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Long> findExpiredHoldIds() {
+        return waitlistRepository.findExpiredHoldIds(now());
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Long> findBooksWithIdleCopies() {
+        return waitlistRepository.findBooksWithIdleCopies();
+    }
+    
+    private boolean cancelEntry(WaitlistEntry entry) {
+        WaitlistEntry.WaitlistStatus status = entry.getStatus();
+        if (!OPEN_STATUSES.contains(status)
+                || waitlistRepository.transition(entry.getId(), status, WaitlistEntry.WaitlistStatus.CANCELLED) == 0) {
+            return false;
+        }
+        libraryMetrics.recordWaitlistEvent("cancelled");
+        if (status == WaitlistEntry.WaitlistStatus.HELD) {
+            releaseCopy(entry.getBookExternalId());
+        }
+        return true;
+    }
+    
+    /**
+     * Asigna un ejemplar a la primera entrada en espera. Si otra transacción toma esa
+     * entrada primero, el UPDATE condicional no afecta filas y se prueba con la siguiente.
+     */
+    private Long holdForHead(Long bookExternalId) {
+        LocalDateTime now = now();
+        Long headId;
+        while ((headId = waitlistRepository.findHeadId(bookExternalId)) != null) {
+            if (waitlistRepository.hold(headId, now, now.plus(holdDuration)) > 0) {
+                libraryMetrics.recordWaitlistEvent("held");
+                log.info("Copy of book {} held for waitlist entry {}", bookExternalId, headId);
+                return headId;
+            }
+        }
+        return null;
+    }
+    
+    private WaitlistEntryDTO convertToDTO(WaitlistEntry entry) {
+        WaitlistEntryDTO dto = new WaitlistEntryDTO();
+        dto.setId(entry.getId());
+        dto.setBookExternalId(entry.getBookExternalId());
+        dto.setUserId(entry.getUserId());
+        dto.setRentalDays(entry.getRentalDays());
+        dto.setStatus(entry.getStatus());
+        if (entry.getStatus() == WaitlistEntry.WaitlistStatus.WAITING) {
+            dto.setPosition(waitlistRepository.countAhead(entry.getBookExternalId(), entry.getId()) + 1);
+        }
+        dto.setCreatedAt(entry.getCreatedAt());
+        dto.setHoldExpiresAt(entry.getHoldExpiresAt());
+        return dto;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.libreria.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Formato del snapshot del catálogo:
+ * {@code [magic][versión][timestamp][cantidad] libro* [crc32]}, donde cada libro es
+ * {@code [externalId][título][año][ediciones][texto completo][precio][stock][autores]}.
+ * Se escribe en un archivo temporal que reemplaza al anterior con un move atómico, y se lee
+ * mapeado en memoria; el CRC cubre todo lo anterior, así un archivo truncado o de otra versión
+ * se descarta entero.
+ */
+final class CatalogSnapshotFile {
+    
+    static final int MAGIC = 0x4C42534E; // "LBSN"
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    
+    private CatalogSnapshotFile() {
+    }
+    
+    static void write(Path file, Collection<SnapshotBook> books) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(books.size());
+            for (SnapshotBook book : books) {
+                writeBook(out, book);
+            }
+            out.flush();
+            // El CRC se toma antes de escribirlo: no se incluye a sí mismo
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    static List<SnapshotBook> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Tamaño de snapshot inválido: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodySize = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, bodySize));
+            if ((int) crc.getValue() != buffer.getInt(bodySize)) {
+                throw new IOException("El snapshot " + file + " está corrupto (CRC)");
+            }
+            ByteBuffer in = buffer.slice(0, bodySize);
+            if (in.getInt() != MAGIC) {
+                throw new IOException(file + " no es un snapshot del catálogo");
+            }
+            int version = in.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Versión de snapshot no soportada: " + version);
+            }
+            in.getLong();
+            int count = in.getInt();
+            List<SnapshotBook> books = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                books.add(readBook(in));
+            }
+            return books;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("El snapshot " + file + " está truncado", e);
+        }
+    }
+    
+    private static void writeBook(DataOutputStream out, SnapshotBook book) throws IOException {
+        out.writeLong(book.externalId());
+        writeString(out, book.title());
+        writeInt(out, book.firstPublishYear());
+        writeInt(out, book.editionCount());
+        out.writeByte(book.hasFulltext() == null ? -1 : book.hasFulltext() ? 1 : 0);
+        writeDecimal(out, book.price());
+        out.writeInt(book.stockQuantity());
+        List<String> authors = book.authors();
+        out.writeInt(authors.size());
+        for (String author : authors) {
+            writeString(out, author);
+        }
+    }
+    
+    private static SnapshotBook readBook(ByteBuffer in) {
+        long externalId = in.getLong();
+        String title = readString(in);
+        Integer firstPublishYear = readInt(in);
+        Integer editionCount = readInt(in);
+        byte fulltext = in.get();
+        Boolean hasFulltext = fulltext < 0 ? null : fulltext == 1;
+        BigDecimal price = readDecimal(in);
+        int stock = in.getInt();
+        int authorCount = in.getInt();
+        List<String> authors = new ArrayList<>(authorCount);
+        for (int i = 0; i < authorCount; i++) {
+            authors.add(readString(in));
+        }
+        return new SnapshotBook(externalId, title, authors, firstPublishYear, editionCount, hasFulltext, price, stock);
+    }
+    
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeInt(value != null ? value : NULL_INT);
+    }
+    
+    private static Integer readInt(ByteBuffer in) {
+        int value = in.getInt();
+        return value != NULL_INT ? value : null;
+    }
+    
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(-1);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+    
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        byte length = in.get();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.getInt());
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.libreria.snapshot;
+
+import com.example.libreria.cache.ChangeFeed;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.service.BookService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Snapshot binario del catálogo (libros, autores y stock) para no depender de una sincronización
+ * completa con la API externa después de cada reinicio. Se escribe periódicamente si el catálogo
+ * cambió y al apagar; al arrancar, si la tabla de libros está vacía, se carga por lotes y la
+ * sincronización con la API corre en segundo plano para traer las diferencias.
+ */
+@Component
+@ConditionalOnProperty(name = "libreria.snapshot.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogSnapshotService implements ApplicationRunner {
+    
+    static final String FILE_NAME = "catalog.snapshot";
+    private static final int BATCH_SIZE = 1000;
+    
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookService bookService;
+    private final ChangeFeed changeFeed;
+    
+    @Value("${libreria.snapshot.directory:./data/snapshot}")
+    private Path directory;
+    
+    @Value("${libreria.snapshot.sync-after-restore:true}")
+    private boolean syncAfterRestore;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        restore();
+    }
+    
+    // Cantidad de libros restaurados; 0 si no hay snapshot válido o el catálogo ya tiene libros
+    public int restore() {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            log.info("No catalog snapshot at {}", file);
+            return 0;
+        }
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books", Integer.class);
+        if (existing != null && existing > 0) {
+            log.info("Catalog already has {} books, snapshot {} not restored", existing, file);
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<SnapshotBook> books;
+        try {
+            books = CatalogSnapshotFile.read(file);
+        } catch (IOException e) {
+            log.warn("Ignoring catalog snapshot {}: {}", file, e.getMessage());
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> insert(books));
+        changeFeed.allBooksChanged();
+        log.info("Restored {} books from snapshot {} in {} ms", books.size(), file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (syncAfterRestore) {
+            startDeltaSync();
+        }
+        return books.size();
+    }
+    
+    @Scheduled(fixedDelayString = "${libreria.snapshot.interval:PT10M}",
+            initialDelayString = "${libreria.snapshot.interval:PT10M}")
+    public void snapshotIfChanged() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            log.error("Could not write catalog snapshot: {}", e.getMessage(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshotIfChanged();
+    }
+    
+    // Cualquier alta, actualización o ajuste de stock deja el snapshot desactualizado
+    @EventListener({BookSyncedEvent.class, StockAdjustedEvent.class})
+    public void onCatalogChanged() {
+        dirty.set(true);
+    }
+    
+    public int writeSnapshot() throws IOException {
+        writeLock.lock();
+        try {
+            long start = System.nanoTime();
+            List<SnapshotBook> books = transactionTemplate.execute(status -> readCatalog());
+            // Un catálogo vacío (por ejemplo, tras una restauración fallida) no reemplaza al último snapshot
+            if (books == null || books.isEmpty()) {
+                return 0;
+            }
+            Files.createDirectories(directory);
+            CatalogSnapshotFile.write(directory.resolve(FILE_NAME), books);
+            log.info("Wrote catalog snapshot with {} books in {} ms", books.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return books.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    private List<SnapshotBook> readCatalog() {
+        Map<Long, List<String>> authors = new HashMap<>();
+        jdbcTemplate.query("SELECT book_id, author_name FROM book_authors", rs -> {
+            authors.computeIfAbsent(rs.getLong("book_id"), id -> new ArrayList<>()).add(rs.getString("author_name"));
+        });
+        return jdbcTemplate.query(
+                "SELECT external_id, title, first_publish_year, edition_count, has_fulltext, price, stock_quantity " +
+                "FROM books ORDER BY external_id",
+                (rs, rowNum) -> {
+                    long externalId = rs.getLong("external_id");
+                    return new SnapshotBook(externalId, rs.getString("title"),
+                            authors.getOrDefault(externalId, List.of()),
+                            rs.getObject("first_publish_year", Integer.class),
+                            rs.getObject("edition_count", Integer.class),
+                            rs.getObject("has_fulltext", Boolean.class),
+                            rs.getBigDecimal("price"),
+                            rs.getInt("stock_quantity"));
+                });
+    }
+    
+    // Sin libros no puede haber reservas ni ejemplares asignados (las reservas los referencian),
+    // así que todo el stock restaurado queda disponible
+    private void insert(List<SnapshotBook> books) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO books (external_id, title, first_publish_year, edition_count, has_fulltext, price, " +
+                "stock_quantity, available_quantity) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                books, BATCH_SIZE, (ps, book) -> {
+                    ps.setLong(1, book.externalId());
+                    ps.setString(2, book.title());
+                    ps.setObject(3, book.firstPublishYear());
+                    ps.setObject(4, book.editionCount());
+                    ps.setObject(5, book.hasFulltext());
+                    ps.setBigDecimal(6, book.price());
+                    ps.setInt(7, book.stockQuantity());
+                    ps.setInt(8, book.stockQuantity());
+                });
+        List<Object[]> authorRows = new ArrayList<>();
+        for (SnapshotBook book : books) {
+            for (String author : book.authors()) {
+                authorRows.add(new Object[]{book.externalId(), author});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO book_authors (book_id, author_name) VALUES (?, ?)",
+                authorRows, BATCH_SIZE, (ps, row) -> {
+                    ps.setLong(1, (Long) row[0]);
+                    ps.setString(2, (String) row[1]);
+                });
+    }
+    
+    private void startDeltaSync() {
+        Thread thread = new Thread(() -> {
+            try {
+                bookService.syncBooksFromExternalApi();
+            } catch (RuntimeException e) {
+                log.warn("Background sync after snapshot restore failed: {}", e.getMessage());
+            }
+        }, "snapshot-delta-sync");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
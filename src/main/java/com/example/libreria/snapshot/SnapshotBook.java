@@ -0,0 +1,15 @@
+package com.example.libreria.snapshot;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+record SnapshotBook(
+        Long externalId,
+        String title,
+        List<String> authors,
+        Integer firstPublishYear,
+        Integer editionCount,
+        Boolean hasFulltext,
+        BigDecimal price,
+        Integer stockQuantity) {
+}
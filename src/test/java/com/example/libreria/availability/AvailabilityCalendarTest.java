@@ -0,0 +1,79 @@
+package com.example.libreria.availability;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvailabilityCalendarTest {
+    
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    
+    @Test
+    void testOccupy_HalfOpenSpans() {
+        AvailabilityCalendar calendar = new AvailabilityCalendar(FROM, FROM.plusDays(10), 2);
+        calendar.occupy(FROM.plusDays(2), FROM.plusDays(5));
+        calendar.occupy(FROM.plusDays(4), FROM.plusDays(8));
+        
+        assertArrayEquals(new int[]{2, 2, 1, 1, 0, 1, 1, 1, 2, 2}, calendar.availablePerDay());
+        assertEquals(0, calendar.minAvailable(FROM, FROM.plusDays(10)));
+        assertEquals(1, calendar.minAvailable(FROM.plusDays(5), FROM.plusDays(8)));
+        // El día de la devolución ya está libre
+        assertEquals(2, calendar.minAvailable(FROM.plusDays(8), FROM.plusDays(10)));
+    }
+    
+    @Test
+    void testOccupy_ClipsSpansOutsideWindow() {
+        AvailabilityCalendar calendar = new AvailabilityCalendar(FROM, FROM.plusDays(5), 1);
+        calendar.occupy(FROM.minusDays(30), FROM.plusDays(1));
+        calendar.occupy(FROM.plusDays(4), FROM.plusDays(40));
+        calendar.occupy(FROM.plusDays(10), FROM.plusDays(20));
+        
+        assertArrayEquals(new int[]{0, 1, 1, 1, 0}, calendar.availablePerDay());
+    }
+    
+    @Test
+    void testOccupyAfterQuery_RecomputesDays() {
+        AvailabilityCalendar calendar = new AvailabilityCalendar(FROM, FROM.plusDays(4), 2);
+        calendar.occupy(FROM, FROM.plusDays(2));
+        assertEquals(1, calendar.minAvailable(FROM, FROM.plusDays(4)));
+        
+        int[] before = calendar.availablePerDay();
+        before[3] = 99;
+        calendar.occupy(FROM.plusDays(1), FROM.plusDays(3));
+        
+        assertEquals(0, calendar.minAvailable(FROM, FROM.plusDays(4)));
+        assertArrayEquals(new int[]{1, 0, 1, 2}, calendar.availablePerDay());
+    }
+    
+    @Test
+    void testMinAvailable_MatchesDailyCounts() {
+        int days = 97;
+        AvailabilityCalendar calendar = new AvailabilityCalendar(FROM, FROM.plusDays(days), 20);
+        int[] expected = new int[days];
+        Arrays.fill(expected, 20);
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(days);
+            int end = start + 1 + random.nextInt(days - start);
+            calendar.occupy(FROM.plusDays(start), FROM.plusDays(end));
+            for (int d = start; d < end; d++) {
+                expected[d]--;
+            }
+        }
+        
+        assertArrayEquals(expected, calendar.availablePerDay());
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(days);
+            int end = start + 1 + random.nextInt(days - start);
+            int min = Integer.MAX_VALUE;
+            for (int d = start; d < end; d++) {
+                min = Math.min(min, expected[d]);
+            }
+            assertEquals(min, calendar.minAvailable(FROM.plusDays(start), FROM.plusDays(end)));
+        }
+    }
+}
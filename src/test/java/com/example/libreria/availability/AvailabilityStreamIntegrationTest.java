@@ -0,0 +1,203 @@
+package com.example.libreria.availability;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Buffer de cuatro cambios: unos pocos ajustes de stock dejan atrás a un cliente desconectado
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "libreria.availability-stream.buffer-size=4",
+        "libreria.availability-stream.publish-interval=PT0.05S"
+})
+@ActiveProfiles("test")
+class AvailabilityStreamIntegrationTest {
+    
+    private static final long BOOK_ID = 889101L;
+    private static final int STOCK = 5;
+    
+    private record Event(String name, String id, String data) {
+    }
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<InputStream> connections = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        if (!bookRepository.existsByExternalId(BOOK_ID)) {
+            Book book = new Book();
+            book.setExternalId(BOOK_ID);
+            book.setTitle("Libro en Vivo");
+            book.setAuthorName(List.of("Autora Transmitida"));
+            book.setPrice(new BigDecimal("10.00"));
+            book.setStockQuantity(STOCK);
+            book.setAvailableQuantity(STOCK);
+            bookRepository.save(book);
+        }
+    }
+    
+    @AfterEach
+    void disconnect() throws IOException {
+        for (InputStream connection : connections) {
+            connection.close();
+        }
+    }
+    
+    @Test
+    void testNewClient_GetsSnapshotThenChanges() throws Exception {
+        BlockingQueue<Event> events = connect(null);
+        
+        Event snapshot = next(events);
+        assertEquals(AvailabilityStream.SNAPSHOT_EVENT, snapshot.name());
+        assertTrue(snapshot.data().contains("\"externalId\":" + BOOK_ID + ","), snapshot.data());
+        
+        bookService.updateStock(BOOK_ID, STOCK + 3);
+        
+        Event changes = awaitChange(events, STOCK + 3);
+        assertEquals(AvailabilityStream.CHANGES_EVENT, changes.name());
+    }
+    
+    @Test
+    void testLastEventId_ReplaysMissedChangesWithoutSnapshot() throws Exception {
+        BlockingQueue<Event> watcher = connect(null);
+        next(watcher);
+        BlockingQueue<Event> kiosk = connect(null);
+        String lastEventId = next(kiosk).id();
+        disconnectLast();
+        
+        bookService.updateStock(BOOK_ID, STOCK + 1);
+        awaitChange(watcher, STOCK + 1);
+        bookService.updateStock(BOOK_ID, STOCK + 2);
+        awaitChange(watcher, STOCK + 2);
+        
+        BlockingQueue<Event> resumed = connect(lastEventId);
+        Event first = next(resumed);
+        assertEquals(AvailabilityStream.CHANGES_EVENT, first.name());
+        assertTrue(first.data().contains(change(BOOK_ID, STOCK + 1)), first.data());
+        assertTrue(first.data().contains(change(BOOK_ID, STOCK + 2)), first.data());
+    }
+    
+    @Test
+    void testClientBehindTheBuffer_DropsToSnapshot() throws Exception {
+        BlockingQueue<Event> watcher = connect(null);
+        next(watcher);
+        BlockingQueue<Event> kiosk = connect(null);
+        String lastEventId = next(kiosk).id();
+        disconnectLast();
+        
+        for (int i = 0; i < 6; i++) {
+            bookService.updateStock(BOOK_ID, STOCK + 1 + i % 2);
+            awaitChange(watcher, STOCK + 1 + i % 2);
+        }
+        
+        Event first = next(connect(lastEventId));
+        assertEquals(AvailabilityStream.SNAPSHOT_EVENT, first.name());
+        assertTrue(first.data().contains(change(BOOK_ID, STOCK + 2)), first.data());
+        // Un id de otra instancia o de antes de un reinicio también empieza por la foto
+        assertEquals(AvailabilityStream.SNAPSHOT_EVENT, next(connect("otra:1")).name());
+    }
+    
+    private BlockingQueue<Event> connect(String lastEventId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/books/availability/stream"))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        HttpResponse<InputStream> response = client.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        connections.add(response.body());
+        BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> read(response.body(), events));
+        reader.setDaemon(true);
+        reader.start();
+        return events;
+    }
+    
+    private void disconnectLast() throws IOException {
+        connections.remove(connections.size() - 1).close();
+    }
+    
+    private static void read(InputStream body, BlockingQueue<Event> events) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String name = null;
+            String id = null;
+            StringBuilder data = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (data != null) {
+                        events.add(new Event(name, id, data.toString()));
+                    }
+                    name = null;
+                    data = null;
+                } else if (line.startsWith("event:")) {
+                    name = field(line);
+                } else if (line.startsWith("id:")) {
+                    id = field(line);
+                } else if (line.startsWith("data:")) {
+                    data = data == null ? new StringBuilder(field(line)) : data.append('\n').append(field(line));
+                }
+            }
+        } catch (IOException e) {
+            // conexión cerrada por el test
+        }
+    }
+    
+    private static String field(String line) {
+        String value = line.substring(line.indexOf(':') + 1);
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+    
+    private static Event next(BlockingQueue<Event> events) throws InterruptedException {
+        Event event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "no llegó ningún evento");
+        return event;
+    }
+    
+    private static Event awaitChange(BlockingQueue<Event> events, int available) throws InterruptedException {
+        while (true) {
+            Event event = next(events);
+            if (event.data().contains(change(BOOK_ID, available))) {
+                return event;
+            }
+        }
+    }
+    
+    private static String change(long externalId, int available) {
+        return "\"externalId\":" + externalId + ",\"availableQuantity\":" + available;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.libreria.availability;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+// Un solo hilo de envío: sin el watchdog, un cliente que no lee deja sin eventos a todos los demás
+class AvailabilityStreamTest {
+    
+    private final LibraryMetrics libraryMetrics = mock(LibraryMetrics.class);
+    private final AvailabilityStream stream =
+            new AvailabilityStream(mock(JdbcTemplate.class), new ObjectMapper(), libraryMetrics);
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stream, "enabled", true);
+        ReflectionTestUtils.setField(stream, "bufferSize", 4);
+        ReflectionTestUtils.setField(stream, "maxBatch", 10);
+        ReflectionTestUtils.setField(stream, "senderThreads", 1);
+        ReflectionTestUtils.setField(stream, "timeout", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(stream, "reconnectDelay", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(stream, "sendTimeout", Duration.ofMillis(50));
+        stream.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        stream.stop();
+    }
+    
+    @Test
+    void testStalledClient_DroppedAndOthersStillServed() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        stream.subscribe(stalled, null);
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+        RecordingEmitter healthy = new RecordingEmitter();
+        stream.subscribe(healthy, null);
+        
+        Thread.sleep(100);
+        stream.dropStalledClients();
+        
+        assertNotNull(healthy.events.poll(5, TimeUnit.SECONDS), "el cliente sano no recibió la foto");
+        verify(libraryMetrics).recordAvailabilityStream("dropped_slow");
+        assertEquals(2, senders().getCorePoolSize());
+        
+        stalled.release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS), "no se cerró la conexión del cliente lento");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (senders().getCorePoolSize() != 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, senders().getCorePoolSize());
+    }
+    
+    @Test
+    void testIdleClient_NotDropped() throws Exception {
+        RecordingEmitter idle = new RecordingEmitter();
+        stream.subscribe(idle, null);
+        assertNotNull(idle.events.poll(5, TimeUnit.SECONDS));
+        
+        Thread.sleep(100);
+        stream.dropStalledClients();
+        
+        assertFalse(idle.completed);
+        assertEquals(1, senders().getCorePoolSize());
+    }
+    
+    private ThreadPoolExecutor senders() {
+        return (ThreadPoolExecutor) ReflectionTestUtils.getField(stream, "senders");
+    }
+    
+    // Como un cliente que dejó de leer: el envío queda bloqueado hasta release
+    private static class StalledEmitter extends SseEmitter {
+        
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+        
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+    
+    private static class RecordingEmitter extends SseEmitter {
+        
+        private final BlockingQueue<SseEventBuilder> events = new LinkedBlockingQueue<>();
+        private volatile boolean completed;
+        
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(builder);
+        }
+        
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
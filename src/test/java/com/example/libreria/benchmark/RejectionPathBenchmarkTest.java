@@ -0,0 +1,93 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.exception.NotFoundException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Costo de un rechazo esperado: lanzar y atrapar la excepción a la profundidad de pila de un request
+ * (con y sin stack trace), y el camino completo de un GET /api/books/{id} inexistente hasta el 404.
+ * <p>
+ * ./mvnw -Pbenchmark test -Dbenchmark.rejections=200000
+ */
+@Tag("benchmark")
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RejectionPathBenchmarkTest {
+    
+    private static final int REJECTIONS = Integer.getInteger("benchmark.rejections", 200_000);
+    // Aproximadamente los frames entre Tomcat y un servicio con proxies de Spring
+    private static final int STACK_DEPTH = 150;
+    private static final int ROUNDS = 7;
+    private static final int REQUESTS = 5_000;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Test
+    void compareThrowCost() {
+        long stackless = 0;
+        long withStackTrace = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            stackless = measure(true);
+            withStackTrace = measure(false);
+        }
+        System.out.printf("%n%-22s %10s%n%-22s %10.1f%n%-22s %10.1f%n", "exception", "ns/op",
+                "stackless", (double) stackless / REJECTIONS, "with stack trace", (double) withStackTrace / REJECTIONS);
+        assertTrue(stackless < withStackTrace, "la excepción sin stack trace no es más barata");
+    }
+    
+    @Test
+    void notFoundRequests() throws Exception {
+        long[] samples = new long[REQUESTS];
+        for (int i = -REQUESTS / 5; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            int status = mockMvc.perform(get("/api/books/{externalId}", 900_000_000L + Math.max(i, 0)))
+                    .andReturn().getResponse().getStatus();
+            long elapsed = System.nanoTime() - start;
+            assertEquals(404, status);
+            if (i >= 0) {
+                samples[i] = elapsed;
+            }
+        }
+        Arrays.sort(samples);
+        System.out.printf("%nGET libro inexistente (404): p50 %.1f us, p99 %.1f us%n",
+                samples[REQUESTS / 2] / 1e3, samples[REQUESTS * 99 / 100] / 1e3);
+    }
+    
+    private static long measure(boolean stackless) {
+        long start = System.nanoTime();
+        int caught = 0;
+        for (int i = 0; i < REJECTIONS; i++) {
+            try {
+                throwAt(STACK_DEPTH, stackless);
+            } catch (RuntimeException e) {
+                caught++;
+            }
+        }
+        assertEquals(REJECTIONS, caught);
+        return System.nanoTime() - start;
+    }
+    
+    private static void throwAt(int depth, boolean stackless) {
+        if (depth > 0) {
+            throwAt(depth - 1, stackless);
+            return;
+        }
+        throw stackless
+                ? new NotFoundException("Libro no encontrado con ID externo: 1")
+                : new RuntimeException("Libro no encontrado con ID externo: 1");
+    }
+}
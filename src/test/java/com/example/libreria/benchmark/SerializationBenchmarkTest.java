@@ -0,0 +1,114 @@
+package com.example.libreria.benchmark;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Reservation;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tamaño del payload y tiempo de serialización / deserialización de listados grandes en JSON,
+ * CBOR y Smile, con los ObjectMapper configurados como en {@code BinaryContentConfig}.
+ * <p>
+ * ./mvnw -Pbenchmark test -Dbenchmark.items=10000
+ */
+@Tag("benchmark")
+class SerializationBenchmarkTest {
+    
+    private static final int ITEMS = Integer.getInteger("benchmark.items", 10_000);
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 30;
+    
+    private record Result(int bytes, long serializeNanos, long deserializeNanos) {
+    }
+    
+    @Test
+    void compareFormats() throws Exception {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", Jackson2ObjectMapperBuilder.json().build());
+        mappers.put("cbor", Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build());
+        mappers.put("smile", Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build());
+        
+        StringBuilder report = new StringBuilder(String.format("%n%-14s %-6s %12s %14s %14s%n",
+                "payload", "format", "bytes", "serialize ms", "deserialize ms"));
+        for (Map.Entry<String, List<?>> payload : payloads().entrySet()) {
+            Class<?> itemType = payload.getValue().get(0).getClass();
+            Result json = null;
+            for (Map.Entry<String, ObjectMapper> mapper : mappers.entrySet()) {
+                Result result = measure(mapper.getValue(), payload.getValue(), itemType);
+                report.append(String.format("%-14s %-6s %12d %14.2f %14.2f%n", payload.getKey(), mapper.getKey(),
+                        result.bytes(), result.serializeNanos() / 1e6, result.deserializeNanos() / 1e6));
+                if (json == null) {
+                    json = result;
+                } else {
+                    assertTrue(result.bytes() < json.bytes(), mapper.getKey() + " no es más chico que JSON");
+                }
+            }
+        }
+        System.out.println(report);
+    }
+    
+    private Result measure(ObjectMapper mapper, List<?> items, Class<?> itemType) throws Exception {
+        JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, itemType);
+        byte[] bytes = mapper.writeValueAsBytes(items);
+        assertEquals(items, mapper.readValue(bytes, listType));
+        
+        long[] serialize = new long[ITERATIONS];
+        long[] deserialize = new long[ITERATIONS];
+        for (int i = -WARMUP; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            bytes = mapper.writeValueAsBytes(items);
+            long serialized = System.nanoTime();
+            mapper.readValue(bytes, listType);
+            long deserialized = System.nanoTime();
+            if (i >= 0) {
+                serialize[i] = serialized - start;
+                deserialize[i] = deserialized - serialized;
+            }
+        }
+        return new Result(bytes.length, median(serialize), median(deserialize));
+    }
+    
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+    
+    private static Map<String, List<?>> payloads() {
+        List<BookResponseDTO> books = new ArrayList<>(ITEMS);
+        List<ReservationResponseDTO> reservations = new ArrayList<>(ITEMS);
+        LocalDate start = LocalDate.of(2024, 1, 15);
+        for (int i = 0; i < ITEMS; i++) {
+            books.add(new BookResponseDTO(100_000L + i, "Título del libro número " + i,
+                    List.of("Autor " + i, "Coautor " + (i % 97)), 1950 + i % 70, 1 + i % 40, i % 2 == 0,
+                    new BigDecimal("15.99"), 10, i % 11));
+            reservations.add(new ReservationResponseDTO((long) i, (long) (i % 500), "Usuario " + (i % 500),
+                    100_000L + i % 1000, "Título del libro número " + (i % 1000), 7, start.plusDays(i % 365),
+                    start.plusDays(i % 365 + 7), null, new BigDecimal("15.99"), new BigDecimal("111.93"),
+                    BigDecimal.ZERO, Reservation.ReservationStatus.ACTIVE, false,
+                    LocalDateTime.of(2024, 1, 15, 10, 30).plusMinutes(i)));
+        }
+        Map<String, List<?>> payloads = new LinkedHashMap<>();
+        payloads.put("books", books);
+        payloads.put("reservations", reservations);
+        return payloads;
+    }
+}
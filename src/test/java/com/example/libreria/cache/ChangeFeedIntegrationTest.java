@@ -0,0 +1,121 @@
+package com.example.libreria.cache;
+
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.UserService;
+import com.example.libreria.support.SharedDatabaseNodes;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// La caché de respuestas de una instancia se invalida con los cambios hechos en la otra
+class ChangeFeedIntegrationTest {
+    
+    private static final long BOOK_ID = 885001L;
+    // Con el poll-interval por defecto (200ms) el cambio llega muy por debajo; el margen es para máquinas cargadas
+    private static final Duration MAX_STALENESS = Duration.ofSeconds(2);
+    
+    private static SharedDatabaseNodes nodes;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startNodes() throws Exception {
+        nodes = SharedDatabaseNodes.start("changefeed",
+                "--libreria.response-cache.enabled=true",
+                "--libreria.change-feed.enabled=true");
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("Libro Replicado");
+        book.setAuthorName(List.of("Autora Replicada"));
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(5);
+        book.setAvailableQuantity(5);
+        nodes.node1().getBean(BookRepository.class).save(book);
+    }
+    
+    @AfterAll
+    static void stopNodes() {
+        if (nodes != null) {
+            nodes.close();
+        }
+    }
+    
+    @Test
+    void testStockUpdateOnOneNode_InvalidatesBookCachedOnTheOther() throws Exception {
+        String path = "/api/books/" + BOOK_ID;
+        get(path);
+        assertEquals("HIT", get(path).headers().firstValue(ResponseCacheFilter.CACHE_HEADER).orElse(null));
+        
+        nodes.node1().getBean(BookService.class).updateStock(BOOK_ID, 9);
+        
+        assertEventually(path, "\"stockQuantity\":9");
+    }
+    
+    @Test
+    void testUserUpdateOnOneNode_InvalidatesUserCachedOnTheOther() throws Exception {
+        User user = new User();
+        user.setName("Lectora Replicada");
+        user.setEmail("change.feed@example.com");
+        Long userId = nodes.node1().getBean(UserRepository.class).save(user).getId();
+        String path = "/api/users/" + userId;
+        get(path);
+        assertEquals("HIT", get(path).headers().firstValue(ResponseCacheFilter.CACHE_HEADER).orElse(null));
+        
+        nodes.node1().getBean(UserService.class)
+                .updateUser(userId, new UserRequestDTO("Lectora Renombrada", "change.feed@example.com", null));
+        
+        assertEventually(path, "Lectora Renombrada");
+    }
+    
+    @Test
+    void testCompact_DeletesRowsOlderThanRetention() {
+        JdbcTemplate jdbcTemplate = nodes.node1().getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO change_log (entity, entity_id, node_id, created_at) VALUES ('BOOK', ?, 'otra', ?)",
+                BOOK_ID, Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+        
+        assertTrue(nodes.node1().getBean(ChangeFeed.class).compact() >= 1);
+        
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM change_log WHERE node_id = 'otra'", Integer.class));
+    }
+    
+    private void assertEventually(String path, String expected) throws Exception {
+        long deadline = System.nanoTime() + MAX_STALENESS.toNanos();
+        String body;
+        do {
+            body = get(path).body();
+            if (body.contains(expected)) {
+                return;
+            }
+            Thread.sleep(20);
+        } while (System.nanoTime() < deadline);
+        fail("La segunda instancia sigue sirviendo " + body + " después de " + MAX_STALENESS);
+    }
+    
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        URI uri = URI.create("http://localhost:" + nodes.port(nodes.node2()) + path);
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return response;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.libreria.cache;
+
+import com.example.libreria.dto.UserRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.BookService;
+import com.example.libreria.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static com.example.libreria.support.TestData.book;
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:responsecache;DB_CLOSE_DELAY=-1",
+        "libreria.response-cache.enabled=true"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ResponseCacheFilterTest {
+    
+    private static final long BOOK_ID = 883001L;
+    private static final long LARGE_BOOK_ID = 883002L;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ResponseCache responseCache;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+        saveBook(bookRepository, BOOK_ID, 5);
+        Book large = book(LARGE_BOOK_ID, 5);
+        large.setAuthorName(IntStream.range(0, 80).mapToObj(i -> "Autora Invitada Número " + i).toList());
+        bookRepository.save(large);
+        // Los libros recién creados no deben servirse con payloads cacheados en el test anterior
+        responseCache.evictAllBooks();
+    }
+    
+    @Test
+    void testSecondRead_ServedFromCacheWithEtag() throws Exception {
+        bookService.updateStock(BOOK_ID, 5);
+        MockHttpServletResponse first = mockMvc.perform(get("/api/books/{externalId}", BOOK_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ResponseCacheFilter.CACHE_HEADER, "MISS"))
+                .andReturn().getResponse();
+        MockHttpServletResponse second = mockMvc.perform(get("/api/books/{externalId}", BOOK_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ResponseCacheFilter.CACHE_HEADER, "HIT"))
+                .andReturn().getResponse();
+        
+        assertArrayEquals(first.getContentAsByteArray(), second.getContentAsByteArray());
+        String etag = second.getHeader(HttpHeaders.ETAG);
+        assertEquals(first.getHeader(HttpHeaders.ETAG), etag);
+        mockMvc.perform(get("/api/books/{externalId}", BOOK_ID).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+    
+    @Test
+    void testStockUpdate_InvalidatesBookAndCatalog() throws Exception {
+        mockMvc.perform(get("/api/books/{externalId}", BOOK_ID)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/books")).andExpect(status().isOk());
+        
+        bookService.updateStock(BOOK_ID, 7);
+        
+        mockMvc.perform(get("/api/books/{externalId}", BOOK_ID))
+                .andExpect(header().string(ResponseCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(jsonPath("$.stockQuantity").value(7));
+        mockMvc.perform(get("/api/books"))
+                .andExpect(header().string(ResponseCacheFilter.CACHE_HEADER, "MISS"));
+    }
+    
+    @Test
+    void testUserUpdate_InvalidatesUser() throws Exception {
+        Long userId = saveUser(userRepository, "response.cache");
+        mockMvc.perform(get("/api/users/{id}", userId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/users/{id}", userId))
+                .andExpect(header().string(ResponseCacheFilter.CACHE_HEADER, "HIT"));
+        
+        userService.updateUser(userId, new UserRequestDTO("Lectora Renombrada", "response.cache@example.com", null));
+        
+        mockMvc.perform(get("/api/users/{id}", userId))
+                .andExpect(header().string(ResponseCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(jsonPath("$.name").value("Lectora Renombrada"));
+    }
+    
+    @Test
+    void testLargeResponse_GzipOnlyWhenAccepted() throws Exception {
+        byte[] identity = mockMvc.perform(get("/api/books/{externalId}", LARGE_BOOK_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] gzipped = mockMvc.perform(get("/api/books/{externalId}", LARGE_BOOK_ID)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        
+        assertTrue(gzipped.length < identity.length);
+        assertArrayEquals(identity, gunzip(gzipped));
+    }
+    
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.libreria.catalog;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceCatalogSourceTest {
+    
+    private static final Path BOOKS_DB = Path.of("books-db.json");
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void testPlainFile_StreamsAllBooks() {
+        CatalogSource source = new ResourceCatalogSource(new FileSystemResource(BOOKS_DB), objectMapper);
+        
+        List<ExternalBookDTO> books = read(source);
+        
+        assertFalse(books.isEmpty());
+        ExternalBookDTO first = books.get(0);
+        assertEquals(258027L, first.getId());
+        assertEquals("The Lord of the Rings", first.getTitle());
+        assertEquals(List.of("J. R. R. Tolkien"), first.getAuthorName());
+        assertEquals(120, first.getEditionCount());
+        assertEquals("Douglas Adams", source.findById(140081L).getAuthorName().get(0));
+        assertNull(source.findById(-1L));
+    }
+    
+    @Test
+    void testGzipFile_SameBooksAsPlain() throws Exception {
+        Path gzipped = directory.resolve("books-db.json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipped))) {
+            Files.copy(BOOKS_DB, out);
+        }
+        
+        List<ExternalBookDTO> plain = read(new ResourceCatalogSource(new FileSystemResource(BOOKS_DB), objectMapper));
+        List<ExternalBookDTO> fromGzip = read(new ResourceCatalogSource(new FileSystemResource(gzipped), objectMapper));
+        
+        assertEquals(plain, fromGzip);
+        CatalogSource source = new ResourceCatalogSource(new FileSystemResource(gzipped), objectMapper);
+        assertEquals("Douglas Adams", source.findById(140081L).getAuthorName().get(0));
+        assertNull(source.findById(-1L));
+    }
+    
+    @Test
+    void testFindById_RebuildsIndexWhenFileChanges() throws Exception {
+        Path catalog = directory.resolve("catalog.json");
+        Files.writeString(catalog, "[{\"id\": 1, \"title\": \"Primero\"}, {\"id\": 2, \"title\": \"Segundo\"}]");
+        CatalogSource source = new ResourceCatalogSource(new FileSystemResource(catalog), objectMapper);
+        
+        assertEquals("Segundo", source.findById(2L).getTitle());
+        assertNull(source.findById(3L));
+        
+        Files.writeString(catalog, "[{\"id\": 3, \"title\": \"Tercero\"}, {\"id\": 2, \"title\": \"Segundo, revisado\"}]");
+        
+        assertEquals("Tercero", source.findById(3L).getTitle());
+        assertEquals("Segundo, revisado", source.findById(2L).getTitle());
+        assertNull(source.findById(1L));
+    }
+    
+    @Test
+    void testMissingResource_Fails() {
+        CatalogSource source = new ResourceCatalogSource(new ClassPathResource("catalog/no-existe.json"), objectMapper);
+        
+        RuntimeException error = assertThrows(RuntimeException.class, source::books);
+        assertTrue(error.getMessage().startsWith("Error al leer el catálogo"));
+    }
+    
+    private static List<ExternalBookDTO> read(CatalogSource source) {
+        try (Stream<ExternalBookDTO> books = source.books()) {
+            return books.toList();
+        }
+    }
+}
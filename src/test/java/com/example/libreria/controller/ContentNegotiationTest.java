@@ -0,0 +1,105 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.support.TestData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:contentnegotiation;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ContentNegotiationTest {
+    
+    private static final long BOOK_ID = 882001L;
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    
+    private final ObjectMapper cborMapper = CBORMapper.builder().addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    private final ObjectMapper smileMapper = SmileMapper.builder().addModule(new JavaTimeModule()).build();
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+        saveBook(bookRepository, BOOK_ID, 5);
+    }
+    
+    @Test
+    void testJsonIsDefault() throws Exception {
+        mockMvc.perform(get("/api/books/{externalId}", BOOK_ID))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+    
+    @Test
+    void testBinaryFormats_SameDto() throws Exception {
+        byte[] cbor = mockMvc.perform(get("/api/books/{externalId}", BOOK_ID).accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] smile = mockMvc.perform(get("/api/books/{externalId}", BOOK_ID).accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        
+        BookResponseDTO fromCbor = cborMapper.readValue(cbor, BookResponseDTO.class);
+        BookResponseDTO fromSmile = smileMapper.readValue(smile, BookResponseDTO.class);
+        assertEquals("Libro " + BOOK_ID, fromCbor.getTitle());
+        assertEquals(0, TestData.PRICE.compareTo(fromCbor.getPrice()));
+        assertEquals(fromCbor, fromSmile);
+    }
+    
+    @Test
+    void testCreateReservation_CborRequestAndResponse() throws Exception {
+        Long userId = saveUser(userRepository, "content.negotiation");
+        byte[] request = cborMapper.writeValueAsBytes(new ReservationRequestDTO(userId, BOOK_ID, 3, LocalDate.now()));
+        
+        byte[] response = mockMvc.perform(post("/api/reservations").contentType(CBOR).accept(CBOR).content(request))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        
+        ReservationResponseDTO reservation = cborMapper.readValue(response, ReservationResponseDTO.class);
+        assertEquals(userId, reservation.getUserId());
+        assertEquals(LocalDate.now().plusDays(3), reservation.getExpectedReturnDate());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.service.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.libreria.support.SqlStatementAssertions.maxStatements;
+import static com.example.libreria.support.TestData.book;
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:sqlcount;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ControllerSqlStatementCountTest {
+    
+    private static final long FIRST_BOOK_ID = 880001L;
+    private static final int BOOKS = 5;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private Long userId;
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+        userId = saveUser(userRepository, "sql.count");
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = book(FIRST_BOOK_ID + i, 100);
+            book.setAuthorName(List.of("Autor " + i, "Coautor " + i));
+            bookRepository.save(book);
+        }
+        for (int i = 0; i < BOOKS; i++) {
+            reservationService.createReservation(
+                    new ReservationRequestDTO(userId, FIRST_BOOK_ID + i, 7, LocalDate.now()));
+        }
+    }
+    
+    @Test
+    void testBookEndpoints_NoNPlusOne() throws Exception {
+        mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(2));
+        mockMvc.perform(get("/api/books/{externalId}", FIRST_BOOK_ID))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(2));
+    }
+    
+    @Test
+    void testUserEndpoints_NoNPlusOne() throws Exception {
+        mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(1));
+        mockMvc.perform(get("/api/users/{id}", userId))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(1));
+        mockMvc.perform(get("/api/users/{id}/summary", userId))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(3));
+    }
+    
+    @Test
+    void testReservationEndpoints_NoNPlusOne() throws Exception {
+        mockMvc.perform(get("/api/reservations"))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(3));
+        mockMvc.perform(get("/api/reservations/user/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(3));
+        mockMvc.perform(get("/api/reservations/active"))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(3));
+    }
+    
+    // Usuario y libro; el UPDATE condicional que toma el ejemplar del pool (sin cola ni ejemplar asignado);
+    // el calendario del libro (bloqueo, reservas y ejemplares asignados); el contador del usuario; el INSERT
+    // de la reserva y el lote con los totales por libro, usuario y mes
+    @Test
+    void testCreateReservation_BoundedStatements() throws Exception {
+        String body = """
+                {"userId": %d, "bookExternalId": %d, "rentalDays": 3, "startDate": "%s"}
+                """.formatted(userId, FIRST_BOOK_ID, LocalDate.now());
+        mockMvc.perform(post("/api/reservations").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isCreated())
+                .andExpect(maxStatements(9));
+    }
+}
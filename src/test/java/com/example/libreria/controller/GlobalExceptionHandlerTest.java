@@ -0,0 +1,59 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.model.User;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class GlobalExceptionHandlerTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Test
+    void testUnknownBook_Returns404() throws Exception {
+        mockMvc.perform(get("/api/books/{externalId}", 999_999_999L))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Libro no encontrado con ID externo: 999999999"));
+    }
+    
+    @Test
+    void testDuplicateEmail_Returns409() throws Exception {
+        if (!userRepository.existsByEmail("duplicado@example.com")) {
+            User user = new User();
+            user.setName("Usuario Duplicado");
+            user.setEmail("duplicado@example.com");
+            userRepository.save(user);
+        }
+        
+        mockMvc.perform(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Otro Usuario\", \"email\": \"duplicado@example.com\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Ya existe un usuario con el email: duplicado@example.com"));
+    }
+    
+    @Test
+    void testInvalidAvailabilityRange_Returns422() throws Exception {
+        mockMvc.perform(get("/api/books/{externalId}/availability", 258027L)
+                        .param("from", "2030-01-10")
+                        .param("to", "2030-01-01"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message").value("La fecha final no puede ser anterior a la inicial"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.libreria.jdbc;
+
+import com.example.libreria.config.ReplicaStickinessFilter;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.service.BookService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Dos H2 en memoria como primaria y réplica; la "replicación" es copiar la primaria con SCRIPT/RUNSCRIPT
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rwprimary;DB_CLOSE_DELAY=-1",
+        "libreria.datasource.replica.url=jdbc:h2:mem:rwreplica;DB_CLOSE_DELAY=-1",
+        // El atraso se chequea a mano en cada test
+        "libreria.datasource.replica.lag-check-interval=PT1H"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadWriteRoutingIntegrationTest {
+    
+    private static final long BOOK_ID = 886001L;
+    private static final String PRIMARY_TITLE = "Libro en la Primaria";
+    private static final String REPLICA_TITLE = "Libro en la Réplica";
+    
+    @TempDir
+    static Path tempDir;
+    
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+    
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        if (!bookRepository.existsByExternalId(BOOK_ID)) {
+            Book book = new Book();
+            book.setExternalId(BOOK_ID);
+            book.setTitle(PRIMARY_TITLE);
+            book.setAuthorName(List.of("Autora Replicada"));
+            book.setPrice(new BigDecimal("12.00"));
+            book.setStockQuantity(5);
+            book.setAvailableQuantity(5);
+            bookRepository.save(book);
+        }
+        lagMonitor.check();
+        replicate();
+        lagMonitor.check();
+        // Las escrituras de la preparación no cuentan para la lectura de lo propio
+        ReplicaRoutingContext.clear();
+        // Sólo la réplica tiene este título: indica de qué base salió la lectura
+        replica().update("UPDATE books SET title = ? WHERE external_id = ?", REPLICA_TITLE, BOOK_ID);
+    }
+    
+    @Test
+    void testReadOnlyTransaction_ServedByReplica() {
+        double before = routes("replica", "read");
+        
+        assertTrue(routingDataSource.isReplicaUsable());
+        assertEquals(REPLICA_TITLE, bookService.getBookByExternalId(BOOK_ID).getTitle());
+        assertTrue(routes("replica", "read") > before);
+    }
+    
+    @Test
+    void testLaggingReplica_ReadsFallBackToPrimary() {
+        replica().update("UPDATE replica_heartbeat SET beat_at = ?", Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)));
+        lagMonitor.check();
+        double before = routes("primary", "replica-lagging");
+        
+        assertFalse(routingDataSource.isReplicaUsable());
+        assertTrue(lagMonitor.getLagMillis() >= 60_000);
+        assertEquals(PRIMARY_TITLE, bookService.getBookByExternalId(BOOK_ID).getTitle());
+        assertTrue(routes("primary", "replica-lagging") > before);
+    }
+    
+    @Test
+    void testReadAfterWrite_StaysOnPrimary() {
+        bookService.updateStock(BOOK_ID, 6);
+        
+        assertEquals(PRIMARY_TITLE, bookService.getBookByExternalId(BOOK_ID).getTitle());
+        assertEquals(6, bookService.getBookByExternalId(BOOK_ID).getStockQuantity());
+        assertTrue(routes("primary", "sticky") > 0);
+    }
+    
+    @Test
+    void testWriteOverHttp_CookieKeepsClientOnPrimary() throws Exception {
+        Cookie stickiness = mockMvc.perform(put("/api/books/{externalId}/stock", BOOK_ID).param("stockQuantity", "5"))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists(ReplicaStickinessFilter.COOKIE_NAME))
+                .andReturn().getResponse().getCookie(ReplicaStickinessFilter.COOKIE_NAME);
+        
+        mockMvc.perform(get("/api/books/{externalId}", BOOK_ID).cookie(stickiness))
+                .andExpect(jsonPath("$.title").value(PRIMARY_TITLE));
+        mockMvc.perform(get("/api/books/{externalId}", BOOK_ID))
+                .andExpect(jsonPath("$.title").value(REPLICA_TITLE));
+    }
+    
+    private JdbcTemplate replica() {
+        return new JdbcTemplate(routingDataSource.getReplica());
+    }
+    
+    private void replicate() {
+        String script = tempDir.resolve("primary.sql").toString();
+        new JdbcTemplate(routingDataSource.getPrimary()).execute("SCRIPT TO '" + script + "'");
+        replica().execute("DROP ALL OBJECTS");
+        replica().execute("RUNSCRIPT FROM '" + script + "'");
+    }
+    
+    private double routes(String route, String reason) {
+        Counter counter = meterRegistry.find(LibraryMetrics.DATASOURCE_ROUTING)
+                .tags("route", route, "reason", reason)
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.libreria.journal;
+
+import com.example.libreria.event.AvailabilityChangedEvent;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.ReservationReturnedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventJournalTest {
+    
+    @TempDir
+    Path directory;
+    
+    private EventJournal openJournal(DataSize segmentSize) throws Exception {
+        return openJournal(segmentSize, "");
+    }
+    
+    private EventJournal openJournal(DataSize segmentSize, String archiveDirectory) throws Exception {
+        return new EventJournal(directory.toString(), segmentSize, Duration.ofMillis(5), Duration.ZERO, archiveDirectory);
+    }
+    
+    private ReservationCreatedEvent created(long id) {
+        return new ReservationCreatedEvent(id, 1L, 258027L, LocalDate.of(2024, 1, 15),
+                LocalDate.of(2024, 1, 22), 7, new BigDecimal("111.93"), true);
+    }
+    
+    @Test
+    void testAppendAndReplay_AllEventTypes() throws Exception {
+        try (EventJournal journal = openJournal(DataSize.ofMegabytes(1))) {
+            journal.append(created(1L));
+            journal.append(new ReservationReturnedEvent(1L, 1L, 258027L, LocalDate.of(2024, 1, 15),
+                    LocalDate.of(2024, 1, 22), LocalDate.of(2024, 1, 25), new BigDecimal("7.20"), new BigDecimal("119.13")));
+            journal.append(new StockAdjustedEvent(258027L, 20, 19));
+            journal.append(new BookSyncedEvent(258027L, "The Lord of the Rings", new BigDecimal("15.99"), 10, 10, true));
+            journal.append(new BookSyncedEvent(140081L, null, null, null, null, false));
+            journal.append(new AvailabilityChangedEvent(258027L, -2, AvailabilityChangedEvent.Cause.WAITERS_PROMOTED));
+            
+            List<JournalRecord> records = new ArrayList<>();
+            assertEquals(6, journal.replay(1, records::add));
+            
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), records.stream().map(JournalRecord::sequence).toList());
+            assertEquals(created(1L), records.get(0).event());
+            assertEquals(JournalEventType.RESERVATION_RETURNED, records.get(1).type());
+            assertEquals(new BigDecimal("7.20"), ((ReservationReturnedEvent) records.get(1).event()).lateFee());
+            assertEquals(new StockAdjustedEvent(258027L, 20, 19), records.get(2).event());
+            assertEquals("The Lord of the Rings", ((BookSyncedEvent) records.get(3).event()).title());
+            assertNull(((BookSyncedEvent) records.get(4).event()).title());
+            assertEquals(new AvailabilityChangedEvent(258027L, -2, AvailabilityChangedEvent.Cause.WAITERS_PROMOTED),
+                    records.get(5).event());
+        }
+    }
+    
+    @Test
+    void testSegmentRoll_ReplayCrossesSegments() throws Exception {
+        try (EventJournal journal = openJournal(DataSize.ofKilobytes(4))) {
+            for (long i = 1; i <= 500; i++) {
+                journal.append(created(i));
+            }
+            assertTrue(EventJournal.listSegments(directory).size() > 1);
+            
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(1, records::add);
+            assertEquals(500, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i + 1, records.get(i).sequence());
+                assertEquals(i + 1, ((ReservationCreatedEvent) records.get(i).event()).reservationId());
+            }
+            
+            List<JournalRecord> fromMiddle = new ArrayList<>();
+            journal.replay(321, fromMiddle::add);
+            assertEquals(180, fromMiddle.size());
+            assertEquals(321, fromMiddle.get(0).sequence());
+        }
+    }
+    
+    @Test
+    void testReopen_ContinuesSequence() throws Exception {
+        try (EventJournal journal = openJournal(DataSize.ofKilobytes(4))) {
+            for (long i = 1; i <= 100; i++) {
+                journal.append(created(i));
+            }
+        }
+        try (EventJournal journal = openJournal(DataSize.ofKilobytes(4))) {
+            assertEquals(100, journal.lastSequence());
+            assertEquals(101, journal.append(created(101L)));
+            assertEquals(101, journal.replay(1, record -> { }));
+        }
+    }
+    
+    @Test
+    void testRetention_ArchivesClosedSegmentsAndKeepsTheCurrentOne() throws Exception {
+        Path archive = directory.resolve("archive");
+        try (EventJournal journal = openJournal(DataSize.ofKilobytes(4), archive.toString())) {
+            for (long i = 1; i <= 300; i++) {
+                journal.append(created(i));
+            }
+            List<Path> segments = EventJournal.listSegments(directory);
+            assertTrue(segments.size() > 2);
+            
+            // Con el corte en el pasado no hay nada vencido
+            assertEquals(0, journal.removeSegmentsBefore(0));
+            assertEquals(segments.size() - 1, journal.removeSegmentsBefore(System.currentTimeMillis() + 1000));
+            
+            Path current = segments.get(segments.size() - 1);
+            assertEquals(List.of(current), EventJournal.listSegments(directory));
+            assertEquals(segments.size() - 1, EventJournal.listSegments(archive).size());
+            // El replay arranca en el segmento que quedó y el journal sigue escribiendo
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(1, records::add);
+            assertEquals(EventJournal.firstSequenceOf(current), records.get(0).sequence());
+            assertEquals(301, journal.append(created(301L)));
+        }
+        assertTrue(Files.isDirectory(archive));
+    }
+    
+    @Test
+    void testSecondWriter_IsRejected() throws Exception {
+        try (EventJournal journal = openJournal(DataSize.ofMegabytes(1))) {
+            assertThrows(Exception.class, () -> openJournal(DataSize.ofMegabytes(1)));
+        }
+    }
+    
+    @Test
+    void testTail_SeesNewRecordsAcrossRolls() throws Exception {
+        try (EventJournal journal = openJournal(DataSize.ofKilobytes(4))) {
+            JournalReader tail = journal.tail(1);
+            assertTrue(tail.poll(100).isEmpty());
+            
+            long received = 0;
+            for (long i = 1; i <= 300; i++) {
+                journal.append(created(i));
+                if (i % 7 == 0) {
+                    received += tail.poll(1000).size();
+                }
+            }
+            received += tail.poll(1000).size();
+            
+            assertEquals(300, received);
+            assertEquals(301, tail.nextSequence());
+        }
+    }
+    
+    @Test
+    void testAppend_StaysUnderLatencyBudget() throws Exception {
+        try (EventJournal journal = openJournal(DataSize.ofMegabytes(64))) {
+            for (long i = 0; i < 20_000; i++) {
+                journal.append(created(i));
+            }
+            int iterations = 100_000;
+            long start = System.nanoTime();
+            for (long i = 0; i < iterations; i++) {
+                journal.append(created(i));
+            }
+            long averageNanos = (System.nanoTime() - start) / iterations;
+            assertTrue(averageNanos < 50_000, "append promedio de " + averageNanos + " ns");
+        }
+    }
+}
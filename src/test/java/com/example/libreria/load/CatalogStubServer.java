@@ -0,0 +1,77 @@
+package com.example.libreria.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+// Stub local de la API externa: sirve books-db.json en /books y /books/{id}
+public class CatalogStubServer implements AutoCloseable {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private final HttpServer server;
+    private final byte[] catalog;
+    private final Map<Long, byte[]> booksById = new HashMap<>();
+    
+    private CatalogStubServer(Path catalogFile) throws IOException {
+        this.catalog = Files.readAllBytes(catalogFile);
+        for (JsonNode book : MAPPER.readTree(catalog)) {
+            booksById.put(book.get("id").asLong(), MAPPER.writeValueAsBytes(book));
+        }
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/books", this::handle);
+        this.server.setExecutor(Executors.newFixedThreadPool(4));
+        this.server.start();
+    }
+    
+    public static CatalogStubServer start(Path catalogFile) throws IOException {
+        return new CatalogStubServer(catalogFile);
+    }
+    
+    public String booksUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/books";
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (path.equals("/books") || path.equals("/books/")) {
+            body = catalog;
+        } else {
+            body = booksById.get(parseId(path.substring("/books/".length())));
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    private static Long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.libreria.load;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Latencias por endpoint para el reporte de carga (throughput, p50/p95/p99)
+public class LatencyRecorder {
+    
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    
+    public void record(String endpoint, long elapsedNanos, int status) {
+        endpoints.computeIfAbsent(endpoint, key -> new EndpointStats()).record(elapsedNanos, status);
+    }
+    
+    public long totalRequests() {
+        return endpoints.values().stream().mapToLong(EndpointStats::count).sum();
+    }
+    
+    public long serverErrors() {
+        return endpoints.values().stream().mapToLong(stats -> stats.serverErrors).sum();
+    }
+    
+    public String report(Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1e9;
+        StringBuilder report = new StringBuilder(String.format("%-34s %8s %9s %7s %7s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "4xx", "5xx/io", "p50 ms", "p95 ms", "p99 ms"));
+        new TreeMap<>(endpoints).forEach((endpoint, stats) -> {
+            long[] sorted = stats.sortedLatencies();
+            report.append(String.format("%-34s %8d %9.1f %7d %7d %9.2f %9.2f %9.2f%n",
+                    endpoint, sorted.length, sorted.length / seconds, stats.clientErrors, stats.serverErrors,
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.95), percentileMillis(sorted, 0.99)));
+        });
+        report.append(String.format("total: %d requests en %.1fs (%.1f req/s)%n",
+                totalRequests(), seconds, totalRequests() / seconds));
+        return report.toString();
+    }
+    
+    static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    private static class EndpointStats {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long clientErrors;
+        private long serverErrors;
+        
+        synchronized void record(long elapsedNanos, int status) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = elapsedNanos;
+            if (status >= 400 && status < 500) {
+                clientErrors++;
+            } else if (status >= 500 || status < 0) {
+                serverErrors++;
+            }
+        }
+        
+        synchronized long count() {
+            return size;
+        }
+        
+        synchronized long[] sortedLatencies() {
+            long[] copy = Arrays.copyOf(latencies, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.libreria.load;
+
+import com.example.libreria.dto.ConsistencyReportDTO;
+import com.example.libreria.service.RevenueReportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Carga mixta (crear, devolver, listar, sincronizar) contra la app levantada en un puerto aleatorio,
+ * con H2 en memoria y el catálogo servido por {@link CatalogStubServer}. Al final verifica el invariante de stock.
+ * <p>
+ * ./mvnw -Pload-test test -Dload.users=64 -Dload.seconds=60 -Dload.stock=50
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ReservationLoadTest {
+    
+    private static final int VIRTUAL_USERS = Integer.getInteger("load.users", 32);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.seconds", 20);
+    private static final int STOCK_PER_BOOK = Integer.getInteger("load.stock", 20);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private static CatalogStubServer catalog;
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private RevenueReportService revenueReportService;
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    
+    @BeforeAll
+    static void startCatalog() throws IOException {
+        catalog = CatalogStubServer.start(Path.of("books-db.json"));
+    }
+    
+    @AfterAll
+    static void stopCatalog() {
+        catalog.close();
+    }
+    
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("external.api.books.url", () -> catalog.booksUrl());
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        // Se mide la capacidad de la app, no el control de admisión
+        registry.add("libreria.rate-limit.enabled", () -> "false");
+    }
+    
+    @Test
+    void mixedTraffic_KeepsStockInvariant() throws Exception {
+        assertEquals(200, send("sync", post("/api/books/sync", "")).statusCode());
+        List<Long> books = new ArrayList<>();
+        for (JsonNode book : MAPPER.readTree(send("GET /api/books", get("/api/books")).body())) {
+            books.add(book.get("externalId").asLong());
+            send("stock", put("/api/books/" + book.get("externalId").asLong() + "/stock?stockQuantity=" + STOCK_PER_BOOK));
+        }
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < VIRTUAL_USERS; i++) {
+            String body = "{\"name\": \"Usuario Carga " + i + "\", \"email\": \"carga" + i + "@example.com\"}";
+            users.add(MAPPER.readTree(send("create user", post("/api/users", body)).body()).get("id").asLong());
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(VIRTUAL_USERS);
+        long start = System.nanoTime();
+        long deadline = start + Duration.ofSeconds(DURATION_SECONDS).toNanos();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Long userId : users) {
+            futures.add(executor.submit(() -> runVirtualUser(userId, books, deadline)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        
+        System.out.println(recorder.report(elapsed));
+        assertTrue(recorder.totalRequests() > 0);
+        List<String> violations = new StockInvariantChecker(jdbcTemplate).findViolations();
+        assertTrue(violations.isEmpty(), () -> "Invariante de stock violado:\n" + String.join("\n", violations));
+        List<String> summaryViolations = new StockInvariantChecker(jdbcTemplate).findSummaryViolations();
+        assertTrue(summaryViolations.isEmpty(),
+                () -> "Contadores de préstamos inconsistentes:\n" + String.join("\n", summaryViolations));
+        ConsistencyReportDTO consistency = revenueReportService.checkConsistency();
+        assertTrue(consistency.isConsistent(),
+                () -> "Totales de facturación inconsistentes:\n" + String.join("\n", consistency.getMismatches()));
+    }
+    
+    private void runVirtualUser(Long userId, List<Long> books, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Deque<Long> reservations = new ArrayDeque<>();
+        while (System.nanoTime() < deadline) {
+            int roll = random.nextInt(100);
+            try {
+                if (roll < 35) {
+                    Long bookId = books.get(random.nextInt(books.size()));
+                    String body = "{\"userId\": " + userId + ", \"bookExternalId\": " + bookId
+                            + ", \"rentalDays\": " + (1 + random.nextInt(14)) + ", \"startDate\": \"" + LocalDate.now() + "\"}";
+                    HttpResponse<String> response = send("POST /api/reservations", post("/api/reservations", body));
+                    if (response.statusCode() == 201) {
+                        reservations.add(MAPPER.readTree(response.body()).get("id").asLong());
+                    }
+                } else if (roll < 60 && !reservations.isEmpty()) {
+                    Long reservationId = reservations.poll();
+                    String body = "{\"returnDate\": \"" + LocalDate.now().plusDays(random.nextInt(20)) + "\"}";
+                    send("POST /api/reservations/{id}/return", post("/api/reservations/" + reservationId + "/return", body));
+                } else if (roll < 75) {
+                    send("GET /api/books", get("/api/books"));
+                } else if (roll < 88) {
+                    send("GET /api/reservations/user/{id}", get("/api/reservations/user/" + userId));
+                } else if (roll < 98) {
+                    send("GET /api/reservations/active", get("/api/reservations/active"));
+                } else {
+                    send("POST /api/books/sync", post("/api/books/sync", ""));
+                }
+            } catch (IOException e) {
+                // ya contabilizado como error en send()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private HttpResponse<String> send(String endpoint, HttpRequest request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            recorder.record(endpoint, System.nanoTime() - start, response.statusCode());
+            return response;
+        } catch (IOException e) {
+            recorder.record(endpoint, System.nanoTime() - start, -1);
+            throw e;
+        }
+    }
+    
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+    
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+    
+    private HttpRequest put(String path) {
+        return HttpRequest.newBuilder(uri(path)).PUT(HttpRequest.BodyPublishers.noBody()).build();
+    }
+    
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
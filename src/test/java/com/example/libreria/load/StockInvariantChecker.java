@@ -0,0 +1,62 @@
+package com.example.libreria.load;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Objects;
+
+// stock_quantity - available_quantity debe ser igual a las reservas abiertas (ACTIVE/OVERDUE) ya iniciadas más
+// los ejemplares asignados desde la lista de espera (HELD) de cada libro,
+// y el contador de préstamos de cada usuario debe coincidir con sus reservas abiertas
+public class StockInvariantChecker {
+    
+    private static final String QUERY = "SELECT b.external_id, b.stock_quantity, b.available_quantity, " +
+            "(SELECT COUNT(*) FROM reservations r WHERE r.book_external_id = b.external_id " +
+            "AND r.status IN ('ACTIVE', 'OVERDUE') AND (r.pending_start IS NULL OR r.pending_start = FALSE)) " +
+            "AS open_reservations, " +
+            "(SELECT COUNT(*) FROM waitlist_entries w WHERE w.book_external_id = b.external_id " +
+            "AND w.status = 'HELD') AS held_copies FROM books b ORDER BY b.external_id";
+    
+    private static final String SUMMARY_QUERY = "SELECT s.user_id, s.active_count, " +
+            "(SELECT COUNT(*) FROM reservations r WHERE r.user_id = s.user_id " +
+            "AND r.status IN ('ACTIVE', 'OVERDUE')) AS open_reservations " +
+            "FROM user_reservation_summary s ORDER BY s.user_id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public StockInvariantChecker(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public List<String> findViolations() {
+        return jdbcTemplate.query(QUERY, (rs, rowNum) -> {
+                    long externalId = rs.getLong("external_id");
+                    int stock = rs.getInt("stock_quantity");
+                    int available = rs.getInt("available_quantity");
+                    long open = rs.getLong("open_reservations");
+                    long held = rs.getLong("held_copies");
+                    if (available < 0 || available > stock || stock - available != open + held) {
+                        return String.format("libro %d: stock=%d disponible=%d reservas abiertas=%d asignados=%d",
+                                externalId, stock, available, open, held);
+                    }
+                    return null;
+                }).stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+    
+    public List<String> findSummaryViolations() {
+        return jdbcTemplate.query(SUMMARY_QUERY, (rs, rowNum) -> {
+                    long userId = rs.getLong("user_id");
+                    int active = rs.getInt("active_count");
+                    long open = rs.getLong("open_reservations");
+                    if (active != open) {
+                        return String.format("usuario %d: préstamos activos=%d reservas abiertas=%d",
+                                userId, active, open);
+                    }
+                    return null;
+                }).stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.libreria.popularity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+    
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 4);
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testTopK_MatchesExactCountsOnZipfStream() {
+        HeavyHitters heavyHitters = new HeavyHitters(7, 1.0, 4, 2048, 100);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        int events = 200_000;
+        long[] ids = zipf(20_000, 1.1, events, random);
+        for (int i = 0; i < events; i++) {
+            LocalDate day = DAY.plusDays(i * 7L / events);
+            heavyHitters.record(ids[i], day);
+            exact.merge(ids[i], 1L, Long::sum);
+        }
+        
+        List<HeavyHitters.HeavyHitter> top = heavyHitters.top(10, DAY.plusDays(6));
+        Set<Long> exactTop = exact.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(10)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        
+        long found = top.stream().filter(hitter -> exactTop.contains(hitter.externalId())).count();
+        assertTrue(found >= 9, "sólo " + found + " de los 10 más reservados");
+        // Cota del count-min: nunca por debajo y a lo sumo e/width del total por encima (sumado sobre 7 días)
+        double maxError = Math.E / 2048 * events;
+        for (HeavyHitters.HeavyHitter hitter : top) {
+            long real = exact.get(hitter.externalId());
+            assertTrue(hitter.score() >= real, "estimación por debajo de la cuenta real");
+            assertTrue(hitter.score() - real <= maxError, "error " + (hitter.score() - real) + " > " + maxError);
+        }
+    }
+    
+    @Test
+    void testWindow_DaysOutsideWindowStopCounting() {
+        HeavyHitters heavyHitters = new HeavyHitters(7, 1.0, 4, 256, 10);
+        record(heavyHitters, 1L, DAY, 5);
+        record(heavyHitters, 2L, DAY.plusDays(3), 3);
+        
+        assertEquals(List.of(1L, 2L), ids(heavyHitters.top(10, DAY.plusDays(6))));
+        
+        // Al octavo día las reservas del primero salen de la ventana
+        List<HeavyHitters.HeavyHitter> later = heavyHitters.top(10, DAY.plusDays(7));
+        assertEquals(List.of(2L), ids(later));
+        assertEquals(3.0, later.get(0).score());
+        assertEquals(0, later.get(0).today());
+        assertTrue(heavyHitters.top(10, DAY.plusDays(10)).isEmpty());
+    }
+    
+    @Test
+    void testDecay_RecentReservationsWeighMore() {
+        HeavyHitters heavyHitters = new HeavyHitters(7, 0.5, 4, 256, 10);
+        record(heavyHitters, 1L, DAY, 8);
+        record(heavyHitters, 2L, DAY.plusDays(2), 3);
+        
+        // 8 * 0.5^2 = 2 contra 3 del día de hoy
+        List<HeavyHitters.HeavyHitter> top = heavyHitters.top(10, DAY.plusDays(2));
+        assertEquals(List.of(2L, 1L), ids(top));
+        assertEquals(2.0, top.get(1).score(), 1e-9);
+        assertEquals(3, top.get(0).today());
+    }
+    
+    @Test
+    void testCapacity_KeepsHeaviestCandidates() {
+        HeavyHitters heavyHitters = new HeavyHitters(7, 1.0, 4, 1024, 3);
+        for (long id = 1; id <= 10; id++) {
+            record(heavyHitters, id, DAY, (int) id);
+        }
+        
+        assertEquals(List.of(10L, 9L, 8L), ids(heavyHitters.top(10, DAY)));
+    }
+    
+    @Test
+    void testCheckpoint_RestoresSketchesAndCandidates() throws IOException {
+        HeavyHitters original = new HeavyHitters(7, 1.0, 4, 512, 20);
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            original.record(random.nextInt(300), DAY.plusDays(i % 5));
+        }
+        Path file = tempDir.resolve("popular.checkpoint");
+        HeavyHittersFile.write(file, original);
+        
+        HeavyHitters restored = new HeavyHitters(7, 1.0, 4, 512, 20);
+        HeavyHittersFile.read(file, restored);
+        
+        assertEquals(original.top(20, DAY.plusDays(4)), restored.top(20, DAY.plusDays(4)));
+        assertEquals(original.score(17), restored.score(17));
+    }
+    
+    @Test
+    void testCheckpoint_RejectsOtherConfigurationAndCorruptFiles() throws IOException {
+        HeavyHitters original = new HeavyHitters(7, 1.0, 4, 512, 20);
+        record(original, 1L, DAY, 3);
+        Path file = tempDir.resolve("popular.checkpoint");
+        HeavyHittersFile.write(file, original);
+        
+        assertThrows(IOException.class, () -> HeavyHittersFile.read(file, new HeavyHitters(7, 1.0, 4, 1024, 20)));
+        
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(file, bytes);
+        HeavyHitters target = new HeavyHitters(7, 1.0, 4, 512, 20);
+        assertThrows(IOException.class, () -> HeavyHittersFile.read(file, target));
+        assertTrue(target.top(10, DAY).isEmpty());
+    }
+    
+    private static void record(HeavyHitters heavyHitters, long id, LocalDate day, int times) {
+        for (int i = 0; i < times; i++) {
+            heavyHitters.record(id, day);
+        }
+    }
+    
+    private static List<Long> ids(List<HeavyHitters.HeavyHitter> top) {
+        return top.stream().map(HeavyHitters.HeavyHitter::externalId).toList();
+    }
+    
+    // Ids 1..items con probabilidad proporcional a 1/rank^exponent
+    private static long[] zipf(int items, double exponent, int events, Random random) {
+        double[] cumulative = new double[items];
+        double sum = 0;
+        for (int rank = 1; rank <= items; rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        long[] ids = new long[events];
+        for (int i = 0; i < events; i++) {
+            double target = random.nextDouble() * sum;
+            int index = Arrays.binarySearch(cumulative, target);
+            ids[i] = (index >= 0 ? index : -index - 1) + 1;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.libreria.ratelimit;
+
+import com.example.libreria.metrics.LibraryMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AdmissionControlFilterTest {
+    
+    private final LibraryMetrics libraryMetrics = mock(LibraryMetrics.class);
+    
+    private AdmissionControlFilter filter(int maxConcurrentWrites, int capacity) {
+        RateLimitProperties.Endpoint endpoint = new RateLimitProperties.Endpoint();
+        endpoint.setPattern("/api/reservations");
+        endpoint.setCapacity(capacity);
+        endpoint.setRefillPerSecond(0.5);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMaxConcurrentWrites(maxConcurrentWrites);
+        properties.setQueueTimeout(Duration.ZERO);
+        properties.setAddressFactor(2);
+        properties.getEndpoints().put("create-reservation", endpoint);
+        return new AdmissionControlFilter(properties, new TokenBucketTable(4, 100), libraryMetrics, new ObjectMapper());
+    }
+    
+    private MockHttpServletRequest reservation(long userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/reservations");
+        request.setContentType("application/json");
+        request.setContent(("{\"userId\": " + userId + ", \"bookExternalId\": 258027}").getBytes());
+        return request;
+    }
+    
+    private MockHttpServletResponse perform(AdmissionControlFilter filter, MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+    
+    @Test
+    void testBurstExhausted_Returns429WithRetryAfter() throws Exception {
+        AdmissionControlFilter filter = filter(8, 2);
+        
+        assertEquals(200, perform(filter, reservation(1L)).getStatus());
+        assertEquals(200, perform(filter, reservation(1L)).getStatus());
+        MockHttpServletResponse throttled = perform(filter, reservation(1L));
+        
+        assertEquals(429, throttled.getStatus());
+        assertEquals("2", throttled.getHeader("Retry-After"));
+        assertTrue(throttled.getContentAsString().contains("Demasiadas solicitudes"));
+        verify(libraryMetrics).recordAdmission("create-reservation", "throttled");
+        // Otro usuario tiene su propio bucket
+        assertEquals(200, perform(filter, reservation(2L)).getStatus());
+    }
+    
+    @Test
+    void testBodyStillReadableAfterInspection() throws Exception {
+        MockHttpServletRequest request = reservation(7L);
+        MockFilterChain chain = new MockFilterChain();
+        
+        filter(8, 2).doFilter(request, new MockHttpServletResponse(), chain);
+        
+        String forwarded = new String(chain.getRequest().getInputStream().readAllBytes());
+        assertTrue(forwarded.contains("\"userId\": 7"));
+    }
+    
+    @Test
+    void testRotatingUserIds_ThrottledByAddress() throws Exception {
+        AdmissionControlFilter filter = filter(8, 2);
+        
+        // La dirección admite 2 * 2 solicitudes aunque cada una declare otro usuario
+        for (long userId = 1; userId <= 4; userId++) {
+            assertEquals(200, perform(filter, reservation(userId)).getStatus());
+        }
+        MockHttpServletResponse throttled = perform(filter, reservation(5L));
+        
+        assertEquals(429, throttled.getStatus());
+        assertEquals("1", throttled.getHeader("Retry-After"));
+        MockHttpServletRequest otherAddress = reservation(5L);
+        otherAddress.setRemoteAddr("10.0.0.2");
+        assertEquals(200, perform(filter, otherAddress).getStatus());
+    }
+    
+    @Test
+    void testThrottledUserRetrying_DoesNotDrainAddressBucket() throws Exception {
+        AdmissionControlFilter filter = filter(8, 2);
+        
+        perform(filter, reservation(1L));
+        perform(filter, reservation(1L));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(429, perform(filter, reservation(1L)).getStatus());
+        }
+        
+        // Quedan 2 de los 4 tokens de la dirección para el resto de sus usuarios
+        assertEquals(200, perform(filter, reservation(2L)).getStatus());
+        assertEquals(200, perform(filter, reservation(3L)).getStatus());
+        assertEquals(429, perform(filter, reservation(4L)).getStatus());
+    }
+    
+    @Test
+    void testCachedBody_ReadListenerNotifiedImmediately() throws Exception {
+        MockHttpServletRequest request = reservation(7L);
+        MockFilterChain chain = new MockFilterChain();
+        filter(8, 2).doFilter(request, new MockHttpServletResponse(), chain);
+        ServletInputStream input = chain.getRequest().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> events = new ArrayList<>();
+        
+        input.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                events.add("data");
+                while (input.isReady() && !input.isFinished()) {
+                    read.write(input.read());
+                }
+            }
+            
+            @Override
+            public void onAllDataRead() {
+                events.add("done");
+            }
+            
+            @Override
+            public void onError(Throwable t) {
+                events.add("error");
+            }
+        });
+        
+        assertEquals(List.of("data", "done"), events);
+        assertTrue(read.toString().contains("\"userId\": 7"));
+    }
+    
+    @Test
+    void testNoWriteSlotAvailable_Returns503() throws Exception {
+        MockHttpServletResponse response = perform(filter(0, 10), reservation(1L));
+        
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        verify(libraryMetrics).recordAdmission("create-reservation", "shed");
+    }
+    
+    @Test
+    void testUnmatchedEndpoint_PassesThrough() throws Exception {
+        AdmissionControlFilter filter = filter(0, 1);
+        
+        assertEquals(200, perform(filter, new MockHttpServletRequest("GET", "/api/reservations")).getStatus());
+        assertEquals(200, perform(filter, new MockHttpServletRequest("POST", "/api/users")).getStatus());
+    }
+    
+    @Test
+    void testTokenBucket_RefillsOverTime() {
+        TokenBucketTable table = new TokenBucketTable(4, 100);
+        long start = 0L;
+        
+        assertEquals(0L, table.tryAcquire("u1", 1, 2.0, start));
+        long wait = table.tryAcquire("u1", 1, 2.0, start);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), wait, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(0L, table.tryAcquire("u1", 1, 2.0, start + wait));
+    }
+    
+    @Test
+    void testTokenBucket_SweepIsBoundedAndCapsStripeSize() {
+        TokenBucketTable table = new TokenBucketTable(1, 10);
+        
+        // Ningún bucket se llena de nuevo (reposición casi nula): la franja se corta en el doble del cupo
+        for (int i = 0; i < 100; i++) {
+            table.tryAcquire("k" + i, 1, 0.001, 0L);
+        }
+        
+        assertTrue(table.size() <= 20, "size " + table.size());
+        assertTrue(table.size() >= 10, "size " + table.size());
+    }
+    
+    @Test
+    void testTokenBucket_EvictsFullBucketsWhenStripeIsOverBudget() {
+        TokenBucketTable table = new TokenBucketTable(1, 2);
+        table.tryAcquire("a", 1, 1.0, 0L);
+        table.tryAcquire("b", 1, 1.0, 0L);
+        
+        // Un segundo después ambos buckets volvieron a estar llenos y se descartan
+        table.tryAcquire("c", 1, 1.0, TimeUnit.SECONDS.toNanos(1));
+        
+        assertEquals(1, table.size());
+    }
+}
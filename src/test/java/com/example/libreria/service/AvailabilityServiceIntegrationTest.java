@@ -0,0 +1,112 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookAvailabilityDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.load.StockInvariantChecker;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:availability;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class AvailabilityServiceIntegrationTest {
+
+    private static final long BOOK = 990001L;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+    }
+
+    @Test
+    void testFutureReservation_ValidatedAgainstCalendar() {
+        saveBook(bookRepository, BOOK, 1);
+        LocalDate today = LocalDate.now();
+
+        ReservationResponseDTO future = reserve(saveUser(userRepository, "availability.future"), today.plusDays(20), 7);
+        assertTrue(future.getPendingStart());
+        assertEquals(1, availableQuantity());
+
+        ReservationResponseDTO current = reserve(saveUser(userRepository, "availability.current"), today, 7);
+        assertFalse(current.getPendingStart());
+        assertEquals(0, availableQuantity());
+
+        // Del día 15 al 24 pisa la reserva a futuro
+        Long overlapping = saveUser(userRepository, "availability.overlap");
+        RuntimeException rejected = assertThrows(RuntimeException.class,
+                () -> reserve(overlapping, today.plusDays(15), 10));
+        assertTrue(rejected.getMessage().contains("no tiene ejemplares libres"));
+
+        BookAvailabilityDTO availability = availabilityService.getAvailability(BOOK, today, today.plusDays(29));
+        assertEquals(30, availability.getDays().size());
+        assertEquals(0, availability.getDays().get(0).getAvailable());
+        assertEquals(1, availability.getDays().get(10).getAvailable());
+        assertEquals(0, availability.getDays().get(20).getAvailable());
+        assertEquals(1, availability.getDays().get(27).getAvailable());
+        assertEquals(0, availability.getMinAvailable());
+
+        reservationService.returnBook(current.getId(), new ReturnBookRequestDTO(today));
+        assertEquals(1, availableQuantity());
+
+        // Llega el día de inicio: la reserva toma el ejemplar del pool
+        jdbcTemplate.update("UPDATE reservations SET start_date = ?, expected_return_date = ? WHERE id = ?",
+                today, today.plusDays(7), future.getId());
+        assertTrue(reservationService.findReservationsDueToStart().contains(future.getId()));
+        assertTrue(reservationService.startReservation(future.getId()));
+        assertFalse(reservationService.startReservation(future.getId()));
+        assertEquals(0, availableQuantity());
+
+        reservationService.returnBook(future.getId(), new ReturnBookRequestDTO(today));
+        assertEquals(1, availableQuantity());
+        assertTrue(new StockInvariantChecker(jdbcTemplate).findViolations().isEmpty());
+    }
+
+    @Test
+    void testCancelBeforeStart_KeepsPoolUntouched() {
+        saveBook(bookRepository, 990002L, 1);
+        ReservationResponseDTO future = reservationService.createReservation(new ReservationRequestDTO(
+                saveUser(userRepository, "availability.cancel"), 990002L, 5, LocalDate.now().plusDays(3)));
+
+        reservationService.returnBook(future.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+
+        assertEquals(1, bookRepository.findByExternalId(990002L).orElseThrow().getAvailableQuantity());
+        assertEquals(1, availabilityService.getAvailability(990002L, null, null).getMinAvailable());
+    }
+
+    private ReservationResponseDTO reserve(Long userId, LocalDate startDate, int rentalDays) {
+        return reservationService.createReservation(new ReservationRequestDTO(userId, BOOK, rentalDays, startDate));
+    }
+
+    private int availableQuantity() {
+        return bookRepository.findByExternalId(BOOK).orElseThrow().getAvailableQuantity();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.libreria.service;
+
+import com.example.libreria.catalog.CatalogSource;
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.exception.BookNotSyncedException;
+import com.example.libreria.exception.CatalogUnavailableException;
+import com.example.libreria.metrics.LibraryMetrics;
+import com.example.libreria.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookHydrationServiceTest {
+    
+    @Mock
+    private CatalogSource catalogSource;
+    
+    @Mock
+    private BookService bookService;
+    
+    @Mock
+    private BookRepository bookRepository;
+    
+    @Mock
+    private LibraryMetrics libraryMetrics;
+    
+    @InjectMocks
+    private BookHydrationService bookHydrationService;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bookHydrationService, "negativeTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(bookHydrationService, "negativeMaxEntries", 100);
+        ReflectionTestUtils.setField(bookHydrationService, "waitTimeout", Duration.ofSeconds(10));
+    }
+    
+    @Test
+    void testConcurrentMisses_SingleExternalCall() throws Exception {
+        int threads = 8;
+        CountDownLatch waiting = new CountDownLatch(threads - 1);
+        // La llamada externa no termina hasta que los demás hilos esperan su resultado
+        doAnswer(invocation -> {
+            waiting.countDown();
+            return null;
+        }).when(libraryMetrics).recordBookHydration("coalesced");
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(false);
+        when(catalogSource.findById(258027L)).thenAnswer(invocation -> {
+            assertTrue(waiting.await(10, TimeUnit.SECONDS));
+            return externalBook(258027L);
+        });
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> bookHydrationService.hydrate(258027L)));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        
+        verify(catalogSource, times(1)).findById(258027L);
+        verify(bookService, times(1)).createFromExternal(any(ExternalBookDTO.class));
+    }
+    
+    @Test
+    void testUnknownId_NegativeCached() {
+        when(bookRepository.existsByExternalId(999L)).thenReturn(false);
+        when(catalogSource.findById(999L)).thenReturn(null);
+        
+        assertFalse(bookHydrationService.hydrate(999L));
+        assertFalse(bookHydrationService.hydrate(999L));
+        
+        verify(catalogSource, times(1)).findById(999L);
+        verify(libraryMetrics, times(1)).recordBookHydration("negative_hit");
+        verify(bookService, never()).createFromExternal(any(ExternalBookDTO.class));
+    }
+    
+    @Test
+    void testNegativeEntryExpires() {
+        ReflectionTestUtils.setField(bookHydrationService, "negativeTtl", Duration.ZERO);
+        when(bookRepository.existsByExternalId(999L)).thenReturn(false);
+        when(catalogSource.findById(999L)).thenReturn(null);
+        
+        assertFalse(bookHydrationService.hydrate(999L));
+        assertFalse(bookHydrationService.hydrate(999L));
+        
+        verify(catalogSource, times(2)).findById(999L);
+    }
+    
+    @Test
+    void testNegativeCacheFull_ForgetsOldestOnly() {
+        ReflectionTestUtils.setField(bookHydrationService, "negativeMaxEntries", 2);
+        when(bookRepository.existsByExternalId(anyLong())).thenReturn(false);
+        when(catalogSource.findById(anyLong())).thenReturn(null);
+        
+        bookHydrationService.hydrate(901L);
+        bookHydrationService.hydrate(902L);
+        bookHydrationService.hydrate(903L);
+        bookHydrationService.hydrate(902L);
+        bookHydrationService.hydrate(903L);
+        bookHydrationService.hydrate(901L);
+        
+        verify(catalogSource, times(1)).findById(902L);
+        verify(catalogSource, times(1)).findById(903L);
+        verify(catalogSource, times(2)).findById(901L);
+    }
+    
+    @Test
+    void testCoalescedWaitTimesOut_CatalogUnavailable() throws Exception {
+        ReflectionTestUtils.setField(bookHydrationService, "waitTimeout", Duration.ofMillis(20));
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(false);
+        when(catalogSource.findById(258027L)).thenAnswer(invocation -> {
+            fetching.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return externalBook(258027L);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> first = executor.submit(() -> bookHydrationService.hydrate(258027L));
+            assertTrue(fetching.await(10, TimeUnit.SECONDS));
+            
+            assertThrows(CatalogUnavailableException.class, () -> bookHydrationService.hydrate(258027L));
+            
+            release.countDown();
+            assertTrue(first.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void testExternalError_NotCached() {
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(false);
+        when(catalogSource.findById(258027L))
+                .thenThrow(new RuntimeException("Error al obtener el libro de la API externa"))
+                .thenReturn(externalBook(258027L));
+        
+        assertThrows(RuntimeException.class, () -> bookHydrationService.hydrate(258027L));
+        assertTrue(bookHydrationService.hydrate(258027L));
+        
+        verify(bookService, times(1)).createFromExternal(any(ExternalBookDTO.class));
+    }
+    
+    @Test
+    void testWithHydration_FetchesMissingBookAndRetriesOnce() {
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(false);
+        when(catalogSource.findById(258027L)).thenReturn(externalBook(258027L));
+        AtomicInteger attempts = new AtomicInteger();
+        
+        String result = bookHydrationService.withHydration(258027L, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new BookNotSyncedException(258027L);
+            }
+            return "reservado";
+        });
+        
+        assertEquals("reservado", result);
+        assertEquals(2, attempts.get());
+        verify(bookService, times(1)).createFromExternal(any(ExternalBookDTO.class));
+    }
+    
+    @Test
+    void testWithHydration_UnknownBookRethrows() {
+        when(bookRepository.existsByExternalId(999L)).thenReturn(false);
+        when(catalogSource.findById(999L)).thenReturn(null);
+        AtomicInteger attempts = new AtomicInteger();
+        
+        assertThrows(BookNotSyncedException.class, () -> bookHydrationService.withHydration(999L, () -> {
+            attempts.incrementAndGet();
+            throw new BookNotSyncedException(999L);
+        }));
+        
+        assertEquals(1, attempts.get());
+    }
+    
+    private ExternalBookDTO externalBook(Long id) {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(id);
+        book.setTitle("The Lord of the Rings");
+        book.setPrice(new BigDecimal("15.99"));
+        return book;
+    }
+}
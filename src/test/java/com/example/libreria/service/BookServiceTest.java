@@ -1,7 +1,14 @@
 package com.example.libreria.service;
 
+import com.example.libreria.cache.ChangeFeed;
+import com.example.libreria.catalog.CatalogSource;
 import com.example.libreria.dto.BookResponseDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.event.BookSyncedEvent;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.exception.NotFoundException;
+import com.example.libreria.exception.UnavailableException;
+import com.example.libreria.metrics.LibraryMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.repository.BookRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,11 +17,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,7 +37,16 @@ class BookServiceTest {
     private BookRepository bookRepository;
     
     @Mock
-    private ExternalBookService externalBookService;
+    private CatalogSource catalogSource;
+    
+    @Mock
+    private LibraryMetrics libraryMetrics;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private ChangeFeed changeFeed;
     
     @InjectMocks
     private BookService bookService;
@@ -52,24 +71,44 @@ class BookServiceTest {
     
     @Test
     void testSyncBooksFromExternalApi_NewBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(catalogSource.books()).thenReturn(Stream.of(externalBookDTO));
+        when(bookRepository.findAllById(List.of(258027L))).thenReturn(List.of());
         
         bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).saveAll(argThat(books -> books.iterator().next().getStockQuantity() == 10));
+        verify(libraryMetrics, times(1)).recordSync(eq(1), anyLong());
+        verify(eventPublisher, times(1)).publishEvent(any(BookSyncedEvent.class));
     }
     
     @Test
     void testSyncBooksFromExternalApi_ExistingBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(catalogSource.books()).thenReturn(Stream.of(externalBookDTO));
+        when(bookRepository.findAllById(List.of(258027L))).thenReturn(List.of(testBook));
+        
+        bookService.syncBooksFromExternalApi();
+        
+        verify(bookRepository, times(1)).saveAll(List.of(testBook));
+        verify(eventPublisher, times(1)).publishEvent(new BookSyncedEvent(258027L, "The Lord of the Rings",
+                new BigDecimal("15.99"), 10, 5, false));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_LargeCatalogInBatches() {
+        when(catalogSource.books()).thenReturn(LongStream.rangeClosed(1, 1200).mapToObj(id -> {
+            ExternalBookDTO dto = new ExternalBookDTO();
+            dto.setId(id);
+            dto.setTitle("Libro " + id);
+            return dto;
+        }));
+        when(bookRepository.findAllById(anyList())).thenReturn(List.of());
         
         bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(3)).findAllById(anyList());
+        verify(bookRepository, times(3)).saveAll(anyList());
+        verify(bookRepository, never()).findByExternalId(anyLong());
+        verify(libraryMetrics, times(1)).recordSync(eq(1200), anyLong());
     }
     
     @Test
@@ -108,13 +147,16 @@ class BookServiceTest {
     
     @Test
     void testUpdateStock_Success() {
+        when(bookRepository.adjustStock(258027L, 20)).thenReturn(1);
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
         
         BookResponseDTO result = bookService.updateStock(258027L, 20);
         
         assertNotNull(result);
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).adjustStock(258027L, 20);
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(eventPublisher, times(1)).publishEvent(any(StockAdjustedEvent.class));
+        verify(changeFeed, times(1)).bookChanged(258027L);
     }
     
     @Test
@@ -122,32 +164,68 @@ class BookServiceTest {
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(5); // 5 reservados
         
+        when(bookRepository.adjustStock(258027L, 3)).thenReturn(0);
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
         
         assertThrows(RuntimeException.class, () -> {
             bookService.updateStock(258027L, 3); // Menos que los reservados
         });
+        verify(eventPublisher, never()).publishEvent(any(StockAdjustedEvent.class));
     }
     
     @Test
     void testDecreaseAvailableQuantity_Success() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(1);
         
         bookService.decreaseAvailableQuantity(258027L);
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).decrementAvailableQuantity(258027L);
+        verify(bookRepository, never()).save(any(Book.class));
     }
     
     @Test
     void testDecreaseAvailableQuantity_NoStock() {
         testBook.setAvailableQuantity(0);
         
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
         
-        assertThrows(RuntimeException.class, () -> {
+        assertThrows(UnavailableException.class, () -> {
             bookService.decreaseAvailableQuantity(258027L);
         });
+        verify(libraryMetrics, times(1)).recordStockExhausted();
+    }
+    
+    @Test
+    void testDecreaseAvailableQuantity_NotFound() {
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
+        
+        RuntimeException exception = assertThrows(NotFoundException.class, () -> {
+            bookService.decreaseAvailableQuantity(258027L);
+        });
+        assertTrue(exception.getMessage().contains("no encontrado"));
+    }
+    
+    @Test
+    void testTakeFromPool_QueuedOrEmptyLeavesBookUntouched() {
+        when(bookRepository.takeFromPool(258027L, 1L)).thenReturn(1, 0);
+        
+        assertTrue(bookService.takeFromPool(258027L, 1L));
+        assertFalse(bookService.takeFromPool(258027L, 1L));
+        
+        verify(changeFeed, times(1)).bookChanged(258027L);
+        verify(bookRepository, never()).findByExternalId(anyLong());
+    }
+    
+    @Test
+    void testIncreaseAvailableQuantity_Full() {
+        when(bookRepository.incrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        
+        assertThrows(RuntimeException.class, () -> {
+            bookService.increaseAvailableQuantity(258027L);
+        });
     }
 }
 
@@ -0,0 +1,171 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.exception.IdempotencyConflictException;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:idempotency;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class IdempotencyServiceIntegrationTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+    }
+
+    @Test
+    void testRetriedCreate_ReplaysFirstResponse() {
+        saveBook(bookRepository, 881001L, 5);
+        ReservationRequestDTO request = request(saveUser(userRepository, "idempotency.retry"), 881001L);
+
+        ResponseEntity<ReservationResponseDTO> first = create("retry-key", request);
+        ResponseEntity<ReservationResponseDTO> retried = create("retry-key", request);
+
+        assertEquals(HttpStatus.CREATED, retried.getStatusCode());
+        assertEquals(first.getBody().getId(), retried.getBody().getId());
+        assertEquals("true", retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+        assertEquals(4, bookRepository.findByExternalId(881001L).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void testConcurrentDuplicates_CoalescedIntoOneReservation() throws Exception {
+        saveBook(bookRepository, 881002L, 5);
+        ReservationRequestDTO request = request(saveUser(userRepository, "idempotency.concurrent"), 881002L);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<ResponseEntity<ReservationResponseDTO>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return create("concurrent-key", request);
+            }));
+        }
+        start.countDown();
+
+        List<Long> ids = new ArrayList<>();
+        for (Future<ResponseEntity<ReservationResponseDTO>> future : futures) {
+            ids.add(future.get(30, TimeUnit.SECONDS).getBody().getId());
+        }
+        executor.shutdown();
+
+        assertEquals(1, ids.stream().distinct().count());
+        assertEquals(1, executions.get());
+        assertEquals(4, bookRepository.findByExternalId(881002L).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void testSameKeyWithDifferentBody_Conflict() {
+        saveBook(bookRepository, 881003L, 5);
+        Long userId = saveUser(userRepository, "idempotency.mismatch");
+        create("mismatch-key", request(userId, 881003L));
+
+        ReservationRequestDTO other = new ReservationRequestDTO(userId, 881003L, 3, LocalDate.now());
+        assertThrows(IdempotencyConflictException.class, () -> create("mismatch-key", other));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testFailedRequest_ReleasesKey() {
+        ReservationRequestDTO request = request(saveUser(userRepository, "idempotency.failure"), 881004L);
+
+        // El libro todavía no existe: la clave no debe quedar tomada por el error
+        assertThrows(RuntimeException.class, () -> create("failure-key", request));
+        saveBook(bookRepository, 881004L, 5);
+        ResponseEntity<ReservationResponseDTO> retried = create("failure-key", request);
+
+        assertEquals(HttpStatus.CREATED, retried.getStatusCode());
+        assertNull(retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void testWaitlistedRequest_ReplayedNotRequeued() {
+        saveBook(bookRepository, 881005L, 0);
+        ReservationRequestDTO request = request(saveUser(userRepository, "idempotency.waitlisted"), 881005L);
+
+        ResponseEntity<ReservationResponseDTO> first = create("waitlisted-key", request);
+        ResponseEntity<ReservationResponseDTO> retried = create("waitlisted-key", request);
+
+        assertEquals(HttpStatus.ACCEPTED, first.getStatusCode());
+        assertEquals(HttpStatus.ACCEPTED, retried.getStatusCode());
+        assertEquals("true", retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM waitlist_entries", Integer.class));
+    }
+
+    @Test
+    void testKeyTakenOverBeforeCompletion_ReservationRolledBack() {
+        saveBook(bookRepository, 881006L, 5);
+        ReservationRequestDTO request = request(saveUser(userRepository, "idempotency.takeover"), 881006L);
+
+        // Como si la clave hubiera vencido y otra solicitud la hubiera tomado mientras esta seguía corriendo
+        assertThrows(IdempotencyConflictException.class, () -> idempotencyService.execute("create-reservation",
+                "takeover-key", request, ReservationResponseDTO.class, () -> {
+                    ReservationResponseDTO reservation = reservationService.createReservation(request);
+                    CompletableFuture.runAsync(() -> jdbcTemplate.update(
+                            "UPDATE idempotency_keys SET claim_token = 'other' WHERE request_key LIKE '%takeover-key'")).join();
+                    return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+                }));
+
+        assertEquals(5, bookRepository.findByExternalId(881006L).orElseThrow().getAvailableQuantity());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_keys WHERE claim_token = 'other'", Integer.class));
+    }
+
+    private ResponseEntity<ReservationResponseDTO> create(String key, ReservationRequestDTO request) {
+        return idempotencyService.execute("create-reservation", key, request, ReservationResponseDTO.class, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).body(reservationService.createReservation(request));
+        });
+    }
+
+    private ReservationRequestDTO request(Long userId, Long bookExternalId) {
+        return new ReservationRequestDTO(userId, bookExternalId, 7, LocalDate.now());
+    }
+}
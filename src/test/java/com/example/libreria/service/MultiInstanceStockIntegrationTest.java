@@ -0,0 +1,152 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.load.StockInvariantChecker;
+import com.example.libreria.model.Book;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.support.SharedDatabaseNodes;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Préstamos, devoluciones y ajustes de stock del mismo libro desde dos instancias que comparten la base
+// no pueden perder ni duplicar ejemplares
+class MultiInstanceStockIntegrationTest {
+    
+    private static final long BOOK_ID = 884001L;
+    private static final long RETURN_RACE_BOOK_ID = 884002L;
+    private static final int STOCK = 8;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 25;
+    
+    private static SharedDatabaseNodes nodes;
+    
+    @BeforeAll
+    static void startNodes() throws Exception {
+        nodes = SharedDatabaseNodes.start("multinode");
+    }
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(nodes.node1().getBean(JdbcTemplate.class));
+        BookRepository bookRepository = nodes.node1().getBean(BookRepository.class);
+        saveBook(bookRepository, BOOK_ID, STOCK);
+        saveBook(bookRepository, RETURN_RACE_BOOK_ID, STOCK);
+    }
+    
+    @AfterAll
+    static void stopNodes() {
+        if (nodes != null) {
+            nodes.close();
+        }
+    }
+    
+    @Test
+    void testReservationsReturnsAndStockUpdatesFromBothNodes_KeepStockInvariant() throws Exception {
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            users.add(saveUser(nodes.node1().getBean(UserRepository.class), "multinodo" + i));
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            ReservationService reservationService = nodes.node(i).getBean(ReservationService.class);
+            Long userId = users.get(i);
+            futures.add(executor.submit(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    Long reservationId = reservationService.createReservation(
+                            new ReservationRequestDTO(userId, BOOK_ID, 7, LocalDate.now())).getId();
+                    reservationService.returnBook(reservationId, new ReturnBookRequestDTO(LocalDate.now()));
+                }
+                return null;
+            }));
+        }
+        // Cada hilo tiene a lo sumo un préstamo abierto: ninguno de estos ajustes queda por debajo de lo reservado
+        for (int i = 0; i < 2; i++) {
+            BookService bookService = nodes.node(i).getBean(BookService.class);
+            int offset = i;
+            futures.add(executor.submit(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    bookService.updateStock(BOOK_ID, STOCK + (round + offset) % 2 * 4);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        nodes.node1().getBean(BookService.class).updateStock(BOOK_ID, STOCK);
+        
+        Book book = nodes.node2().getBean(BookRepository.class).findByExternalId(BOOK_ID).orElseThrow();
+        assertEquals(STOCK, book.getStockQuantity());
+        assertEquals(STOCK, book.getAvailableQuantity());
+        assertInvariant();
+    }
+    
+    @Test
+    void testSameReservationReturnedFromBothNodes_ReleasesOneCopy() throws Exception {
+        Long userId = saveUser(nodes.node1().getBean(UserRepository.class), "multinodo.devolucion");
+        ReservationService first = nodes.node1().getBean(ReservationService.class);
+        ReservationService second = nodes.node2().getBean(ReservationService.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        
+        for (int round = 0; round < ROUNDS; round++) {
+            Long reservationId = first.createReservation(
+                    new ReservationRequestDTO(userId, RETURN_RACE_BOOK_ID, 7, LocalDate.now())).getId();
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            AtomicInteger returned = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (ReservationService service : List.of(first, second)) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    try {
+                        service.returnBook(reservationId, new ReturnBookRequestDTO(LocalDate.now()));
+                        returned.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // la otra instancia ya la devolvió
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            assertEquals(1, returned.get(), "ronda " + round);
+        }
+        executor.shutdown();
+        
+        Book book = nodes.node1().getBean(BookRepository.class).findByExternalId(RETURN_RACE_BOOK_ID).orElseThrow();
+        assertEquals(STOCK, book.getAvailableQuantity());
+        assertInvariant();
+    }
+    
+    private static void assertInvariant() {
+        StockInvariantChecker checker = new StockInvariantChecker(nodes.node1().getBean(JdbcTemplate.class));
+        List<String> violations = checker.findViolations();
+        assertTrue(violations.isEmpty(), () -> "Invariante de stock violado:\n" + String.join("\n", violations));
+        List<String> summaryViolations = checker.findSummaryViolations();
+        assertTrue(summaryViolations.isEmpty(),
+                () -> "Contadores de préstamos inconsistentes:\n" + String.join("\n", summaryViolations));
+    }
+}
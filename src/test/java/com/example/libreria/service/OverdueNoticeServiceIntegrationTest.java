@@ -0,0 +1,202 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Base propia y vacía en cada test: solo se avisan las reservas vencidas del test
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:overduenotices;DB_CLOSE_DELAY=-1",
+        "libreria.overdue-notices.transport=file",
+        "libreria.overdue-notices.batch-size=2",
+        "libreria.overdue-notices.parallelism=3"
+})
+@ActiveProfiles("test")
+class OverdueNoticeServiceIntegrationTest {
+    
+    private static final LocalDate TODAY = LocalDate.now();
+    
+    @TempDir
+    static Path tempDir;
+    
+    @DynamicPropertySource
+    static void outbox(DynamicPropertyRegistry registry) {
+        registry.add("libreria.overdue-notices.file", () -> outboxFile().toString());
+    }
+    
+    @Autowired
+    private OverdueNoticeService overdueNoticeService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        clearDatabase(jdbcTemplate);
+        Files.deleteIfExists(outboxFile());
+        saveBook(bookRepository, 887001L, 20);
+    }
+    
+    @Test
+    void testDispatch_RendersNoticeWithLateFeeAndRerunIsIdempotent() throws IOException {
+        Long userId = saveUser(userRepository, "aviso.demora");
+        // Empezó hace 10 días por 3: vence hace 7; 10.00 * 0.15 * 7 = 10.50
+        Long overdue = reserve(userId, TODAY.minusDays(10), 3);
+        Long onTime = reserve(userId, TODAY, 7);
+        
+        overdueNoticeService.dispatch(TODAY);
+        
+        JsonNode notice = outboxFor(overdue).get(0);
+        assertEquals(1, outboxFor(overdue).size());
+        assertTrue(outboxFor(onTime).isEmpty());
+        assertEquals("aviso.demora@example.com", notice.get("to").asText());
+        assertEquals(7, notice.get("daysLate").asLong());
+        assertEquals(0, new BigDecimal("10.50").compareTo(new BigDecimal(notice.get("lateFee").asText())));
+        assertTrue(notice.get("body").asText().contains("Usuario aviso.demora"));
+        assertTrue(notice.get("subject").asText().contains("Libro 887001"));
+        assertEquals("SENT", deliveryStatus(overdue, TODAY));
+        
+        OverdueNoticeService.DispatchResult rerun = overdueNoticeService.dispatch(TODAY);
+        
+        assertEquals(0, rerun.sent());
+        assertEquals(1, outboxFor(overdue).size());
+    }
+    
+    @Test
+    void testDispatch_PagesAndParallelBatchesSendEachReservationOnce() throws IOException {
+        List<Long> reservations = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            reservations.add(reserve(saveUser(userRepository, "lote" + i), TODAY.minusDays(20 + i), 5));
+        }
+        
+        overdueNoticeService.dispatch(TODAY);
+        
+        for (int i = 0; i < reservations.size(); i++) {
+            List<JsonNode> notices = outboxFor(reservations.get(i));
+            assertEquals(1, notices.size(), "reserva " + reservations.get(i));
+            assertEquals(15 + i, notices.get(0).get("daysLate").asLong());
+        }
+    }
+    
+    @Test
+    void testDispatch_FailedNoticesAreRetriedOnTheNextRun() throws IOException {
+        Long overdue = reserve(saveUser(userRepository, "aviso.fallido"), TODAY.minusDays(30), 7);
+        // Un directorio en lugar del archivo: el transporte falla
+        Files.createDirectories(outboxFile());
+        
+        OverdueNoticeService.DispatchResult failedRun = overdueNoticeService.dispatch(TODAY);
+        
+        assertEquals(1, failedRun.failed());
+        assertEquals("FAILED", deliveryStatus(overdue, TODAY));
+        
+        Files.delete(outboxFile());
+        overdueNoticeService.dispatch(TODAY);
+        
+        assertEquals(1, outboxFor(overdue).size());
+        assertEquals("SENT", deliveryStatus(overdue, TODAY));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT attempts FROM overdue_notice_deliveries WHERE reservation_id = ? AND notice_date = ?",
+                Integer.class, overdue, TODAY));
+    }
+    
+    @Test
+    void testDispatch_ReclaimsOnlyStaleSendingNotices() throws IOException {
+        Long stale = reserve(saveUser(userRepository, "aviso.colgado"), TODAY.minusDays(30), 7);
+        Long sending = reserve(saveUser(userRepository, "aviso.en.curso"), TODAY.minusDays(30), 7);
+        // Una pasada que se cayó hace una hora y otra que sigue enviando
+        claimSending(stale, LocalDateTime.now().minusHours(1));
+        claimSending(sending, LocalDateTime.now());
+        
+        OverdueNoticeService.DispatchResult result = overdueNoticeService.dispatch(TODAY);
+        
+        assertEquals(1, result.sent());
+        assertEquals(1, outboxFor(stale).size());
+        assertTrue(outboxFor(sending).isEmpty());
+        assertEquals("SENT", deliveryStatus(stale, TODAY));
+        assertEquals("SENDING", deliveryStatus(sending, TODAY));
+    }
+    
+    @Test
+    void testDispatch_RepeatsNoticeAfterRepeatInterval() throws IOException {
+        Long overdue = reserve(saveUser(userRepository, "aviso.semanal"), TODAY.minusDays(40), 7);
+        overdueNoticeService.dispatch(TODAY);
+        
+        overdueNoticeService.dispatch(TODAY.plusDays(3));
+        assertEquals(1, outboxFor(overdue).size());
+        
+        overdueNoticeService.dispatch(TODAY.plusDays(7));
+        assertEquals(2, outboxFor(overdue).size());
+        assertEquals(40, outboxFor(overdue).get(1).get("daysLate").asLong());
+    }
+    
+    private static Path outboxFile() {
+        return tempDir.resolve("overdue-notices.jsonl");
+    }
+    
+    private List<JsonNode> outboxFor(Long reservationId) throws IOException {
+        List<JsonNode> notices = new ArrayList<>();
+        if (!Files.isRegularFile(outboxFile())) {
+            return notices;
+        }
+        for (String line : Files.readAllLines(outboxFile())) {
+            JsonNode notice = objectMapper.readTree(line);
+            if (notice.get("reservationId").asLong() == reservationId) {
+                notices.add(notice);
+            }
+        }
+        return notices;
+    }
+    
+    private void claimSending(Long reservationId, LocalDateTime updatedAt) {
+        jdbcTemplate.update("INSERT INTO overdue_notice_deliveries (reservation_id, notice_date, status, days_late, " +
+                "late_fee, attempts, updated_at) VALUES (?, ?, 'SENDING', 23, 0, 1, ?)", reservationId, TODAY, updatedAt);
+    }
+    
+    private String deliveryStatus(Long reservationId, LocalDate noticeDate) {
+        return jdbcTemplate.queryForObject(
+                "SELECT status FROM overdue_notice_deliveries WHERE reservation_id = ? AND notice_date = ?",
+                String.class, reservationId, noticeDate);
+    }
+    
+    private Long reserve(Long userId, LocalDate startDate, int rentalDays) {
+        return reservationService.createReservation(
+                new ReservationRequestDTO(userId, 887001L, rentalDays, startDate)).getId();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.PopularBookDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.exception.ValidationException;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:popularity;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class PopularityServiceIntegrationTest {
+    
+    private static final long POPULAR_BOOK = 887101L;
+    private static final long QUIET_BOOK = 887102L;
+    
+    @Autowired
+    private PopularityService popularityService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+    }
+    
+    @Test
+    void testCreatedReservations_FeedPopularBooks() {
+        saveBook(bookRepository, POPULAR_BOOK, 20);
+        saveBook(bookRepository, QUIET_BOOK, 20);
+        for (int i = 0; i < 6; i++) {
+            Long userId = saveUser(userRepository, "popular" + i);
+            reservationService.createReservation(new ReservationRequestDTO(userId, POPULAR_BOOK, 7, LocalDate.now()));
+        }
+        reservationService.createReservation(
+                new ReservationRequestDTO(saveUser(userRepository, "tranquilo"), QUIET_BOOK, 7, LocalDate.now()));
+        
+        List<PopularBookDTO> popular = popularityService.getPopularBooks(100);
+        
+        PopularBookDTO first = find(popular, POPULAR_BOOK);
+        PopularBookDTO second = find(popular, QUIET_BOOK);
+        assertTrue(popular.indexOf(first) < popular.indexOf(second));
+        assertEquals("Libro " + POPULAR_BOOK, first.getTitle());
+        assertTrue(first.getReservations() >= 6);
+        assertTrue(first.getReservationsToday() >= 6);
+        // Todas las reservas del libro son de hoy
+        assertTrue(first.getHot());
+        assertFalse(second.getHot());
+        assertEquals(14, first.getAvailableQuantity());
+    }
+    
+    @Test
+    void testLimitOutOfRange_Rejected() {
+        assertThrows(ValidationException.class, () -> popularityService.getPopularBooks(0));
+        assertThrows(ValidationException.class, () -> popularityService.getPopularBooks(10_000));
+    }
+    
+    private static PopularBookDTO find(List<PopularBookDTO> popular, long externalId) {
+        return popular.stream()
+                .filter(book -> book.getExternalId() == externalId)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("El libro " + externalId + " no está entre los populares"));
+    }
+}
@@ -3,17 +3,23 @@ package com.example.libreria.service;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.event.ReservationCreatedEvent;
+import com.example.libreria.event.ReservationReturnedEvent;
+import com.example.libreria.exception.BookWaitlistedException;
+import com.example.libreria.metrics.LibraryMetrics;
 import com.example.libreria.model.Book;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
 import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -43,6 +49,24 @@ class ReservationServiceTest {
     @Mock
     private UserService userService;
     
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private ReservationSummaryService reservationSummaryService;
+    
+    @Mock
+    private WaitlistService waitlistService;
+    
+    @Mock
+    private AvailabilityService availabilityService;
+    
+    @Mock
+    private LibraryMetrics libraryMetrics;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
     @InjectMocks
     private ReservationService reservationService;
     
@@ -89,7 +113,9 @@ class ReservationServiceTest {
         requestDTO.setStartDate(LocalDate.now());
 
 
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookService.takeFromPool(258027L, 1L)).thenReturn(true);
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
 
 
@@ -104,8 +130,86 @@ class ReservationServiceTest {
 
 
         verify(bookRepository, times(1)).findByExternalId(258027L);
+        verify(reservationSummaryService, times(1)).registerLoan(1L);
         verify(reservationRepository, times(1)).save(any(Reservation.class));
-        verify(bookService, times(1)).updateStock(eq(258027L), anyInt());
+        // Sin cola ni ejemplar asignado, el UPDATE condicional ya tomó el ejemplar
+        verify(waitlistService, never()).fulfillHold(anyLong(), anyLong());
+        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(bookService, never()).updateStock(anyLong(), anyInt());
+        verify(eventPublisher, times(1)).publishEvent(any(ReservationCreatedEvent.class));
+    }
+
+    @Test
+    void testCreateReservation_FromWaitlistHold() {
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO(1L, 258027L, 7, LocalDate.now());
+        testBook.setAvailableQuantity(0);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(waitlistService.fulfillHold(1L, 258027L)).thenReturn(true);
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
+
+        ReservationResponseDTO result = reservationService.createReservation(requestDTO);
+
+        assertNotNull(result);
+        // El ejemplar ya se descontó al asignarlo desde la lista de espera
+        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(waitlistService, never()).enqueue(anyLong(), anyLong(), anyInt());
+        verify(reservationSummaryService, times(1)).registerLoan(1L);
+    }
+
+    @Test
+    void testCreateReservation_ExpiredHoldTakesCopyFromPool() {
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO(1L, 258027L, 7, LocalDate.now());
+
+        // El UPDATE condicional no toma el ejemplar porque el usuario figura con uno asignado, ya vencido
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookService.takeFromPool(258027L, 1L)).thenReturn(false);
+        when(waitlistService.fulfillHold(1L, 258027L)).thenReturn(false);
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
+
+        reservationService.createReservation(requestDTO);
+
+        verify(waitlistService, times(1)).hasWaiters(258027L);
+        verify(bookService, times(1)).decreaseAvailableQuantity(258027L);
+    }
+
+    @Test
+    void testCreateReservation_WaitersAheadGetPoolCopiesFirst() {
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO(1L, 258027L, 7, LocalDate.now());
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(waitlistService.hasWaiters(258027L)).thenReturn(true);
+
+        assertThrows(BookWaitlistedException.class, () -> {
+            reservationService.createReservation(requestDTO);
+        });
+
+        verify(waitlistService, times(1)).promoteWaiters(258027L);
+        verify(waitlistService, times(1)).enqueue(1L, 258027L, 7);
+        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    void testCreateReservation_MaxActiveLoansReached() {
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO(1L, 258027L, 7, LocalDate.now());
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        doThrow(new RuntimeException("El usuario 1 alcanzó el máximo de 10 préstamos simultáneos"))
+                .when(reservationSummaryService).registerLoan(1L);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            reservationService.createReservation(requestDTO);
+        });
+
+        assertTrue(exception.getMessage().contains("máximo"));
+        verify(reservationRepository, never()).save(any(Reservation.class));
+        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
     }
 
     @Test
@@ -127,6 +231,7 @@ class ReservationServiceTest {
         unavailableBook.setAvailableQuantity(0);
 
 
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(unavailableBook));
 
 
@@ -135,9 +240,15 @@ class ReservationServiceTest {
         });
 
         assertTrue(exception.getMessage().contains("no está disponible"));
+        assertInstanceOf(BookWaitlistedException.class, exception);
 
+        verify(waitlistService, times(1)).enqueue(1L, 258027L, 7);
         verify(reservationRepository, never()).save(any(Reservation.class));
         verify(bookService, never()).updateStock(anyLong(), anyInt());
+        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(reservationSummaryService, never()).registerLoan(anyLong());
+        verify(libraryMetrics, times(1)).recordStockExhausted();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
     }
 
     @Test
@@ -162,6 +273,7 @@ class ReservationServiceTest {
         returnRequest.setReturnDate(LocalDate.now());
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(activeReservation));
+        when(reservationRepository.claimReturn(1L)).thenReturn(1);
         when(reservationRepository.save(any(Reservation.class))).thenReturn(activeReservation);
 
 
@@ -173,8 +285,10 @@ class ReservationServiceTest {
         assertEquals(0, result.getLateFee().compareTo(BigDecimal.ZERO));
         assertNotNull(result.getActualReturnDate());
 
+        verify(reservationSummaryService, times(1)).registerReturn(1L, 1L, BigDecimal.ZERO);
         verify(reservationRepository, times(1)).save(any(Reservation.class));
-        verify(bookService, times(1)).updateStock(eq(258027L), anyInt());
+        verify(waitlistService, times(1)).releaseCopy(258027L);
+        verify(bookService, never()).updateStock(anyLong(), anyInt());
     }
 
     @Test
@@ -199,6 +313,7 @@ class ReservationServiceTest {
         returnRequest.setReturnDate(LocalDate.now());
 
         when(reservationRepository.findById(1L)).thenReturn(Optional.of(activeReservation));
+        when(reservationRepository.claimReturn(1L)).thenReturn(1);
         when(reservationRepository.save(any(Reservation.class))).thenReturn(activeReservation);
 
 
@@ -217,11 +332,64 @@ class ReservationServiceTest {
 
         BigDecimal expectedTotal = new BigDecimal("111.93").add(expectedLateFee);
         assertEquals(expectedTotal, result.getTotalFee());
+        verify(libraryMetrics, times(1)).recordLateFee(expectedLateFee);
+        verify(reservationSummaryService, times(1)).registerReturn(1L, 1L, expectedLateFee);
+        verify(eventPublisher, times(1)).publishEvent(any(ReservationReturnedEvent.class));
 
         assertNotNull(result.getActualReturnDate());
 
         verify(reservationRepository, times(1)).save(any(Reservation.class));
-        verify(bookService, times(1)).updateStock(eq(258027L), anyInt());
+        verify(waitlistService, times(1)).releaseCopy(258027L);
+        verify(bookService, never()).updateStock(anyLong(), anyInt());
+    }
+    
+    @Test
+    void testCreateReservation_FutureStartDoesNotTakeCopy() {
+        LocalDate startDate = LocalDate.now().plusDays(30);
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO(1L, 258027L, 7, startDate);
+        
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        ReservationResponseDTO result = reservationService.createReservation(requestDTO);
+        
+        assertTrue(result.getPendingStart());
+        verify(availabilityService, times(1)).validateSpan(258027L, startDate, startDate.plusDays(7));
+        verify(bookService, never()).takeFromPool(anyLong(), anyLong());
+        verify(waitlistService, never()).fulfillHold(anyLong(), anyLong());
+        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
+        verify(reservationSummaryService, times(1)).registerLoan(1L);
+    }
+    
+    @Test
+    void testReturnBook_BeforeFutureStartReleasesNothing() {
+        testReservation.setStartDate(LocalDate.now().plusDays(30));
+        testReservation.setExpectedReturnDate(LocalDate.now().plusDays(37));
+        testReservation.setLateFee(BigDecimal.ZERO);
+        testReservation.setPendingStart(true);
+        
+        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.clearPendingStart(1L)).thenReturn(1);
+        when(reservationRepository.claimReturn(1L)).thenReturn(1);
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
+        
+        ReservationResponseDTO result = reservationService.returnBook(1L, new ReturnBookRequestDTO(LocalDate.now()));
+        
+        assertEquals(Reservation.ReservationStatus.RETURNED, result.getStatus());
+        assertFalse(result.getPendingStart());
+        verify(waitlistService, never()).releaseCopy(anyLong());
+    }
+    
+    @Test
+    void testReturnBook_AlreadyClaimedByConcurrentReturn() {
+        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.claimReturn(1L)).thenReturn(0);
+        
+        assertThrows(RuntimeException.class,
+                () -> reservationService.returnBook(1L, new ReturnBookRequestDTO(LocalDate.now())));
+        verify(waitlistService, never()).releaseCopy(anyLong());
+        verify(reservationSummaryService, never()).registerReturn(anyLong(), anyLong(), any());
     }
     
     @Test
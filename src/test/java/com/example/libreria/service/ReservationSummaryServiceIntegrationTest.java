@@ -0,0 +1,91 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.UserReservationSummaryDTO;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Usuarios cuyo resumen todavía no existe: la devolución lo arma sin contar dos veces la reserva devuelta
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:reservationsummary;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class ReservationSummaryServiceIntegrationTest {
+    
+    private static final long BOOK_ID = 886001L;
+    private static final LocalDate TODAY = LocalDate.now();
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private ReservationSummaryService reservationSummaryService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+        saveBook(bookRepository, BOOK_ID, 5);
+    }
+    
+    @Test
+    void testReturnWithoutSummaryRow_CountsReturnedReservationOnce() {
+        Long userId = saveUser(userRepository, "resumen.devolucion");
+        Long reservationId = reserve(userId, TODAY, 7);
+        deleteSummary(userId);
+        
+        reservationService.returnBook(reservationId, new ReturnBookRequestDTO(TODAY));
+        
+        UserReservationSummaryDTO summary = reservationSummaryService.getSummary(userId);
+        assertEquals(0, summary.getActiveCount());
+        assertEquals(1L, summary.getLifetimeReservations());
+        assertEquals(0, BigDecimal.ZERO.compareTo(summary.getOutstandingLateFees()));
+    }
+    
+    @Test
+    void testLateReturnWithoutSummaryRow_KeepsOtherLoansAndAddsFeeOnce() {
+        Long userId = saveUser(userRepository, "resumen.demora");
+        // Empezó hace 10 días por 3: vence hace 7; 10.00 * 0.15 * 7 = 10.50
+        Long late = reserve(userId, TODAY.minusDays(10), 3);
+        reserve(userId, TODAY, 7);
+        deleteSummary(userId);
+        
+        reservationService.returnBook(late, new ReturnBookRequestDTO(TODAY));
+        
+        UserReservationSummaryDTO summary = reservationSummaryService.getSummary(userId);
+        assertEquals(1, summary.getActiveCount());
+        assertEquals(2L, summary.getLifetimeReservations());
+        assertEquals(0, new BigDecimal("10.50").compareTo(summary.getOutstandingLateFees()));
+    }
+    
+    private Long reserve(Long userId, LocalDate startDate, int rentalDays) {
+        return reservationService.createReservation(
+                new ReservationRequestDTO(userId, BOOK_ID, rentalDays, startDate)).getId();
+    }
+    
+    // Como un usuario anterior a la tabla de resúmenes
+    private void deleteSummary(Long userId) {
+        assertEquals(1, jdbcTemplate.update("DELETE FROM user_reservation_summary WHERE user_id = ?", userId));
+    }
+}
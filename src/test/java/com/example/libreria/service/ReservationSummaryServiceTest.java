@@ -0,0 +1,134 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.UserReservationSummaryDTO;
+import com.example.libreria.model.UserReservationSummary;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.example.libreria.repository.UserReservationSummaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationSummaryServiceTest {
+    
+    @Mock
+    private UserReservationSummaryRepository summaryRepository;
+    
+    @Mock
+    private ReservationRepository reservationRepository;
+    
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    
+    @InjectMocks
+    private ReservationSummaryService reservationSummaryService;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservationSummaryService, "maxActivePerUser", 3);
+    }
+    
+    @Test
+    void testRegisterLoan_Success() {
+        when(summaryRepository.registerLoan(eq(1L), eq(3), any(LocalDateTime.class))).thenReturn(1);
+        
+        reservationSummaryService.registerLoan(1L);
+        
+        verifyNoInteractions(jdbcTemplate);
+    }
+    
+    @Test
+    void testRegisterLoan_InitializesMissingSummary() {
+        when(summaryRepository.registerLoan(eq(1L), eq(3), any(LocalDateTime.class))).thenReturn(0, 1);
+        when(jdbcTemplate.update(anyString(), eq(1L), eq(0), eq(0), any(), eq(1L), eq(-1L), eq(1L))).thenReturn(1);
+        
+        reservationSummaryService.registerLoan(1L);
+        
+        verify(summaryRepository, times(2)).registerLoan(eq(1L), eq(3), any(LocalDateTime.class));
+    }
+    
+    @Test
+    void testRegisterLoan_MaxActiveReached() {
+        when(summaryRepository.registerLoan(eq(1L), eq(3), any(LocalDateTime.class))).thenReturn(0);
+        // La fila ya existe: la inicialización no inserta nada y no se reintenta
+        when(jdbcTemplate.update(anyString(), eq(1L), eq(0), eq(0), any(), eq(1L), eq(-1L), eq(1L))).thenReturn(0);
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            reservationSummaryService.registerLoan(1L);
+        });
+        
+        assertTrue(exception.getMessage().contains("máximo de 3"));
+        verify(summaryRepository, times(1)).registerLoan(eq(1L), eq(3), any(LocalDateTime.class));
+    }
+    
+    @Test
+    void testRegisterReturn_AddsLateFee() {
+        when(summaryRepository.registerReturn(eq(1L), eq(new BigDecimal("7.20")), any(LocalDateTime.class)))
+                .thenReturn(1);
+        
+        reservationSummaryService.registerReturn(1L, 5L, new BigDecimal("7.20"));
+        
+        verifyNoInteractions(jdbcTemplate);
+    }
+    
+    @Test
+    void testGetSummary_CountsOverdueAmongActive() {
+        UserReservationSummary summary = new UserReservationSummary(
+                1L, 2, 40L, new BigDecimal("12.50"), LocalDateTime.now());
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(summaryRepository.findById(1L)).thenReturn(Optional.of(summary));
+        when(reservationRepository.countOverdueReservationsByUserId(1L)).thenReturn(1L);
+        
+        UserReservationSummaryDTO result = reservationSummaryService.getSummary(1L);
+        
+        assertEquals(2, result.getActiveCount());
+        assertEquals(1L, result.getOverdueCount());
+        assertEquals(40L, result.getLifetimeReservations());
+        assertEquals(new BigDecimal("12.50"), result.getOutstandingLateFees());
+        assertEquals(3, result.getMaxActiveReservations());
+    }
+    
+    @Test
+    void testGetSummary_NoActiveLoansSkipsOverdueQuery() {
+        UserReservationSummary summary = new UserReservationSummary(
+                1L, 0, 5L, BigDecimal.ZERO, LocalDateTime.now());
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(summaryRepository.findById(1L)).thenReturn(Optional.of(summary));
+        
+        UserReservationSummaryDTO result = reservationSummaryService.getSummary(1L);
+        
+        assertEquals(0L, result.getOverdueCount());
+        verify(reservationRepository, never()).countOverdueReservationsByUserId(anyLong());
+    }
+    
+    @Test
+    void testGetSummary_UserNotFound() {
+        when(userRepository.existsById(99L)).thenReturn(false);
+        
+        assertThrows(RuntimeException.class, () -> {
+            reservationSummaryService.getSummary(99L);
+        });
+        
+        verify(summaryRepository, never()).findById(anyLong());
+    }
+}
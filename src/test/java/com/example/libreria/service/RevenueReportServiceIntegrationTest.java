@@ -0,0 +1,136 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ConsistencyReportDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:revenuereport;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class RevenueReportServiceIntegrationTest {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private RevenueReportService revenueReportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+    }
+
+    @Test
+    void testAggregates_FollowReservationsAndLateReturns() {
+        saveBook(bookRepository, 770001L, 5);
+        saveBook(bookRepository, 770002L, 5);
+        Long userId = saveUser(userRepository, "revenue.report");
+
+        ReservationResponseDTO first = reservationService.createReservation(
+                new ReservationRequestDTO(userId, 770001L, 3, LocalDate.of(2001, 3, 10)));
+        reservationService.createReservation(
+                new ReservationRequestDTO(userId, 770002L, 5, LocalDate.of(2001, 3, 20)));
+        // 20 días de retraso: 10.00 * 0.15 * 20 = 30.00 de multa, facturada en abril
+        reservationService.returnBook(first.getId(), new ReturnBookRequestDTO(LocalDate.of(2001, 4, 2)));
+
+        RevenueReportDTO book = revenueReportService.getBookReport(770001L);
+        assertEquals(1L, book.getReservationCount());
+        assertEquals(0L, book.getActiveCount());
+        assertEquals(0, new BigDecimal("60.00").compareTo(book.getTotalFee()));
+        assertEquals(0, new BigDecimal("30.00").compareTo(book.getLateFee()));
+        assertEquals(1L, book.getLateReturns());
+
+        RevenueReportDTO userReport = revenueReportService.getUserReport(userId);
+        assertEquals(2L, userReport.getReservationCount());
+        assertEquals(1L, userReport.getActiveCount());
+        assertEquals(8L, userReport.getRentalDays());
+        assertEquals(0, new BigDecimal("110.00").compareTo(userReport.getTotalFee()));
+
+        RevenueReportDTO march = revenueReportService.getMonthReport("2001-03");
+        assertEquals(2L, march.getReservationCount());
+        assertEquals(1L, march.getActiveCount());
+        assertEquals(0, new BigDecimal("80.00").compareTo(march.getTotalFee()));
+
+        RevenueReportDTO april = revenueReportService.getMonthReport("2001-04");
+        assertEquals(0L, april.getReservationCount());
+        assertEquals(0, new BigDecimal("30.00").compareTo(april.getLateFee()));
+        assertEquals(1L, april.getLateReturns());
+
+        assertTrue(revenueReportService.checkConsistency().isConsistent());
+    }
+
+    @Test
+    void testRebuild_RepairsDivergedAggregates() {
+        saveBook(bookRepository, 770003L, 5);
+        Long userId = saveUser(userRepository, "revenue.rebuild");
+        reservationService.createReservation(
+                new ReservationRequestDTO(userId, 770003L, 4, LocalDate.of(2001, 5, 1)));
+
+        jdbcTemplate.update("UPDATE revenue_aggregates SET total_fee = 0 " +
+                "WHERE scope_type = 'BOOK' AND scope_key = '770003'");
+        ConsistencyReportDTO diverged = revenueReportService.checkConsistency();
+        assertFalse(diverged.isConsistent());
+        assertTrue(diverged.getMismatches().stream().anyMatch(m -> m.startsWith("BOOK:770003")));
+
+        revenueReportService.rebuild();
+
+        assertTrue(revenueReportService.checkConsistency().isConsistent());
+        assertEquals(0, new BigDecimal("40.00").compareTo(revenueReportService.getBookReport(770003L).getTotalFee()));
+    }
+
+    @Test
+    void testMonthRowsStripedByUser_SummedOnRead() {
+        saveBook(bookRepository, 770004L, 5);
+        for (String name : List.of("revenue.stripe1", "revenue.stripe2")) {
+            Long userId = saveUser(userRepository, name);
+            reservationService.createReservation(
+                    new ReservationRequestDTO(userId, 770004L, 2, LocalDate.of(2001, 6, 5)));
+        }
+
+        // Usuarios con ids consecutivos: franjas distintas del mismo mes, ninguna fila compartida
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revenue_aggregates " +
+                "WHERE scope_type = 'MONTH' AND scope_key LIKE '2001-06#%'", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revenue_aggregates " +
+                "WHERE scope_type = 'TOTAL'", Integer.class));
+        RevenueReportDTO june = revenueReportService.getMonthReport("2001-06");
+        assertEquals(2L, june.getReservationCount());
+        assertEquals(0, new BigDecimal("40.00").compareTo(june.getTotalFee()));
+        assertTrue(revenueReportService.getMonthlyReports().stream()
+                .anyMatch(month -> month.getKey().equals("2001-06") && month.getReservationCount() == 2L));
+        assertEquals(0, revenueReportService.getMonthlyReports().stream()
+                .map(RevenueReportDTO::getTotalFee).reduce(BigDecimal.ZERO, BigDecimal::add)
+                .compareTo(revenueReportService.getTotals().getTotalFee()));
+    }
+
+    @Test
+    void testMonthReport_InvalidMonth() {
+        assertThrows(RuntimeException.class, () -> revenueReportService.getMonthReport("marzo"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.StockReconciliationDTO;
+import com.example.libreria.event.StockAdjustedEvent;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Base propia, vacía en cada test, y chunks de dos libros: cinco libros son tres chunks
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stockreconciliation;DB_CLOSE_DELAY=-1",
+        "libreria.stock-reconciliation.chunk-size=2",
+        "libreria.stock-reconciliation.repair=true",
+        "libreria.stock-reconciliation.throttle.duty-cycle=1.0"
+})
+@ActiveProfiles("test")
+@RecordApplicationEvents
+class StockReconciliationServiceIntegrationTest {
+    
+    private static final List<Long> BOOK_IDS = List.of(889001L, 889002L, 889003L, 889004L, 889005L);
+    private static final int STOCK = 5;
+    
+    @Autowired
+    private StockReconciliationService stockReconciliationService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ApplicationEvents events;
+    
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+        BOOK_IDS.forEach(externalId -> saveBook(bookRepository, externalId, STOCK));
+        stockReconciliationService.reconcile(true);
+    }
+    
+    @Test
+    void testLostDecrement_RepairedAndUnchangedChunksSkippedOnNextRun() {
+        reserve(saveUser(userRepository, "conciliacion"), 889002L);
+        // Un préstamo que no descontó el ejemplar
+        jdbcTemplate.update("UPDATE books SET available_quantity = stock_quantity WHERE external_id = ?", 889002L);
+        
+        StockReconciliationDTO first = stockReconciliationService.reconcile(false);
+        
+        assertEquals(3, first.getChunks());
+        assertEquals(1, first.getRepaired());
+        assertEquals(0, first.getMismatches());
+        assertEquals(STOCK - 1, available(889002L));
+        // La reparación llega al journal y al snapshot como un ajuste de stock
+        assertEquals(List.of(new StockAdjustedEvent(889002L, STOCK, STOCK - 1)),
+                events.stream(StockAdjustedEvent.class).toList());
+        
+        // El chunk reparado cambió de checksum: se revisa una vez más y después se saltea
+        stockReconciliationService.reconcile(false);
+        StockReconciliationDTO unchanged = stockReconciliationService.reconcile(false);
+        
+        assertEquals(3, unchanged.getSkippedChunks());
+        assertEquals(0, unchanged.getCheckedBooks());
+    }
+    
+    @Test
+    void testReservationInOneChunk_OnlyThatChunkIsChecked() {
+        stockReconciliationService.reconcile(false);
+        
+        reserve(saveUser(userRepository, "conciliacion.chunk"), 889005L);
+        StockReconciliationDTO result = stockReconciliationService.reconcile(false);
+        
+        assertEquals(2, result.getSkippedChunks());
+        assertEquals(1, result.getCheckedBooks());
+        assertEquals(0, result.getRepaired());
+    }
+    
+    @Test
+    void testStockBelowReservations_ReportedWithoutChangingTheBook() {
+        reserve(saveUser(userRepository, "conciliacion.stock"), 889003L);
+        reserve(saveUser(userRepository, "conciliacion.stock2"), 889003L);
+        jdbcTemplate.update("UPDATE books SET stock_quantity = 1, available_quantity = 0 WHERE external_id = ?", 889003L);
+        
+        StockReconciliationDTO result = stockReconciliationService.reconcile(false);
+        
+        assertEquals(1, result.getMismatches());
+        assertTrue(result.getDetails().get(0).contains("889003"));
+        assertEquals(0, available(889003L));
+        // Sigue pendiente: el chunk no se saltea aunque no haya cambiado
+        assertEquals(1, stockReconciliationService.reconcile(false).getMismatches());
+    }
+    
+    @Test
+    void testFullRun_IgnoresChecksums() {
+        stockReconciliationService.reconcile(false);
+        
+        StockReconciliationDTO result = stockReconciliationService.reconcile(true);
+        
+        assertEquals(0, result.getSkippedChunks());
+        assertEquals(BOOK_IDS.size(), result.getCheckedBooks());
+    }
+    
+    private int available(Long externalId) {
+        return bookRepository.findByExternalId(externalId).orElseThrow().getAvailableQuantity();
+    }
+    
+    private void reserve(Long userId, Long externalId) {
+        reservationService.createReservation(new ReservationRequestDTO(userId, externalId, 7, LocalDate.now()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserServiceDeleteIntegrationTest {
+    
+    private static final int RESERVATIONS = 10_000;
+    private static final int ACTIVE_RESERVATIONS = 2_500;
+    private static final int STOCK = 20_000;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private RevenueReportService revenueReportService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void testDeleteUser_WithTenThousandReservations() {
+        Book book = new Book();
+        book.setExternalId(990001L);
+        book.setTitle("Heavy User Book");
+        book.setPrice(new BigDecimal("10.00"));
+        book.setStockQuantity(STOCK);
+        book.setAvailableQuantity(STOCK - ACTIVE_RESERVATIONS);
+        bookRepository.save(book);
+        
+        User user = new User();
+        user.setName("Usuario Pesado");
+        user.setEmail("heavy.user@example.com");
+        User savedUser = userRepository.save(user);
+        
+        insertReservations(savedUser.getId(), book.getExternalId());
+        assertEquals(RESERVATIONS, countReservations(savedUser.getId()));
+        // Las reservas se insertaron por JDBC: se recalculan los totales para partir de un estado consistente
+        revenueReportService.rebuild();
+        
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        
+        userService.deleteUser(savedUser.getId());
+        
+        assertFalse(userRepository.existsById(savedUser.getId()));
+        assertEquals(0, countReservations(savedUser.getId()));
+        assertEquals(STOCK, bookRepository.findByExternalId(990001L).orElseThrow().getAvailableQuantity());
+        // Ninguna reserva se cargó en memoria ni se borró fila por fila
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getDeleteCount());
+        assertTrue(statistics.getPrepareStatementCount() < 10);
+        assertTrue(revenueReportService.checkConsistency().isConsistent());
+        assertEquals(0L, revenueReportService.getBookReport(990001L).getReservationCount());
+    }
+    
+    private void insertReservations(Long userId, Long bookExternalId) {
+        LocalDate startDate = LocalDate.now().minusDays(30);
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO reservations (user_id, book_external_id, rental_days, start_date, expected_return_date, " +
+                        "daily_rate, total_fee, late_fee, status, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, userId);
+                        ps.setLong(2, bookExternalId);
+                        ps.setInt(3, 7);
+                        ps.setDate(4, Date.valueOf(startDate));
+                        ps.setDate(5, Date.valueOf(startDate.plusDays(7)));
+                        ps.setBigDecimal(6, new BigDecimal("10.00"));
+                        ps.setBigDecimal(7, new BigDecimal("70.00"));
+                        ps.setBigDecimal(8, BigDecimal.ZERO);
+                        ps.setString(9, i < ACTIVE_RESERVATIONS
+                                ? Reservation.ReservationStatus.ACTIVE.name()
+                                : Reservation.ReservationStatus.RETURNED.name());
+                        ps.setTimestamp(10, createdAt);
+                    }
+                    
+                    @Override
+                    public int getBatchSize() {
+                        return RESERVATIONS;
+                    }
+                });
+    }
+    
+    private int countReservations(Long userId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE user_id = ?", Integer.class, userId);
+        return count != null ? count : 0;
+    }
+}
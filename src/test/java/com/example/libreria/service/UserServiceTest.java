@@ -1,15 +1,24 @@
 package com.example.libreria.service;
 
+import com.example.libreria.cache.ChangeFeed;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.event.AvailabilityChangedEvent;
+import com.example.libreria.event.UserDeletingEvent;
+import com.example.libreria.exception.ConflictException;
+import com.example.libreria.exception.NotFoundException;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.BookCopyCount;
+import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import com.example.libreria.repository.UserReservationSummaryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -27,6 +36,21 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Mock
+    private ReservationRepository reservationRepository;
+    
+    @Mock
+    private UserReservationSummaryRepository summaryRepository;
+    
+    @Mock
+    private WaitlistService waitlistService;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private ChangeFeed changeFeed;
+    
     @InjectMocks
     private UserService userService;
     
@@ -66,7 +90,7 @@ class UserServiceTest {
     void testCreateUser_EmailAlreadyExists() {
         when(userRepository.existsByEmail(anyString())).thenReturn(true);
         
-        assertThrows(RuntimeException.class, () -> {
+        assertThrows(ConflictException.class, () -> {
             userService.createUser(userRequestDTO);
         });
         
@@ -88,7 +112,7 @@ class UserServiceTest {
     void testGetUserById_NotFound() {
         when(userRepository.findById(1L)).thenReturn(Optional.empty());
         
-        assertThrows(RuntimeException.class, () -> {
+        assertThrows(NotFoundException.class, () -> {
             userService.getUserById(1L);
         });
     }
@@ -118,15 +142,25 @@ class UserServiceTest {
         
         assertNotNull(result);
         verify(userRepository, times(1)).save(any(User.class));
+        verify(changeFeed, times(1)).userChanged(1L);
     }
     
     @Test
     void testDeleteUser_Success() {
         when(userRepository.existsById(1L)).thenReturn(true);
+        when(reservationRepository.countStockHeldByUser(1L)).thenReturn(List.of(new BookCopyCount(258027L, 2L)));
         
         userService.deleteUser(1L);
         
-        verify(userRepository, times(1)).deleteById(1L);
+        verify(waitlistService, times(1)).cancelAllForUser(1L);
+        verify(summaryRepository, times(1)).deleteByUserIdInBulk(1L);
+        verify(eventPublisher, times(1)).publishEvent(new UserDeletingEvent(1L));
+        verify(reservationRepository, times(1)).releaseStockHeldByUser(1L);
+        verify(eventPublisher, times(1)).publishEvent(
+                new AvailabilityChangedEvent(258027L, 2, AvailabilityChangedEvent.Cause.USER_DELETED));
+        verify(reservationRepository, times(1)).deleteAllByUserIdInBulk(1L);
+        verify(userRepository, times(1)).deleteByIdInBulk(1L);
+        verify(userRepository, never()).deleteById(anyLong());
     }
     
     @Test
@@ -138,6 +172,11 @@ class UserServiceTest {
         });
         
         verify(userRepository, never()).deleteById(anyLong());
+        verify(userRepository, never()).deleteByIdInBulk(anyLong());
+        verify(reservationRepository, never()).deleteAllByUserIdInBulk(anyLong());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(summaryRepository, never()).deleteByUserIdInBulk(anyLong());
+        verify(waitlistService, never()).cancelAllForUser(anyLong());
     }
 }
 
@@ -0,0 +1,200 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.WaitlistEntryDTO;
+import com.example.libreria.exception.BookWaitlistedException;
+import com.example.libreria.model.WaitlistEntry;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.libreria.support.TestData.clearDatabase;
+import static com.example.libreria.support.TestData.saveBook;
+import static com.example.libreria.support.TestData.saveUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:waitlist;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+class WaitlistServiceIntegrationTest {
+
+    private static final long STRESS_BOOK = 660001L;
+    private static final int STOCK = 4;
+    private static final int WAITERS = 40;
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        clearDatabase(jdbcTemplate);
+    }
+
+    @Test
+    void testConcurrentReturns_HandOffInFifoOrderWithoutLosingCopies() throws Exception {
+        saveBook(bookRepository, STRESS_BOOK, STOCK);
+        Queue<Long> active = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < STOCK; i++) {
+            active.add(reserve(saveUser(userRepository, "waitlist.holder" + i), STRESS_BOOK).getId());
+        }
+
+        List<Long> waitlistIds = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            Long userId = saveUser(userRepository, "waitlist.stress" + i);
+            BookWaitlistedException waitlisted = assertThrows(BookWaitlistedException.class,
+                    () -> reserve(userId, STRESS_BOOK));
+            assertEquals(i + 1L, waitlisted.getEntry().getPosition());
+            waitlistIds.add(waitlisted.getEntry().getId());
+        }
+
+        Set<Long> confirmed = ConcurrentHashMap.newKeySet();
+        List<String> fairnessViolations = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                while (confirmed.size() < WAITERS) {
+                    Long reservationId = active.poll();
+                    if (reservationId != null) {
+                        reservationService.returnBook(reservationId, new ReturnBookRequestDTO(LocalDate.now()));
+                        checkFifo(fairnessViolations);
+                    }
+                    // Cada hold lo confirma un solo hilo, con la misma solicitud que hizo el usuario
+                    for (Map<String, Object> hold : heldEntries()) {
+                        Long entryId = ((Number) hold.get("ID")).longValue();
+                        if (confirmed.add(entryId)) {
+                            Long userId = ((Number) hold.get("USER_ID")).longValue();
+                            active.add(reserve(userId, STRESS_BOOK).getId());
+                        }
+                    }
+                    Thread.onSpinWait();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(fairnessViolations.isEmpty(), () -> String.join("\n", fairnessViolations));
+        for (Long id : waitlistIds) {
+            assertEquals(WaitlistEntry.WaitlistStatus.FULFILLED, waitlistService.getEntry(id).getStatus());
+        }
+        // Ningún ejemplar se perdió: todos están prestados y el pool sigue vacío
+        assertEquals(0, bookRepository.findByExternalId(STRESS_BOOK).orElseThrow().getAvailableQuantity());
+        assertEquals(STOCK, countOpenReservations(STRESS_BOOK));
+
+        for (Long reservationId : active) {
+            reservationService.returnBook(reservationId, new ReturnBookRequestDTO(LocalDate.now()));
+        }
+        assertEquals(STOCK, bookRepository.findByExternalId(STRESS_BOOK).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void testExpiredHold_PassesCopyToNextWaiter() {
+        saveBook(bookRepository, 660002L, 1);
+        ReservationResponseDTO loan = reserve(saveUser(userRepository, "waitlist.expiry.holder"), 660002L);
+        Long first = assertThrows(BookWaitlistedException.class,
+                () -> reserve(saveUser(userRepository, "waitlist.expiry.first"), 660002L)).getEntry().getId();
+        Long second = assertThrows(BookWaitlistedException.class,
+                () -> reserve(saveUser(userRepository, "waitlist.expiry.second"), 660002L)).getEntry().getId();
+
+        reservationService.returnBook(loan.getId(), new ReturnBookRequestDTO(LocalDate.now()));
+        assertEquals(WaitlistEntry.WaitlistStatus.HELD, waitlistService.getEntry(first).getStatus());
+        assertEquals(1L, waitlistService.getEntry(second).getPosition());
+
+        jdbcTemplate.update("UPDATE waitlist_entries SET hold_expires_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)), first);
+        assertTrue(waitlistService.expireHold(first));
+
+        assertEquals(WaitlistEntry.WaitlistStatus.EXPIRED, waitlistService.getEntry(first).getStatus());
+        assertEquals(WaitlistEntry.WaitlistStatus.HELD, waitlistService.getEntry(second).getStatus());
+        assertEquals(0, bookRepository.findByExternalId(660002L).orElseThrow().getAvailableQuantity());
+
+        // Sin nadie más en la cola, el ejemplar vuelve al pool
+        waitlistService.cancel(second);
+        assertEquals(1, bookRepository.findByExternalId(660002L).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void testRetriedRequest_KeepsPlaceInQueue() {
+        saveBook(bookRepository, 660003L, 1);
+        reserve(saveUser(userRepository, "waitlist.retry.holder"), 660003L);
+        Long userId = saveUser(userRepository, "waitlist.retry.user");
+
+        WaitlistEntryDTO first = assertThrows(BookWaitlistedException.class,
+                () -> reserve(userId, 660003L)).getEntry();
+        WaitlistEntryDTO retried = assertThrows(BookWaitlistedException.class,
+                () -> reserve(userId, 660003L)).getEntry();
+
+        assertEquals(first.getId(), retried.getId());
+        assertEquals(1L, retried.getPosition());
+    }
+
+    // Toda entrada atendida debe estar antes en la cola que cualquier entrada que sigue esperando
+    private void checkFifo(List<String> violations) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MAX(CASE WHEN status <> 'WAITING' THEN id END) AS served, " +
+                "MIN(CASE WHEN status = 'WAITING' THEN id END) AS waiting " +
+                "FROM waitlist_entries WHERE book_external_id = ?", STRESS_BOOK);
+        Number served = (Number) bounds.get("SERVED");
+        Number waiting = (Number) bounds.get("WAITING");
+        if (served != null && waiting != null && served.longValue() > waiting.longValue()) {
+            violations.add("la entrada " + served + " fue atendida antes que la " + waiting);
+        }
+    }
+
+    private List<Map<String, Object>> heldEntries() {
+        return jdbcTemplate.queryForList(
+                "SELECT id, user_id FROM waitlist_entries WHERE book_external_id = ? AND status = 'HELD' ORDER BY id",
+                STRESS_BOOK);
+    }
+
+    private int countOpenReservations(Long bookExternalId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE book_external_id = ? AND status = 'ACTIVE'",
+                Integer.class, bookExternalId);
+        return count != null ? count : 0;
+    }
+
+    private ReservationResponseDTO reserve(Long userId, Long bookExternalId) {
+        return reservationService.createReservation(
+                new ReservationRequestDTO(userId, bookExternalId, 7, LocalDate.now()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.libreria.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteAndRead_RoundTrip() throws Exception {
+        List<SnapshotBook> books = List.of(
+                new SnapshotBook(258027L, "The Lord of the Rings", List.of("J.R.R. Tolkien"), 1954, 120, true,
+                        new BigDecimal("15.99"), 10),
+                new SnapshotBook(140081L, "Cien años de soledad", List.of("Gabriel García Márquez", "Traducción"),
+                        null, null, null, null, 0));
+        Path file = directory.resolve(CatalogSnapshotService.FILE_NAME);
+
+        CatalogSnapshotFile.write(file, books);
+
+        assertEquals(books, CatalogSnapshotFile.read(file));
+        assertFalse(Files.exists(directory.resolve(CatalogSnapshotService.FILE_NAME + ".tmp")));
+    }
+
+    @Test
+    void testLargeCatalog_RoundTrip() throws Exception {
+        List<SnapshotBook> books = new ArrayList<>();
+        for (long id = 1; id <= 100_000; id++) {
+            books.add(new SnapshotBook(id, "Libro " + id, List.of("Autor " + id % 500), 1900 + (int) (id % 120),
+                    (int) (id % 50), id % 2 == 0, BigDecimal.valueOf(id % 3000, 2), 10));
+        }
+        Path file = directory.resolve(CatalogSnapshotService.FILE_NAME);
+
+        CatalogSnapshotFile.write(file, books);
+
+        assertEquals(books, CatalogSnapshotFile.read(file));
+    }
+
+    @Test
+    void testCorruptedOrTruncatedFile_Rejected() throws Exception {
+        Path file = directory.resolve(CatalogSnapshotService.FILE_NAME);
+        CatalogSnapshotFile.write(file, List.of(new SnapshotBook(1L, "Libro", List.of(), 2000, 1, false,
+                new BigDecimal("10.00"), 5)));
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] corrupted = bytes.clone();
+        corrupted[30] ^= 0x01;
+        Files.write(file, corrupted);
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.read(file));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.read(file));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.libreria.support;
+
+import com.example.libreria.LibreriaApplication;
+import org.h2.tools.Server;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Dos instancias de la aplicación en el mismo proceso contra una única base H2 en modo servidor (TCP),
+// como dos réplicas detrás de un balanceador. La primera crea el esquema; la segunda lo usa tal como está
+public final class SharedDatabaseNodes implements AutoCloseable {
+    
+    private final Server h2Server;
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    
+    private SharedDatabaseNodes(Server h2Server) {
+        this.h2Server = h2Server;
+    }
+    
+    public static SharedDatabaseNodes start(String database, String... args) throws IOException, SQLException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        SharedDatabaseNodes cluster = new SharedDatabaseNodes(
+                Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start());
+        String url = "jdbc:h2:tcp://localhost:" + port + "/mem:" + database + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+        try {
+            cluster.nodes.add(startNode(url, "create", args));
+            cluster.nodes.add(startNode(url, "none", args));
+        } catch (RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+        return cluster;
+    }
+    
+    public ConfigurableApplicationContext node1() {
+        return nodes.get(0);
+    }
+    
+    public ConfigurableApplicationContext node2() {
+        return nodes.get(1);
+    }
+    
+    // Reparte hilos o solicitudes entre las dos instancias
+    public ConfigurableApplicationContext node(int index) {
+        return nodes.get(index % nodes.size());
+    }
+    
+    public int port(ConfigurableApplicationContext node) {
+        return node.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+    
+    @Override
+    public void close() {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            nodes.get(i).close();
+        }
+        h2Server.stop();
+    }
+    
+    // Como argumentos: las propiedades por defecto del builder perderían contra application-test.yaml
+    private static ConfigurableApplicationContext startNode(String url, String ddlAuto, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--spring.sql.init.mode=never"));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(LibreriaApplication.class)
+                .profiles("test")
+                .run(arguments.toArray(String[]::new));
+    }
+}
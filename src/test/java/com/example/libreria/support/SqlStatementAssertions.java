@@ -0,0 +1,25 @@
+package com.example.libreria.support;
+
+import com.example.libreria.controller.SqlAccountingResponseAdvice;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Uso: mockMvc.perform(get("/api/books")).andExpect(maxStatements(2))
+public final class SqlStatementAssertions {
+    
+    private SqlStatementAssertions() {
+    }
+    
+    public static ResultMatcher maxStatements(int max) {
+        return result -> {
+            String header = result.getResponse().getHeader(SqlAccountingResponseAdvice.STATEMENT_COUNT_HEADER);
+            assertNotNull(header, "La respuesta no trae " + SqlAccountingResponseAdvice.STATEMENT_COUNT_HEADER
+                    + " (¿libreria.sql-accounting.debug-header está activo?)");
+            int count = Integer.parseInt(header);
+            assertTrue(count <= max, () -> result.getRequest().getMethod() + " " + result.getRequest().getRequestURI()
+                    + " ejecutó " + count + " sentencias SQL, máximo esperado " + max);
+        };
+    }
+}
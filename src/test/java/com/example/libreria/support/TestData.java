@@ -0,0 +1,60 @@
+package com.example.libreria.support;
+
+import com.example.libreria.model.Book;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Datos de prueba para los tests de integración. Cada clase usa su propia base H2
+// (spring.datasource.url=jdbc:h2:mem:<clase>) y la vacía con clearDatabase antes de cada test
+public final class TestData {
+    
+    public static final BigDecimal PRICE = new BigDecimal("10.00");
+    
+    private static final String PUBLIC_TABLES =
+            "SELECT table_name FROM information_schema.tables WHERE table_schema = 'PUBLIC' AND table_type = 'BASE TABLE'";
+    
+    private TestData() {
+    }
+    
+    public static Book book(long externalId, int stock) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Libro " + externalId);
+        book.setAuthorName(List.of("Autora de Prueba"));
+        book.setPrice(PRICE);
+        book.setStockQuantity(stock);
+        book.setAvailableQuantity(stock);
+        return book;
+    }
+    
+    public static Book saveBook(BookRepository bookRepository, long externalId, int stock) {
+        return bookRepository.save(book(externalId, stock));
+    }
+    
+    public static User user(String name) {
+        User user = new User();
+        user.setName("Usuario " + name);
+        user.setEmail(name + "@example.com");
+        return user;
+    }
+    
+    public static Long saveUser(UserRepository userRepository, String name) {
+        return userRepository.save(user(name)).getId();
+    }
+    
+    // Solo H2: sin integridad referencial el orden de los TRUNCATE no importa
+    public static void clearDatabase(JdbcTemplate jdbcTemplate) {
+        List<String> tables = jdbcTemplate.queryForList(PUBLIC_TABLES, String.class);
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        try {
+            tables.forEach(table -> jdbcTemplate.execute("TRUNCATE TABLE " + table));
+        } finally {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+    }
+}